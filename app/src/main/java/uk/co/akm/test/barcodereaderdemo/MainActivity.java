@@ -6,6 +6,7 @@ import android.os.Bundle;
 import android.view.View;
 
 import uk.co.akm.test.barcodereaderdemo.barcode.BarcodeReaderActivity;
+import uk.co.akm.test.barcodereaderdemo.base.DetectorRegistry;
 import uk.co.akm.test.barcodereaderdemo.ocr.OcrProcessorActivity;
 
 public class MainActivity extends AppCompatActivity {
@@ -14,6 +15,11 @@ public class MainActivity extends AppCompatActivity {
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_main);
+
+        // Load the detector models in the background, while the user picks a demo.
+        final DetectorRegistry registry = DetectorRegistry.getInstance();
+        registry.prewarm(this, BarcodeReaderActivity.getConfiguredDetectorFactory(this));
+        registry.prewarm(this, OcrProcessorActivity.DETECTOR_FACTORY);
     }
 
     public void onBarCodeDemo(View view) {
@@ -2,13 +2,30 @@ package uk.co.akm.test.barcodereaderdemo.barcode;
 
 import com.google.android.gms.vision.barcode.Barcode;
 
+import uk.co.akm.test.barcodereaderdemo.core.BarcodeNumberFormatter;
+import uk.co.akm.test.barcodereaderdemo.core.FormatNameTable;
+
 /**
  *  Helper class to help format barcode display data.
  *
  *  Created by Thanos Mavroidis on 05/05/2017.
  */
 public class BarcodeDataFormatter {
-    private static final int BARCODE_NUMBER_GROUP_LENGTH = 6;
+    private static final FormatNameTable FORMAT_NAMES = FormatNameTable.forBitFlags(
+            new int[]{
+                    Barcode.AZTEC, Barcode.CODABAR, Barcode.CODE_39, Barcode.CODE_93, Barcode.CODE_128, Barcode.DATA_MATRIX, Barcode.EAN_8,
+                    Barcode.EAN_13, Barcode.ITF, Barcode.PDF417, Barcode.QR_CODE, Barcode.UPC_A, Barcode.UPC_E},
+            new String[]{
+                    "AZTEC", "CODABAR", "CODE_39", "CODE_93", "CODE_128", "DATA_MATRIX", "EAN_8",
+                    "EAN_13", "ITF", "PDF417", "QR_CODE", "UPC_A", "UPC_E"});
+
+    private static final FormatNameTable VALUE_FORMAT_NAMES = FormatNameTable.forValues(
+            new int[]{
+                    Barcode.CALENDAR_EVENT, Barcode.CONTACT_INFO, Barcode.DRIVER_LICENSE, Barcode.EMAIL, Barcode.GEO, Barcode.ISBN,
+                    Barcode.PHONE, Barcode.PRODUCT, Barcode.SMS, Barcode.TEXT, Barcode.URL, Barcode.WIFI},
+            new String[]{
+                    "CALENDAR_EVENT", "CONTACT_INFO", "DRIVER_LICENSE", "EMAIL", "GEO", "ISBN",
+                    "PHONE", "PRODUCT", "SMS", "TEXT", "URL", "WIFI"});
 
     /**
      * Formats the input barcode number as displayed in most product barcodes, i.e. separated into
@@ -16,27 +33,15 @@ public class BarcodeDataFormatter {
      * it is simply returned unchanged.
      */
     static String formatBarCodeNumber(String number) {
-        try {
-            Long.parseLong(number);
-        } catch (NumberFormatException nfe) {
-            return number;
-        }
-
-        final int len = number.length();
-        if (len <= BARCODE_NUMBER_GROUP_LENGTH) {
-            return number;
-        }
-
-        final int lastIndex = len - 1;
-        final StringBuilder sb = new StringBuilder(len + len/BARCODE_NUMBER_GROUP_LENGTH + 1);
-        for (int i=0 ; i<len ; i++) {
-            if (i > 0 && i%BARCODE_NUMBER_GROUP_LENGTH == 0) {
-                sb.append(' ');
-            }
-            sb.append(number.charAt(lastIndex - i));
-        }
+        return BarcodeNumberFormatter.format(number);
+    }
 
-        return sb.reverse().toString();
+    /**
+     * Appends the input barcode number to the input builder, formatted as by
+     * {@link #formatBarCodeNumber(String)}, without creating any intermediate string.
+     */
+    static StringBuilder appendBarCodeNumber(String number, StringBuilder sb) {
+        return BarcodeNumberFormatter.appendFormatted(number, sb);
     }
 
     static String getFormatString(Barcode barcode) {
@@ -44,23 +49,19 @@ public class BarcodeDataFormatter {
             return null;
         }
 
-        switch (barcode.format) {
-            case Barcode.AZTEC: return "AZTEC";
-            case Barcode.CODABAR: return "CODABAR";
-            case Barcode.CODE_39: return "CODE_39";
-            case Barcode.CODE_93: return "CODE_93";
-            case Barcode.CODE_128: return "CODE_128";
-            case Barcode.DATA_MATRIX: return "DATA_MATRIX";
-            case Barcode.EAN_8: return "EAN_8";
-            case Barcode.EAN_13: return "EAN_13";
-            case Barcode.ITF: return "ITF";
-            case Barcode.PDF417: return "PDF417";
-            case Barcode.QR_CODE: return "QR_CODE";
-            case Barcode.UPC_A: return "UPC_A";
-            case Barcode.UPC_E: return "UPC_E";
+        return getFormatString(barcode.format);
+    }
 
-            default: return "UNKNOWN (" + barcode.format + ")";
-        }
+    static String getFormatString(int format) {
+        return FORMAT_NAMES.getName(format);
+    }
+
+    /**
+     * Returns the barcode format (e.g. {@link Barcode#EAN_13}) with the input name, as returned by
+     * {@link #getFormatString(int)}, or zero if the name is not a known format.
+     */
+    static int getFormat(String formatString) {
+        return FORMAT_NAMES.getCode(formatString);
     }
 
     static String getValueFormatString(Barcode barcode) {
@@ -68,22 +69,11 @@ public class BarcodeDataFormatter {
             return null;
         }
 
-        switch (barcode.valueFormat) {
-            case Barcode.CALENDAR_EVENT: return "CALENDAR_EVENT";
-            case Barcode.CONTACT_INFO: return "CONTACT_INFO";
-            case Barcode.DRIVER_LICENSE: return "DRIVER_LICENSE";
-            case Barcode.EMAIL: return "EMAIL";
-            case Barcode.GEO: return "GEO";
-            case Barcode.ISBN: return "ISBN";
-            case Barcode.PHONE: return "PHONE";
-            case Barcode.PRODUCT: return "PRODUCT";
-            case Barcode.SMS: return "SMS";
-            case Barcode.TEXT: return "TEXT";
-            case Barcode.URL: return "URL";
-            case Barcode.WIFI: return "WIFI";
+        return getValueFormatString(barcode.valueFormat);
+    }
 
-            default: return "UNKNOWN (" + barcode.valueFormat + ")";
-        }
+    static String getValueFormatString(int valueFormat) {
+        return VALUE_FORMAT_NAMES.getName(valueFormat);
     }
 
     private BarcodeDataFormatter() {}
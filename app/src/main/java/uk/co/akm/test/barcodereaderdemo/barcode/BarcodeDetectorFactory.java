@@ -0,0 +1,45 @@
+package uk.co.akm.test.barcodereaderdemo.barcode;
+
+import android.content.Context;
+
+import com.google.android.gms.vision.Detector;
+import com.google.android.gms.vision.barcode.Barcode;
+import com.google.android.gms.vision.barcode.BarcodeDetector;
+
+import uk.co.akm.test.barcodereaderdemo.base.DetectorRegistry;
+
+/**
+ * Builds barcode detectors restricted to a set of barcode formats. The fewer the formats, the less
+ * work the detector does per image. Factories with the same formats are equal, so they share the
+ * same detector in the {@link DetectorRegistry}.
+ */
+final class BarcodeDetectorFactory implements DetectorRegistry.Factory<Barcode> {
+    private final int formats;
+
+    /**
+     * @param formats the bitwise OR of the barcode formats detected (e.g. {@link Barcode#EAN_13}) or
+     *                {@link Barcode#ALL_FORMATS} for all formats
+     */
+    BarcodeDetectorFactory(int formats) {
+        this.formats = formats;
+    }
+
+    int getFormats() {
+        return formats;
+    }
+
+    @Override
+    public Detector<Barcode> build(Context context) {
+        return new BarcodeDetector.Builder(context).setBarcodeFormats(formats).build();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return (o instanceof BarcodeDetectorFactory && ((BarcodeDetectorFactory) o).formats == formats);
+    }
+
+    @Override
+    public int hashCode() {
+        return formats;
+    }
+}
@@ -0,0 +1,79 @@
+package uk.co.akm.test.barcodereaderdemo.barcode;
+
+import android.util.Log;
+
+/**
+ * Learns the barcode formats seen over the recent scans, so that the detection can be narrowed down
+ * to those formats. The formats are learned from the result categories of the successful scans
+ * (i.e. the format names returned by {@link BarcodeDataFormatter#getFormatString(int)}). If the
+ * narrowed detection misses repeatedly, then the formats learned are forgotten and the detection
+ * falls back to all formats, until enough scans have been seen again.
+ *
+ * All methods are thread-safe.
+ */
+final class BarcodeFormatLearner {
+    private static final String TAG = BarcodeFormatLearner.class.getSimpleName();
+
+    private static final int HISTORY_SIZE = 16;
+    private static final int MIN_SCANS = 3;
+    private static final int MAX_CONSECUTIVE_MISSES = 3;
+
+    private final int[] recentFormats = new int[HISTORY_SIZE];
+    private int nScans;
+    private int consecutiveMisses;
+
+    /**
+     * Returns the bitwise OR of the formats seen over the recent scans, restricted to the input
+     * allowed formats, or zero if not enough scans have been seen to narrow the detection down.
+     *
+     * @param allowedFormats the bitwise OR of the formats allowed or {@link com.google.android.gms.vision.barcode.Barcode#ALL_FORMATS}
+     * @return the formats learned or zero if the detection should not be narrowed down
+     */
+    synchronized int getLearnedFormats(int allowedFormats) {
+        if (nScans < MIN_SCANS) {
+            return 0;
+        }
+
+        int learned = 0;
+        for (int i=0 ; i<Math.min(nScans, HISTORY_SIZE) ; i++) {
+            learned |= recentFormats[i];
+        }
+
+        if (allowedFormats != 0) {
+            learned &= allowedFormats;
+        }
+
+        return (learned == allowedFormats ? 0 : learned); // No point in narrowing down to all the formats allowed.
+    }
+
+    /**
+     * Records a successful scan of the input category (i.e. the barcode format name).
+     */
+    synchronized void onSuccess(String category) {
+        final int format = BarcodeDataFormatter.getFormat(category);
+        if (format != 0) {
+            recentFormats[nScans%HISTORY_SIZE] = format;
+            nScans++;
+        }
+    }
+
+    /**
+     * Records a scan that the narrowed detection missed, although the detection with all the formats
+     * allowed succeeded. After a few consecutive misses, the formats learned are forgotten.
+     */
+    synchronized void onNarrowedMiss() {
+        consecutiveMisses++;
+        if (consecutiveMisses >= MAX_CONSECUTIVE_MISSES) {
+            Log.d(TAG, "Repeated misses: falling back to all formats.");
+            nScans = 0;
+            consecutiveMisses = 0;
+        }
+    }
+
+    /**
+     * Records a scan that the narrowed detection found.
+     */
+    synchronized void onNarrowedHit() {
+        consecutiveMisses = 0;
+    }
+}
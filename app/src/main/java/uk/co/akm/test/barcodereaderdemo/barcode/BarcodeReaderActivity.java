@@ -1,29 +1,233 @@
 package uk.co.akm.test.barcodereaderdemo.barcode;
 
 import android.content.Context;
+import android.content.Intent;
 import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Point;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.os.Bundle;
 import android.util.Log;
 import android.util.SparseArray;
+import android.view.Menu;
+import android.view.MenuItem;
+import android.view.View;
+import android.widget.CheckBox;
 
 import com.google.android.gms.vision.Detector;
 import com.google.android.gms.vision.Frame;
 import com.google.android.gms.vision.barcode.Barcode;
-import com.google.android.gms.vision.barcode.BarcodeDetector;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 
 import uk.co.akm.test.barcodereaderdemo.R;
 import uk.co.akm.test.barcodereaderdemo.base.AbstractVisionActivity;
+import uk.co.akm.test.barcodereaderdemo.base.AdaptiveScaleSelector;
+import uk.co.akm.test.barcodereaderdemo.base.BitmapPool;
+import uk.co.akm.test.barcodereaderdemo.base.DetectorRegistry;
+import uk.co.akm.test.barcodereaderdemo.base.LuminanceFrameBuilder;
+import uk.co.akm.test.barcodereaderdemo.base.ResultCache;
+import uk.co.akm.test.barcodereaderdemo.base.ScanMetrics;
 import uk.co.akm.test.barcodereaderdemo.base.VisionAsyncTask;
+import uk.co.akm.test.barcodereaderdemo.base.VisionScanEngine;
+import uk.co.akm.test.barcodereaderdemo.core.ScanImage;
+import uk.co.akm.test.barcodereaderdemo.core.TemporalVoter;
 
 /**
  * Simple barcode scanning example. This activity contains a single "Scan" button to scan a barcode.
  * Once the photo of the barcode has been taken, the summary of the decoded barcode information is
  * displayed on the screen (together with the barcode photo taken). Please note that all the photo-taking
  * related code is handled by the #PhotoActivity subclass. This activity contains only the barcode-reading
- * related code inside its {@link VisionAsyncTask} subclass, i.e. #BarcodeReaderTask.
+ * related code inside its {@link VisionAsyncTask} subclass, i.e. #BarcodeReaderTask. The "Live" button
+ * switches to the live scanning mode, in which the camera preview frames are decoded continuously.
+ *
+ * In the photo scanning mode, the barcode is first looked for in a region of interest of the photo,
+ * which can be specified with the {@link #EXTRA_ROI_MODE} and {@link #EXTRA_ROI_RECT} intent extras.
+ * If nothing is found in that region, then the whole photo is processed.
+ *
+ * When the "All barcodes" box is checked (or the {@link #EXTRA_MULTI_BARCODE} intent extra is set),
+ * all the barcodes detected in the photo (or preview frame) are reported, instead of only the first one.
+ *
+ * The barcode formats detected can be restricted in the settings screen (or with the
+ * {@link #EXTRA_BARCODE_FORMATS} intent extra), since the fewer the formats, the faster the detection.
+ * In the automatic format mode, the photo detection is first narrowed down to the formats seen in the
+ * recent scans and falls back to all the allowed formats if nothing is found (see {@link BarcodeFormatLearner}).
+ *
+ * In the live scanning mode, a barcode is only reported once enough of the recent preview frames
+ * agree on it (see {@link #EXTRA_LIVE_AGREEMENT}), so that a barcode misread in a single frame is
+ * never reported and a barcode read in most frames is reported without waiting for a perfect frame.
+ *
+ * Rescans of the same image file (a picked photo or a batch image) are recognized by a digest of the
+ * file, in which case the result of the previous scan is returned without running the detector (see
+ * {@link ResultCache}). Camera captures are always decoded, since each one is a new file.
  *
  *  Created by Thanos Mavroidis on 05/05/2017.
  */
 public final class BarcodeReaderActivity extends AbstractVisionActivity<Barcode> {
+    private static final String TAG = BarcodeReaderActivity.class.getSimpleName();
+
+    /**
+     * Optional string intent extra with the region of interest mode: "NONE", "FIXED" or "AUTO" (the default).
+     */
+    public static final String EXTRA_ROI_MODE = "uk.co.akm.test.barcodereaderdemo.barcode.ROI_MODE";
+
+    /**
+     * Optional float array intent extra with the fixed region of interest as fractions (0 to 1) of the
+     * photo dimensions, in the order left, top, right, bottom. Only used in the "FIXED" mode.
+     */
+    public static final String EXTRA_ROI_RECT = "uk.co.akm.test.barcodereaderdemo.barcode.ROI_RECT";
+
+    /**
+     * Optional boolean intent extra that enables the multiple barcode mode, in which all the barcodes
+     * detected are reported. The mode can also be toggled with the "All barcodes" check box.
+     */
+    public static final String EXTRA_MULTI_BARCODE = "uk.co.akm.test.barcodereaderdemo.barcode.MULTI_BARCODE";
+
+    /**
+     * Optional string array intent extra with the names of the barcode formats detected (e.g. "EAN_13",
+     * "CODE_128", "QR_CODE"). It overrides the formats selected in the settings screen.
+     */
+    public static final String EXTRA_BARCODE_FORMATS = "uk.co.akm.test.barcodereaderdemo.barcode.BARCODE_FORMATS";
+
+    /**
+     * Optional boolean intent extra that enables the automatic format mode. It overrides the mode
+     * selected in the settings screen.
+     */
+    public static final String EXTRA_AUTO_FORMATS = "uk.co.akm.test.barcodereaderdemo.barcode.AUTO_FORMATS";
+
+    /**
+     * Optional int intent extra with the number of live preview frames, out of the last 5 frames, that
+     * must agree on a barcode (i.e. its raw value and format) before it is reported. The default is 3,
+     * while 1 reports every barcode read straight away.
+     */
+    public static final String EXTRA_LIVE_AGREEMENT = "uk.co.akm.test.barcodereaderdemo.barcode.LIVE_AGREEMENT";
+
+    /**
+     * Returns the factory of the barcode detector configured in the settings screen, e.g. so that
+     * the detector can be pre-warmed before this activity is started.
+     */
+    public static DetectorRegistry.Factory<Barcode> getConfiguredDetectorFactory(Context context) {
+        return new BarcodeDetectorFactory(BarcodeSettingsActivity.readFormats(context));
+    }
+
+    private static final RectF DEFAULT_FIXED_REGION = new RectF(0.1f, 0.25f, 0.9f, 0.75f);
+    private static final int MAX_DISPLAYED_BARCODES = 10;
+    private static final int LIVE_VOTING_WINDOW = 5;
+    private static final int DEFAULT_LIVE_AGREEMENT = 3;
+
+    // Shared by all activity instances, so that the scale levels that work are remembered across scans.
+    private static final AdaptiveScaleSelector SCALE_SELECTOR = new AdaptiveScaleSelector(300, 600, 1200);
+
+    private static final int RESULT_CACHE_SIZE = 32;
+    private static final long RESULT_CACHE_TTL_MILLIS = 10*60*1000;
+
+    // Shared by all activity instances, so that rescanning the same image file returns the result straight away.
+    private static final ResultCache RESULT_CACHE = new ResultCache(RESULT_CACHE_SIZE, RESULT_CACHE_TTL_MILLIS);
+
+    // Shared by all activity instances, so that the formats seen are remembered across scans.
+    private static final BarcodeFormatLearner FORMAT_LEARNER = new BarcodeFormatLearner();
+
+    private BarcodeDetectorFactory detectorFactory;
+    private boolean autoFormats;
+    private BarcodeRegionLocator regionLocator;
+    private volatile boolean multiBarcode; // Also read by the live scanning frame processing thread.
+    private volatile TemporalVoter<BarcodeResult> liveVoter; // Replaced for each live scanning session, otherwise only used by the frame processing thread.
+    private List<BarcodeResult> liveResults; // Only used by the live scanning frame processing thread.
+    private List<BarcodeResult> burstResults; // Only used by the burst worker thread.
+
+    // The detector narrowed down to the learned formats is acquired when the learned formats change, never on the decoding path.
+    private final Object narrowedDetectorLock = new Object();
+    private BarcodeDetectorFactory narrowedFactory; // Guarded by the narrowed detector lock.
+    private Detector<Barcode> narrowedDetector; // Guarded by the narrowed detector lock.
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+
+        regionLocator = buildRegionLocator();
+        liveVoter = buildLiveVoter();
+        autoFormats = getIntent().getBooleanExtra(EXTRA_AUTO_FORMATS, BarcodeSettingsActivity.readAutoFormats(this));
+
+        multiBarcode = getIntent().getBooleanExtra(EXTRA_MULTI_BARCODE, false);
+        ((CheckBox) findViewById(R.id.multi_barcode)).setChecked(multiBarcode);
+    }
+
+    @Override
+    protected void onResume() {
+        super.onResume();
+
+        // The settings may have changed while this activity was paused, e.g. in the settings screen.
+        final boolean settingsChanged = !getDetectorFactory().equals(buildDetectorFactory()) ||
+                autoFormats != getIntent().getBooleanExtra(EXTRA_AUTO_FORMATS, BarcodeSettingsActivity.readAutoFormats(this));
+        if (settingsChanged) {
+            recreate();
+        }
+    }
+
+    @Override
+    public boolean onCreateOptionsMenu(Menu menu) {
+        super.onCreateOptionsMenu(menu);
+        getMenuInflater().inflate(R.menu.menu_barcode, menu);
+
+        return true;
+    }
+
+    @Override
+    public boolean onOptionsItemSelected(MenuItem item) {
+        if (item.getItemId() == R.id.barcode_settings) {
+            startActivity(new Intent(this, BarcodeSettingsActivity.class));
+            return true;
+        } else {
+            return super.onOptionsItemSelected(item);
+        }
+    }
+
+    // "All barcodes" check box clicked.
+    public void onMultiBarcodeToggle(View view) {
+        multiBarcode = ((CheckBox) view).isChecked();
+    }
+
+    private TemporalVoter<BarcodeResult> buildLiveVoter() {
+        final int agreement = Math.max(1, Math.min(LIVE_VOTING_WINDOW, getIntent().getIntExtra(EXTRA_LIVE_AGREEMENT, DEFAULT_LIVE_AGREEMENT)));
+
+        return new TemporalVoter<>(LIVE_VOTING_WINDOW, agreement, new TemporalVoter.KeyExtractor<BarcodeResult>() {
+            @Override
+            public String getKey(BarcodeResult candidate) {
+                return candidate.getFormat() + ":" + candidate.getRawValue();
+            }
+        });
+    }
+
+    private BarcodeRegionLocator buildRegionLocator() {
+        final BarcodeRegionLocator.Mode mode = readRegionMode(getIntent().getStringExtra(EXTRA_ROI_MODE));
+
+        final float[] rect = getIntent().getFloatArrayExtra(EXTRA_ROI_RECT);
+        final RectF fixedRegion = (rect == null || rect.length != 4 ? DEFAULT_FIXED_REGION : new RectF(rect[0], rect[1], rect[2], rect[3]));
+
+        try {
+            return new BarcodeRegionLocator(mode, fixedRegion);
+        } catch (IllegalArgumentException iae) {
+            Log.w(TAG, iae.getMessage() + " Using the default fixed region of interest.");
+            return new BarcodeRegionLocator(mode, DEFAULT_FIXED_REGION);
+        }
+    }
+
+    private BarcodeRegionLocator.Mode readRegionMode(String modeName) {
+        if (modeName == null) {
+            return BarcodeRegionLocator.Mode.AUTO;
+        }
+
+        try {
+            return BarcodeRegionLocator.Mode.valueOf(modeName);
+        } catch (IllegalArgumentException iae) {
+            Log.w(TAG, "Unknown region of interest mode: " + modeName + ". Using the automatic mode.");
+            return BarcodeRegionLocator.Mode.AUTO;
+        }
+    }
 
     @Override
     protected CharSequence getTitleText() {
@@ -46,8 +250,27 @@ public final class BarcodeReaderActivity extends AbstractVisionActivity<Barcode>
     }
 
     @Override
-    protected Detector<Barcode> buildDetector(Context context) {
-        return new BarcodeDetector.Builder(context).build();
+    protected int getPreviewViewResId() {
+        return R.id.preview;
+    }
+
+    // Also called by the super-class, before the onCreate method of this class completes.
+    @Override
+    protected DetectorRegistry.Factory<Barcode> getDetectorFactory() {
+        if (detectorFactory == null) {
+            detectorFactory = buildDetectorFactory();
+        }
+
+        return detectorFactory;
+    }
+
+    private BarcodeDetectorFactory buildDetectorFactory() {
+        final String[] formatNames = getIntent().getStringArrayExtra(EXTRA_BARCODE_FORMATS);
+        if (formatNames == null) {
+            return new BarcodeDetectorFactory(BarcodeSettingsActivity.readFormats(this));
+        } else {
+            return new BarcodeDetectorFactory(BarcodeSettingsActivity.toFormats(Arrays.asList(formatNames)));
+        }
     }
 
     @Override
@@ -56,50 +279,409 @@ public final class BarcodeReaderActivity extends AbstractVisionActivity<Barcode>
     }
 
     @Override
-    protected VisionAsyncTask buildVisionTask() {
-        return new BarcodeReaderTask(this);
+    protected AdaptiveScaleSelector getScaleSelector() {
+        return SCALE_SELECTOR;
+    }
+
+    @Override
+    protected ResultCache getResultCache() {
+        return RESULT_CACHE;
+    }
+
+    // The barcode detector only needs the luminance, so the colour depth can be safely halved.
+    @Override
+    protected Bitmap.Config getPreferredBitmapConfig() {
+        return Bitmap.Config.RGB_565;
+    }
+
+    @Override
+    public void onDestroy() {
+        synchronized (narrowedDetectorLock) {
+            releaseNarrowedDetector();
+        }
+
+        super.onDestroy();
+    }
+
+    // Called on the main thread, or on a decoding thread between batch images, but never while holding a detector monitor.
+    @Override
+    protected VisionAsyncTask<Barcode> buildVisionTask() {
+        final BarcodeFormatLearner formatLearner = (autoFormats ? FORMAT_LEARNER : null);
+        final int formats = detectorFactory.getFormats();
+        final int learnedFormats = (formatLearner == null || multiBarcode ? 0 : formatLearner.getLearnedFormats(formats));
+
+        return new BarcodeReaderTask(this, regionLocator, multiBarcode, formats, formatLearner, updateNarrowedDetector(learnedFormats));
+    }
+
+    /**
+     * Returns the detector narrowed down to the input learned formats (or null if the detection
+     * should not be narrowed down), acquiring it from the registry only if the learned formats
+     * have changed since the previous scan.
+     */
+    private Detector<Barcode> updateNarrowedDetector(int learnedFormats) {
+        synchronized (narrowedDetectorLock) {
+            if (narrowedFactory != null && narrowedFactory.getFormats() == learnedFormats) {
+                return narrowedDetector;
+            }
+
+            releaseNarrowedDetector();
+            if (learnedFormats != 0) {
+                narrowedFactory = new BarcodeDetectorFactory(learnedFormats);
+                narrowedDetector = DetectorRegistry.getInstance().acquire(this, narrowedFactory);
+            }
+
+            return narrowedDetector;
+        }
+    }
+
+    // Must be called while holding the narrowed detector lock.
+    private void releaseNarrowedDetector() {
+        if (narrowedFactory != null) {
+            DetectorRegistry.getInstance().release(narrowedFactory);
+            narrowedFactory = null;
+            narrowedDetector = null;
+        }
+    }
+
+    // The votes of the previous session are dropped, so that a barcode no longer in view is not reported straight away.
+    @Override
+    protected void onLiveScanStarted() {
+        liveVoter = buildLiveVoter(); // Not reset in place, since the frame processing thread may still be using the previous voter.
+    }
+
+    // Only the barcodes that enough recent frames agree on are reported, most voted first.
+    @Override
+    protected String decodeDetectionsAsString(SparseArray<Barcode> barcodes) {
+        final List<BarcodeResult> agreed = liveVoter.addFrame(BarcodeResult.fromDetections(barcodes));
+        if (agreed.isEmpty()) {
+            liveResults = null;
+            return null;
+        }
+
+        liveResults = reportedResults(agreed);
+        return (multiBarcode ? buildBarCodeInfo(agreed) : agreed.get(0).getDisplayText());
+    }
+
+    // The sharpest frames of a burst are too few for voting, so their barcodes are reported straight away.
+    @Override
+    protected String decodeBurstDetectionsAsString(SparseArray<Barcode> barcodes) {
+        final List<BarcodeResult> results = BarcodeResult.fromDetections(barcodes);
+        if (results.isEmpty()) {
+            burstResults = null;
+            return null;
+        }
+
+        burstResults = reportedResults(results);
+        return (multiBarcode ? buildBarCodeInfo(results) : results.get(0).getDisplayText());
+    }
+
+    private List<BarcodeResult> reportedResults(List<BarcodeResult> results) {
+        return (multiBarcode ? results : results.subList(0, 1));
+    }
+
+    @Override
+    protected List<String> getLiveResultValues() {
+        return rawValuesOf(liveResults);
+    }
+
+    @Override
+    protected String getLiveResultCategory() {
+        return formatOf(liveResults);
+    }
+
+    @Override
+    protected List<String> getBurstResultValues() {
+        return rawValuesOf(burstResults);
+    }
+
+    @Override
+    protected String getBurstResultCategory() {
+        return formatOf(burstResults);
+    }
+
+    private static List<String> rawValuesOf(List<BarcodeResult> results) {
+        if (results == null) {
+            return null;
+        }
+
+        final List<String> values = new ArrayList<>(results.size());
+        for (BarcodeResult result : results) {
+            if (result.getRawValue() != null) {
+                values.add(result.getRawValue());
+            }
+        }
+
+        return values;
+    }
+
+    // The category of a scan is the format of its first barcode, as for the photo scans.
+    private static String formatOf(List<BarcodeResult> results) {
+        return (results == null || results.isEmpty() ? null : BarcodeDataFormatter.getFormatString(results.get(0).getFormat()));
+    }
+
+    private static Barcode firstBarcode(SparseArray<Barcode> barcodes) {
+        if (barcodes != null && barcodes.size() > 0) {
+            return barcodes.valueAt(0);
+        } else {
+            return null;
+        }
+    }
+
+    private static String buildBarCodeInfo(Barcode barcode) {
+        return new BarcodeResult(barcode).getDisplayText();
+    }
+
+    /**
+     * Returns the number of barcodes followed by the display text of (at most) the first
+     * {@link #MAX_DISPLAYED_BARCODES} barcodes. The rest of the barcodes are not formatted at all.
+     */
+    private static String buildBarCodeInfo(List<BarcodeResult> results) {
+        final int nResults = results.size();
+        if (nResults == 0) {
+            return null;
+        }
+
+        final StringBuilder sb = new StringBuilder();
+        sb.append(nResults).append(nResults == 1 ? " barcode" : " barcodes").append('\n');
+
+        final int nDisplayed = Math.min(nResults, MAX_DISPLAYED_BARCODES);
+        for (int i=0 ; i<nDisplayed ; i++) {
+            sb.append('\n').append(results.get(i).getDisplayText()).append('\n');
+        }
+
+        if (nResults > nDisplayed) {
+            sb.append("\n... and ").append(nResults - nDisplayed).append(" more");
+        }
+
+        return sb.toString();
     }
 
     /**
      * Task that decodes a barcode bitmap and returns the corresponding barcode number as a string.
+     * In the multiple barcode mode, all the barcodes in the bitmap are decoded and returned.
      */
     private static final class BarcodeReaderTask extends VisionAsyncTask<Barcode> {
         private static final String TAG = BarcodeReaderTask.class.getSimpleName();
+        private static final BarcodeScanResultMapper SCAN_RESULT_MAPPER = new BarcodeScanResultMapper();
+
+        private final BarcodeRegionLocator regionLocator;
+        private final boolean multiBarcode;
+        private final int formats;
+        private final BarcodeFormatLearner formatLearner;
+        private final Detector<Barcode> narrowedDetector;
 
-        BarcodeReaderTask(AbstractVisionActivity<Barcode> parent) {
+        private String resultCategory;
+        private List<String> resultValues;
+
+        /**
+         * @param parent the parent activity
+         * @param regionLocator the locator of the region of interest of the photo
+         * @param multiBarcode true if all the barcodes detected should be reported
+         * @param formats the barcode formats detected by the detector of the parent activity
+         * @param formatLearner the learner of the recent formats (null if the detection should not be narrowed down)
+         * @param narrowedDetector the detector narrowed down to the learned formats (null if the detection should not be narrowed down)
+         */
+        BarcodeReaderTask(AbstractVisionActivity<Barcode> parent, BarcodeRegionLocator regionLocator, boolean multiBarcode, int formats, BarcodeFormatLearner formatLearner, Detector<Barcode> narrowedDetector) {
             super(parent);
+
+            this.regionLocator = regionLocator;
+            this.multiBarcode = multiBarcode;
+            this.formats = formats;
+            this.formatLearner = formatLearner;
+            this.narrowedDetector = narrowedDetector;
         }
 
+        /**
+         * In the automatic format mode, the bitmap is decoded with a detector narrowed down to the
+         * formats learned first and only decoded with the input detector if nothing is found. The
+         * narrowed detection is charged with a miss only if the input detector then finds a barcode:
+         * a bitmap without any barcode (e.g. a blank photo, or a scale level too small to decode) is
+         * not the fault of the narrowing. Since a successful decoding ends the scan, at most one miss
+         * is recorded per scan, whatever the number of scale levels tried.
+         */
         @Override
         protected String decodeBitmapAsString(Detector<Barcode> detector, Bitmap bitmap) {
+            final boolean narrowed = (formatLearner != null && narrowedDetector != null && narrowedDetector.isOperational());
+            if (narrowed) {
+                final String text = decodeWithNarrowedDetector(bitmap);
+                if (text != null) {
+                    formatLearner.onNarrowedHit();
+                    formatLearner.onSuccess(resultCategory);
+                    return text;
+                }
+
+                if (isCancelled()) {
+                    return null;
+                }
+                Log.d(TAG, "Nothing found in the formats learned. Trying all the allowed formats.");
+            }
+
+            final String text = decode(detector, bitmap);
+            if (text != null && formatLearner != null) {
+                if (narrowed) {
+                    formatLearner.onNarrowedMiss();
+                }
+                formatLearner.onSuccess(resultCategory);
+            }
+
+            return text;
+        }
+
+        // The narrowed detector is acquired by the parent activity, so no registry lock is taken while holding the detector monitor.
+        private String decodeWithNarrowedDetector(Bitmap bitmap) {
+            synchronized (narrowedDetector) {
+                return decode(narrowedDetector, bitmap);
+            }
+        }
+
+        private String decode(Detector<Barcode> detector, Bitmap bitmap) {
+            if (multiBarcode) {
+                final List<BarcodeResult> results = readAllBarCodes(detector, bitmap);
+                if (!results.isEmpty()) {
+                    resultCategory = BarcodeDataFormatter.getFormatString(results.get(0).getFormat());
+                    resultValues = new ArrayList<>(results.size());
+                    for (BarcodeResult result : results) {
+                        resultValues.add(result.getRawValue());
+                    }
+                }
+
+                final long start = ScanMetrics.getInstance().start();
+                try {
+                    return buildBarCodeInfo(results);
+                } finally {
+                    ScanMetrics.getInstance().stop(ScanMetrics.Stage.FORMAT, start);
+                }
+            }
+
             final Barcode barcode = readBarCode(detector, bitmap);
             if (barcode == null) {
                 Log.d(TAG, "Could not decode the bitmap read.");
                 return null;
             } else {
-                return buildBarCodeInfo(barcode);
+                resultCategory = BarcodeDataFormatter.getFormatString(barcode);
+                resultValues = (barcode.rawValue == null ? null : Collections.singletonList(barcode.rawValue));
+
+                final long start = ScanMetrics.getInstance().start();
+                try {
+                    return buildBarCodeInfo(barcode);
+                } finally {
+                    ScanMetrics.getInstance().stop(ScanMetrics.Stage.FORMAT, start);
+                }
             }
         }
 
+        @Override
+        protected String getResultCategory() {
+            return resultCategory;
+        }
+
+        @Override
+        protected List<String> getResultValues() {
+            return resultValues;
+        }
+
+        @Override
+        protected String getCacheVariant() {
+            return (multiBarcode ? "multi:" : "single:") + formats;
+        }
+
+        // A fixed region of interest is read on its own from the stored photo, before the whole photo.
+        @Override
+        protected Rect getDecodeRegion(int imageWidth, int imageHeight) {
+            return (multiBarcode ? null : regionLocator.getFixedRegion(imageWidth, imageHeight));
+        }
+
+        // The region of interest is not used here, since the barcodes could be anywhere in the photo.
+        private List<BarcodeResult> readAllBarCodes(Detector<Barcode> detector, Bitmap barcodeImage) {
+            return BarcodeResult.fromDetections(detectInWhole(detector, barcodeImage));
+        }
+
         private Barcode readBarCode(Detector<Barcode> detector, Bitmap barcodeImage) {
-            final Frame frame = new Frame.Builder().setBitmap(barcodeImage).build();
-            final SparseArray<Barcode> barcodes = detector.detect(frame);
+            final Rect region = (regionLocator.getMode() == BarcodeRegionLocator.Mode.FIXED ? null : regionLocator.locate(barcodeImage)); // A fixed region is read on its own (see getDecodeRegion).
+            if (region != null) {
+                final Barcode barcode = firstBarcode(detectInRegion(detector, barcodeImage, region));
+                if (barcode != null) {
+                    return barcode;
+                }
+
+                if (isCancelled()) {
+                    return null;
+                }
+
+                Log.d(TAG, "No barcode found in the region of interest. Processing the whole photo.");
+            }
 
-            if (barcodes != null && barcodes.size() > 0) {
-                return barcodes.valueAt(0);
+            return firstBarcode(detectInWhole(detector, barcodeImage));
+        }
+
+        private SparseArray<Barcode> detectInWhole(Detector<Barcode> detector, Bitmap barcodeImage) {
+            if (LuminanceFrameBuilder.isEnabled()) {
+                return detect(detector, LuminanceFrameBuilder.forCurrentThread().buildImage(barcodeImage, null, 0));
             } else {
-                return null;
+                return detect(detector, new Frame.Builder().setBitmap(barcodeImage).build());
+            }
+        }
+
+        /**
+         * Runs the detector on the input region of the bitmap only. The coordinates of the barcodes
+         * detected are translated back to the coordinates of the whole bitmap.
+         */
+        private SparseArray<Barcode> detectInRegion(Detector<Barcode> detector, Bitmap barcodeImage, Rect region) {
+            final SparseArray<Barcode> barcodes;
+            if (LuminanceFrameBuilder.isEnabled()) {
+                barcodes = detect(detector, LuminanceFrameBuilder.forCurrentThread().buildImage(barcodeImage, region, 0)); // Cropped during the conversion.
+            } else {
+                barcodes = detectInRegionBitmap(detector, barcodeImage, region);
+            }
+
+            if (barcodes != null) {
+                for (int i=0 ; i<barcodes.size() ; i++) {
+                    offsetCornerPoints(barcodes.valueAt(i), region.left, region.top);
+                }
             }
+
+            return barcodes;
         }
 
-        private String buildBarCodeInfo(Barcode barcode) {
-            final String formattedRawValue = BarcodeDataFormatter.formatBarCodeNumber(barcode.rawValue);
+        private SparseArray<Barcode> detectInRegionBitmap(Detector<Barcode> detector, Bitmap barcodeImage, Rect region) {
+            final BitmapPool bitmapPool = BitmapPool.getInstance();
+            final Bitmap regionImage = bitmapPool.get(region.width(), region.height(), barcodeImage.getConfig());
+            try {
+                new Canvas(regionImage).drawBitmap(barcodeImage, region, new Rect(0, 0, region.width(), region.height()), null);
 
-            final String format = BarcodeDataFormatter.getFormatString(barcode);
-            final String valueFormat = BarcodeDataFormatter.getValueFormatString(barcode);
-            final String formats = ("(" + format + ", " + valueFormat + ")");
+                return detect(detector, new Frame.Builder().setBitmap(regionImage).build());
+            } finally {
+                bitmapPool.put(regionImage);
+            }
+        }
 
-            return (formattedRawValue + "\n" + formats);
+        private SparseArray<Barcode> detect(Detector<Barcode> detector, Frame frame) {
+            final ScanMetrics metrics = ScanMetrics.getInstance();
+            final long start = metrics.start();
+            try {
+                return detector.detect(frame);
+            } finally {
+                metrics.stop(ScanMetrics.Stage.DETECT, start);
+            }
+        }
+
+        // The luminance frames go through the Vision adapter, which hands their NV21 data to the detector as they are.
+        private SparseArray<Barcode> detect(Detector<Barcode> detector, ScanImage image) {
+            final ScanMetrics metrics = ScanMetrics.getInstance();
+            final long start = metrics.start();
+            try {
+                return new VisionScanEngine<>(detector, SCAN_RESULT_MAPPER).detect(image);
+            } finally {
+                metrics.stop(ScanMetrics.Stage.DETECT, start);
+            }
+        }
+
+        private void offsetCornerPoints(Barcode barcode, int dx, int dy) {
+            if (barcode != null && barcode.cornerPoints != null) {
+                for (Point point : barcode.cornerPoints) {
+                    point.offset(dx, dy);
+                }
+            }
         }
     }
 }
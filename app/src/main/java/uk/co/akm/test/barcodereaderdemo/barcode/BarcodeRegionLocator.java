@@ -0,0 +1,192 @@
+package uk.co.akm.test.barcodereaderdemo.barcode;
+
+import android.graphics.Bitmap;
+import android.graphics.Rect;
+import android.graphics.RectF;
+
+import uk.co.akm.test.barcodereaderdemo.core.Luminance;
+
+/**
+ * Locates the region of interest (ROI) of a barcode photo, i.e. the part of the photo that most
+ * likely contains the barcode, so that the detector only has to process a fraction of the pixels.
+ * The region is either fixed (a rectangle specified as fractions of the photo dimensions) or it is
+ * located automatically by a cheap gradient density pass: barcodes consist of many sharp light/dark
+ * transitions, so the region with the highest density of strong luminance gradients is selected.
+ */
+final class BarcodeRegionLocator {
+    enum Mode {
+        /** No region of interest: the whole photo is processed. */
+        NONE,
+        /** Fixed region of interest, specified as fractions of the photo dimensions. */
+        FIXED,
+        /** Region of interest located automatically from the luminance gradient density. */
+        AUTO
+    }
+
+    private static final int BLOCK_SIZE = 32;
+    private static final int SAMPLING_STRIDE = 4;
+    private static final int MIN_GRADIENT = 48; // Luminance difference (0-255) of a strong transition.
+    private static final float BLOCK_DENSITY_THRESHOLD = 0.5f; // Relative to the densest block.
+    private static final float MAX_AREA_FRACTION = 0.8f; // Larger regions are not worth cropping.
+
+    private final Mode mode;
+    private final RectF fixedRegion;
+
+    /**
+     * @param mode the region of interest mode
+     * @param fixedRegion the region of interest as fractions (0 to 1) of the photo dimensions; only
+     *                    used in the {@link Mode#FIXED} mode
+     */
+    BarcodeRegionLocator(Mode mode, RectF fixedRegion) {
+        if (mode == Mode.FIXED && !isValidFraction(fixedRegion)) {
+            throw new IllegalArgumentException("Illegal fixed region of interest: " + fixedRegion);
+        }
+
+        this.mode = mode;
+        this.fixedRegion = fixedRegion;
+    }
+
+    private static boolean isValidFraction(RectF region) {
+        return (region != null && region.left >= 0 && region.top >= 0 && region.right <= 1 && region.bottom <= 1 && region.left < region.right && region.top < region.bottom);
+    }
+
+    Mode getMode() {
+        return mode;
+    }
+
+    /**
+     * Returns the fixed region of interest of a photo with the input dimensions or null if the mode
+     * is not {@link Mode#FIXED}. Unlike {@link #locate(Bitmap)}, this does not need the photo pixels,
+     * so only the region can be read from the stored photo.
+     */
+    Rect getFixedRegion(int photoWidth, int photoHeight) {
+        return (mode == Mode.FIXED ? toPixels(fixedRegion, photoWidth, photoHeight) : null);
+    }
+
+    /**
+     * Returns the region of interest in the input photo or null if the whole photo should be processed.
+     */
+    Rect locate(Bitmap photo) {
+        switch (mode) {
+            case FIXED: return toPixels(fixedRegion, photo.getWidth(), photo.getHeight());
+            case AUTO: return locateByGradientDensity(photo);
+
+            default: return null;
+        }
+    }
+
+    private static Rect toPixels(RectF fraction, int width, int height) {
+        return new Rect(Math.round(fraction.left*width), Math.round(fraction.top*height), Math.round(fraction.right*width), Math.round(fraction.bottom*height));
+    }
+
+    private Rect locateByGradientDensity(Bitmap photo) {
+        final int width = photo.getWidth();
+        final int height = photo.getHeight();
+        final int nColumns = (width + BLOCK_SIZE - 1)/BLOCK_SIZE;
+        final int nRows = (height + BLOCK_SIZE - 1)/BLOCK_SIZE;
+        if (nColumns < 3 || nRows < 3) {
+            return null;
+        }
+
+        final int[] density = measureGradientDensity(photo, nColumns, nRows);
+        final int densest = indexOfMax(density);
+        if (density[densest] == 0) {
+            return null;
+        }
+
+        final Rect blocks = growRegion(density, nColumns, nRows, densest, Math.max(1, Math.round(density[densest]*BLOCK_DENSITY_THRESHOLD)));
+        blocks.inset(-1, -1); // One block margin, so that the quiet zone and any partial bars are included.
+        blocks.intersect(0, 0, nColumns, nRows);
+
+        final Rect region = new Rect(blocks.left*BLOCK_SIZE, blocks.top*BLOCK_SIZE, Math.min(width, blocks.right*BLOCK_SIZE), Math.min(height, blocks.bottom*BLOCK_SIZE));
+        if (region.width()*region.height() > MAX_AREA_FRACTION*width*height) {
+            return null;
+        } else {
+            return region;
+        }
+    }
+
+    // Counts the strong horizontal transitions along sampled rows and the strong vertical transitions along sampled columns of each block.
+    private int[] measureGradientDensity(Bitmap photo, int nColumns, int nRows) {
+        final int width = photo.getWidth();
+        final int height = photo.getHeight();
+        final int[] density = new int[nColumns*nRows];
+
+        final int[] line = new int[Math.max(width, height)];
+        for (int y=0 ; y<height ; y+=SAMPLING_STRIDE) {
+            photo.getPixels(line, 0, width, 0, y, width, 1);
+            final int rowOffset = (y/BLOCK_SIZE)*nColumns;
+            accumulateTransitions(line, width, density, rowOffset, 1);
+        }
+
+        for (int x=0 ; x<width ; x+=SAMPLING_STRIDE) {
+            photo.getPixels(line, 0, 1, x, 0, 1, height);
+            accumulateTransitions(line, height, density, x/BLOCK_SIZE, nColumns);
+        }
+
+        return density;
+    }
+
+    private void accumulateTransitions(int[] line, int length, int[] density, int blockOffset, int blockStep) {
+        int previous = Luminance.fromArgb(line[0]);
+        for (int i=1 ; i<length ; i++) {
+            final int current = Luminance.fromArgb(line[i]);
+            if (Math.abs(current - previous) >= MIN_GRADIENT) {
+                density[blockOffset + (i/BLOCK_SIZE)*blockStep]++;
+            }
+            previous = current;
+        }
+    }
+
+    private static int indexOfMax(int[] values) {
+        int index = 0;
+        for (int i=1 ; i<values.length ; i++) {
+            if (values[i] > values[index]) {
+                index = i;
+            }
+        }
+
+        return index;
+    }
+
+    // Flood fills from the seed block over the neighbouring blocks with at least the threshold density and returns their bounds (in blocks).
+    private Rect growRegion(int[] density, int nColumns, int nRows, int seed, int threshold) {
+        final boolean[] visited = new boolean[density.length];
+        final int[] stack = new int[density.length];
+        int stackSize = 0;
+
+        final Rect bounds = new Rect(seed%nColumns, seed/nColumns, seed%nColumns + 1, seed/nColumns + 1);
+        stack[stackSize++] = seed;
+        visited[seed] = true;
+        while (stackSize > 0) {
+            final int block = stack[--stackSize];
+            final int column = block%nColumns;
+            final int row = block/nColumns;
+            bounds.union(column, row, column + 1, row + 1);
+
+            if (column > 0) {
+                stackSize = push(block - 1, density, threshold, visited, stack, stackSize);
+            }
+            if (column < nColumns - 1) {
+                stackSize = push(block + 1, density, threshold, visited, stack, stackSize);
+            }
+            if (row > 0) {
+                stackSize = push(block - nColumns, density, threshold, visited, stack, stackSize);
+            }
+            if (row < nRows - 1) {
+                stackSize = push(block + nColumns, density, threshold, visited, stack, stackSize);
+            }
+        }
+
+        return bounds;
+    }
+
+    private static int push(int block, int[] density, int threshold, boolean[] visited, int[] stack, int stackSize) {
+        if (!visited[block] && density[block] >= threshold) {
+            visited[block] = true;
+            stack[stackSize++] = block;
+        }
+
+        return stackSize;
+    }
+}
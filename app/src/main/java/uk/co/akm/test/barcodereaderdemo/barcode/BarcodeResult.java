@@ -0,0 +1,90 @@
+package uk.co.akm.test.barcodereaderdemo.barcode;
+
+import android.graphics.Rect;
+import android.util.SparseArray;
+
+import com.google.android.gms.vision.barcode.Barcode;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Structured result of a single decoded barcode. The display text is built lazily, so that the
+ * formatting cost is only paid for the results actually displayed.
+ */
+final class BarcodeResult {
+    private final String rawValue;
+    private final int format;
+    private final int valueFormat;
+    private final Rect boundingBox;
+
+    private String displayText;
+
+    /**
+     * Returns the results of all the barcodes detected, deduplicated by their raw value, in the order
+     * they were detected. Barcodes without a raw value are ignored.
+     */
+    static List<BarcodeResult> fromDetections(SparseArray<Barcode> barcodes) {
+        if (barcodes == null || barcodes.size() == 0) {
+            return new ArrayList<>(0);
+        }
+
+        final Map<String, BarcodeResult> results = new LinkedHashMap<>(barcodes.size()*2);
+        for (int i=0 ; i<barcodes.size() ; i++) {
+            final Barcode barcode = barcodes.valueAt(i);
+            if (barcode != null && barcode.rawValue != null && !results.containsKey(barcode.rawValue)) {
+                results.put(barcode.rawValue, new BarcodeResult(barcode));
+            }
+        }
+
+        return new ArrayList<>(results.values());
+    }
+
+    BarcodeResult(Barcode barcode) {
+        this.rawValue = barcode.rawValue;
+        this.format = barcode.format;
+        this.valueFormat = barcode.valueFormat;
+        this.boundingBox = barcode.getBoundingBox();
+    }
+
+    String getRawValue() {
+        return rawValue;
+    }
+
+    /**
+     * Returns the barcode format (one of the {@link Barcode} format constants, e.g. {@link Barcode#EAN_13}).
+     */
+    int getFormat() {
+        return format;
+    }
+
+    /**
+     * Returns the barcode value format (one of the {@link Barcode} value format constants, e.g. {@link Barcode#PRODUCT}).
+     */
+    int getValueFormat() {
+        return valueFormat;
+    }
+
+    /**
+     * Returns the bounding box of the barcode in the photo coordinates (or null if not known).
+     */
+    Rect getBoundingBox() {
+        return boundingBox;
+    }
+
+    /**
+     * Returns the formatted raw value followed by the format names on a second line.
+     */
+    String getDisplayText() {
+        if (displayText == null) {
+            final StringBuilder sb = new StringBuilder((rawValue == null ? 4 : rawValue.length()*7/6) + 32);
+            BarcodeDataFormatter.appendBarCodeNumber(rawValue, sb);
+            sb.append("\n(").append(BarcodeDataFormatter.getFormatString(format)).append(", ").append(BarcodeDataFormatter.getValueFormatString(valueFormat)).append(')');
+            displayText = sb.toString();
+        }
+
+        return displayText;
+    }
+}
@@ -0,0 +1,29 @@
+package uk.co.akm.test.barcodereaderdemo.barcode;
+
+import android.graphics.Rect;
+
+import com.google.android.gms.vision.barcode.Barcode;
+
+import uk.co.akm.test.barcodereaderdemo.base.VisionScanEngine;
+import uk.co.akm.test.barcodereaderdemo.core.ScanResult;
+
+/**
+ * Converts the barcodes detected by the Google Vision API to platform-independent scan results.
+ */
+final class BarcodeScanResultMapper implements VisionScanEngine.ResultMapper<Barcode> {
+
+    @Override
+    public ScanResult toScanResult(Barcode barcode) {
+        if (barcode == null || barcode.rawValue == null) {
+            return null;
+        }
+
+        final Rect box = barcode.getBoundingBox();
+        final String format = BarcodeDataFormatter.getFormatString(barcode);
+        if (box == null) {
+            return new ScanResult(barcode.rawValue, format, 0, 0, 0, 0);
+        } else {
+            return new ScanResult(barcode.rawValue, format, box.left, box.top, box.right, box.bottom);
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package uk.co.akm.test.barcodereaderdemo.barcode;
+
+import android.app.Activity;
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Bundle;
+import android.preference.PreferenceFragment;
+import android.preference.PreferenceManager;
+import android.util.Log;
+
+import com.google.android.gms.vision.barcode.Barcode;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Set;
+
+import uk.co.akm.test.barcodereaderdemo.R;
+
+/**
+ * Settings screen of the barcode reader: the barcode formats detected (all formats if none is
+ * selected) and the automatic mode, in which the detection is narrowed down to the formats seen
+ * in the recent scans.
+ */
+public final class BarcodeSettingsActivity extends Activity {
+    private static final String TAG = BarcodeSettingsActivity.class.getSimpleName();
+
+    static final String PREF_BARCODE_FORMATS = "barcode_formats";
+    static final String PREF_AUTO_FORMATS = "barcode_auto_formats";
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+
+        if (savedInstanceState == null) {
+            getFragmentManager().beginTransaction().replace(android.R.id.content, new SettingsFragment()).commit();
+        }
+    }
+
+    /**
+     * Returns the bitwise OR of the barcode formats selected in the settings or
+     * {@link Barcode#ALL_FORMATS} if none is selected.
+     */
+    static int readFormats(Context context) {
+        final Set<String> names = getPreferences(context).getStringSet(PREF_BARCODE_FORMATS, Collections.<String>emptySet());
+
+        return toFormats(names);
+    }
+
+    /**
+     * Returns the bitwise OR of the barcode formats with the input names or {@link Barcode#ALL_FORMATS}
+     * if the input is empty or contains no known format.
+     */
+    static int toFormats(Collection<String> names) {
+        int formats = Barcode.ALL_FORMATS;
+        for (String name : names) {
+            final int format = BarcodeDataFormatter.getFormat(name);
+            if (format == 0) {
+                Log.w(TAG, "Unknown barcode format ignored: " + name);
+            } else {
+                formats |= format;
+            }
+        }
+
+        return formats;
+    }
+
+    /**
+     * Returns true if the automatic format mode is selected in the settings.
+     */
+    static boolean readAutoFormats(Context context) {
+        return getPreferences(context).getBoolean(PREF_AUTO_FORMATS, false);
+    }
+
+    private static SharedPreferences getPreferences(Context context) {
+        return PreferenceManager.getDefaultSharedPreferences(context.getApplicationContext());
+    }
+
+    public static final class SettingsFragment extends PreferenceFragment {
+
+        @Override
+        public void onCreate(Bundle savedInstanceState) {
+            super.onCreate(savedInstanceState);
+
+            addPreferencesFromResource(R.xml.barcode_preferences);
+        }
+    }
+}
@@ -1,23 +1,61 @@
 package uk.co.akm.test.barcodereaderdemo.base;
 
-import android.content.Context;
+import android.Manifest;
+import android.content.ClipData;
+import android.content.Intent;
+import android.content.pm.PackageManager;
 import android.graphics.Bitmap;
+import android.net.Uri;
 import android.os.Bundle;
 import android.support.annotation.IdRes;
 import android.support.annotation.LayoutRes;
+import android.support.v4.app.ActivityCompat;
+import android.support.v4.content.ContextCompat;
 import android.util.Log;
+import android.util.SparseArray;
+import android.view.Menu;
+import android.view.MenuItem;
 import android.view.View;
 import android.widget.ImageView;
 import android.widget.TextView;
 
+import com.google.android.gms.vision.CameraSource;
 import com.google.android.gms.vision.Detector;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import uk.co.akm.test.barcodereaderdemo.R;
+
 /**
  * This is a simple demo activity that uses the Google Vision API to process a photo taken by the
  * user and display the processing result as a single string. For example, the string could be the
  * number of a barcode or the text read by some OCR function. The activity contains a single text
  * view that will display the decoding result and an image view to display the photo taken.
  *
+ * Subclasses that provide a {@link CameraSourcePreview} (see {@link #getPreviewViewResId()}) also
+ * support a live scanning mode, in which the camera preview frames are fed straight into the
+ * detector without storing or decoding any image file. The single photo scanning mode remains
+ * available as a fallback. These subclasses also support a burst mode (see {@link BurstFrameSelector}):
+ * a short burst of preview frames is captured, ranked by sharpness and only the sharpest frames are
+ * passed to the detector, so that a blurry capture does not fail the scan.
+ *
+ * The detector is acquired from the process-wide {@link DetectorRegistry}, so it is shared with
+ * (and kept hot for) later instances of the activity, e.g. after a configuration change.
+ *
+ * The options menu controls the {@link ScanMetrics}: recording can be switched on or off and the
+ * summary of the metrics recorded so far can be displayed (and logged) on demand. The menu also
+ * switches between bitmap and {@link LuminanceFrameBuilder luminance} detector frames, so that the
+ * throughput of the two can be compared.
+ *
+ * A batch of existing images can also be decoded offline (see {@link BatchScanner}): either the
+ * images picked through the options menu or the images in the directory specified with the
+ * {@link #EXTRA_BATCH_DIRECTORY} intent extra. The batch is cancelled when the activity is paused
+ * and resumed (skipping the images already decoded) when the activity is resumed.
+ *
  * @param <D> the object detected by the Gogle Vision API inside the image. Examples of such
  *           parameters are {@link com.google.android.gms.vision.barcode.Barcode}
  *           and {@link com.google.android.gms.vision.text.TextBlock}
@@ -27,10 +65,48 @@ import com.google.android.gms.vision.Detector;
 public abstract class AbstractVisionActivity<D> extends PhotoActivity {
     private static final String TAG = AbstractVisionActivity.class.getSimpleName();
 
+    /**
+     * Optional string intent extra with the absolute path of a directory of images to decode in
+     * batch mode. The directory must be readable by the app (e.g. it can be under the external
+     * files directory of the app).
+     */
+    public static final String EXTRA_BATCH_DIRECTORY = "uk.co.akm.test.barcodereaderdemo.base.BATCH_DIRECTORY";
+
+    /**
+     * Optional string intent extra with the absolute path of the batch results file. Results are
+     * written as CSV if the file name ends with ".csv" and as JSON lines otherwise. The default file
+     * is under the external files directory of the app and is named after the activity.
+     */
+    public static final String EXTRA_BATCH_RESULTS_FILE = "uk.co.akm.test.barcodereaderdemo.base.BATCH_RESULTS_FILE";
+
+    private static final int REQUEST_CAMERA_PERMISSION = 7352;
+    private static final int REQUEST_PICK_BATCH_IMAGES = 7353;
+
+    private static final int LIVE_PREVIEW_WIDTH = 1280;
+    private static final int LIVE_PREVIEW_HEIGHT = 720;
+    private static final float LIVE_PREVIEW_FPS = 15.0f;
+    private static final int LIVE_FRAME_BUFFER_SIZE = 2;
+    private static final int BURST_LENGTH = 8;
+    private static final int BURST_FRAMES_DETECTED = 2;
+
     private TextView textView;
     private ImageView photoView;
+    private CameraSourcePreview preview;
+
+    private Bitmap displayedPhoto;
 
     private Detector<D> detector;
+    private CameraSource cameraSource;
+    private boolean liveScanning;
+
+    private BurstFrameSelector<D> burstSelector;
+    private CameraSource burstCameraSource;
+    private boolean burstScanning;
+    private boolean burstRequested;
+    private CameraSource previewSource; // The camera source started last in the preview.
+
+    private List<Uri> batchImages;
+    private BatchScanner<D> batchScanner;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -43,6 +119,16 @@ public abstract class AbstractVisionActivity<D> extends PhotoActivity {
 
         textView = (TextView) findViewById(getTextViewResId());
         photoView = (ImageView) findViewById(getPhotoViewResId());
+
+        final int previewResId = getPreviewViewResId();
+        if (previewResId != 0) {
+            preview = (CameraSourcePreview) findViewById(previewResId);
+        }
+
+        final String batchDirectory = getIntent().getStringExtra(EXTRA_BATCH_DIRECTORY);
+        if (batchDirectory != null) {
+            batchImages = BatchScanner.listImageFiles(new File(batchDirectory));
+        }
     }
 
     protected abstract CharSequence getTitleText();
@@ -56,34 +142,132 @@ public abstract class AbstractVisionActivity<D> extends PhotoActivity {
     @IdRes
     protected abstract int getPhotoViewResId();
 
-    private Detector<D> setUpDetector() {
-        final Detector<D> detector = buildDetector(getApplicationContext());
-        if (detector == null) {
-            return null;
-        }
+    /**
+     * Override this method to enable the live scanning mode. The returned resource id must refer to
+     * a {@link CameraSourcePreview} in the activity layout. The default implementation returns zero,
+     * which means that live scanning is not supported.
+     */
+    @IdRes
+    protected int getPreviewViewResId() {
+        return 0;
+    }
 
+    private Detector<D> setUpDetector() {
+        final DetectorRegistry registry = DetectorRegistry.getInstance();
+        final Detector<D> detector = registry.acquire(this, getDetectorFactory());
         if (detector.isOperational()) {
             return detector;
         } else {
             Log.d(TAG, "Detector is not operational.");
+            registry.release(getDetectorFactory());
             return null;
         }
     }
 
     /**
-     * Returns a suitable Google Vision API detector.
+     * Returns the factory of a suitable Google Vision API detector. The factory identifies the
+     * detector in the {@link DetectorRegistry}, so it must always be the same (shared) instance.
      *
-     * @param context the context required to build the detector
-     * @return a suitable Google Vision API detector
+     * @return the factory of a suitable Google Vision API detector
+     */
+    protected abstract DetectorRegistry.Factory<D> getDetectorFactory();
+
+    /**
+     * Returns a {@link VisionAsyncTask} instance that decodes the stored image file with the detector
+     * of this activity (see {@link PhotoActivity#buildVisionTask()}).
      */
-    protected abstract Detector<D> buildDetector(Context context);
+    @Override
+    protected abstract VisionAsyncTask<D> buildVisionTask();
+
+    @Override
+    public boolean onCreateOptionsMenu(Menu menu) {
+        getMenuInflater().inflate(R.menu.menu_vision, menu);
+
+        return true;
+    }
+
+    @Override
+    public boolean onPrepareOptionsMenu(Menu menu) {
+        menu.findItem(R.id.metrics_enabled).setChecked(ScanMetrics.getInstance().isEnabled());
+        menu.findItem(R.id.luminance_frames).setChecked(LuminanceFrameBuilder.isEnabled());
+
+        return super.onPrepareOptionsMenu(menu);
+    }
+
+    @Override
+    public boolean onOptionsItemSelected(MenuItem item) {
+        final ScanMetrics metrics = ScanMetrics.getInstance();
+        switch (item.getItemId()) {
+            case R.id.metrics_enabled:
+                metrics.setEnabled(!item.isChecked());
+                item.setChecked(metrics.isEnabled());
+                return true;
+            case R.id.luminance_frames:
+                LuminanceFrameBuilder.setEnabled(!item.isChecked());
+                item.setChecked(LuminanceFrameBuilder.isEnabled());
+                return true;
+            case R.id.show_metrics:
+                metrics.logSummary();
+                textView.setText(getResultCache() == null ? metrics.getSummary() : metrics.getSummary() + "\n\n" + getResultCache().getStatsSummary());
+                return true;
+            case R.id.reset_metrics:
+                metrics.reset();
+                return true;
+            case R.id.batch_import:
+                pickBatchImages();
+                return true;
+            case R.id.scan_history:
+                startActivity(new Intent(this, ScanHistoryActivity.class));
+                return true;
+
+            default: return super.onOptionsItemSelected(item);
+        }
+    }
+
+    @Override
+    protected void onResume() {
+        super.onResume();
+
+        if (batchImages != null) {
+            startBatch(); // Stops any live scanning first, so the camera is not restarted below.
+        }
+
+        if (liveScanning) {
+            startCameraSource();
+        }
+    }
+
+    @Override
+    protected void onPause() {
+        super.onPause();
+
+        if (preview != null) {
+            preview.stop();
+        }
+
+        stopBurstScan();
+
+        if (batchScanner != null) {
+            batchScanner.cancel();
+            batchScanner = null;
+        }
+    }
 
     @Override
     public void onDestroy() {
         super.onDestroy();
 
+        if (preview != null) {
+            preview.release(); // Releases the camera source started last only.
+            releaseIfNotInPreview(cameraSource);
+            releaseIfNotInPreview(burstCameraSource);
+            cameraSource = null;
+            burstCameraSource = null;
+            previewSource = null;
+        }
+
         if (detector != null) {
-            detector.release();
+            DetectorRegistry.getInstance().release(getDetectorFactory());
             detector = null;
         }
     }
@@ -93,15 +277,312 @@ public abstract class AbstractVisionActivity<D> extends PhotoActivity {
         if (detector == null) {
             textView.setText("Could not set up the detector.");
         } else {
+            stopLiveScan(); // The camera app cannot take the photo while we hold the camera.
+            stopBurstScan();
+
             final int scale = getPhotoScale();
             if (scale > 0) {
-                takePhoto(600, 600);
+                takePhoto(scale, scale);
             } else {
                 takePhoto();
             }
         }
     }
 
+    // Live button clicked.
+    public final void onLiveScan(View view) {
+        if (preview == null) {
+            textView.setText("Live scanning is not supported.");
+        } else if (detector == null) {
+            textView.setText("Could not set up the detector.");
+        } else if (liveScanning) {
+            stopLiveScan();
+        } else if (hasCameraPermission()) {
+            startLiveScan();
+        } else {
+            burstRequested = false;
+            ActivityCompat.requestPermissions(this, new String[]{Manifest.permission.CAMERA}, REQUEST_CAMERA_PERMISSION);
+        }
+    }
+
+    // Burst button clicked.
+    public final void onBurstScan(View view) {
+        if (preview == null) {
+            textView.setText("Burst scanning is not supported.");
+        } else if (detector == null) {
+            textView.setText("Could not set up the detector.");
+        } else if (burstScanning) {
+            Log.d(TAG, "Burst already in progress.");
+        } else if (hasCameraPermission()) {
+            startBurstScan();
+        } else {
+            burstRequested = true;
+            ActivityCompat.requestPermissions(this, new String[]{Manifest.permission.CAMERA}, REQUEST_CAMERA_PERMISSION);
+        }
+    }
+
+    private boolean hasCameraPermission() {
+        return (ContextCompat.checkSelfPermission(this, Manifest.permission.CAMERA) == PackageManager.PERMISSION_GRANTED);
+    }
+
+    private void pickBatchImages() {
+        final Intent pickIntent = new Intent(Intent.ACTION_GET_CONTENT)
+                .setType("image/*")
+                .addCategory(Intent.CATEGORY_OPENABLE)
+                .putExtra(Intent.EXTRA_ALLOW_MULTIPLE, true);
+
+        if (pickIntent.resolveActivity(getPackageManager()) != null) {
+            startActivityForResult(pickIntent, REQUEST_PICK_BATCH_IMAGES);
+        } else {
+            textView.setText("No app found to pick images.");
+        }
+    }
+
+    // The batch is started when the activity is resumed, i.e. straight after this call.
+    @Override
+    protected void onActivityResult(int requestCode, int resultCode, Intent data) {
+        if (requestCode == REQUEST_PICK_BATCH_IMAGES) {
+            if (resultCode == RESULT_OK && data != null) {
+                batchImages = readPickedImages(data);
+            }
+        } else {
+            super.onActivityResult(requestCode, resultCode, data);
+        }
+    }
+
+    private List<Uri> readPickedImages(Intent data) {
+        final List<Uri> images = new ArrayList<>();
+        final ClipData clipData = data.getClipData();
+        if (clipData != null) {
+            for (int i=0 ; i<clipData.getItemCount() ; i++) {
+                images.add(clipData.getItemAt(i).getUri());
+            }
+        } else if (data.getData() != null) {
+            images.add(data.getData());
+        }
+
+        return images;
+    }
+
+    private void startBatch() {
+        stopLiveScan(); // The batch decoding shares the detector with the camera frames.
+        stopBurstScan();
+        if (detector == null) {
+            textView.setText("Could not set up the detector.");
+            return;
+        }
+
+        final File resultsFile = getBatchResultsFile();
+        batchScanner = new BatchScanner<>(this, batchImages, resultsFile, getPhotoScale(), new BatchScanner.ProgressListener() {
+            @Override
+            public void onBatchProgress(BatchScanner.Progress progress) {
+                textView.setText(progress.getSummary() + "\n\nResults: " + resultsFile.getAbsolutePath());
+                if (progress.finished) {
+                    batchImages = null;
+                    batchScanner = null;
+                }
+            }
+        });
+
+        try {
+            batchScanner.start();
+        } catch (IOException ioe) {
+            Log.e(TAG, "Could not open the batch results file.", ioe);
+            textView.setText("Could not open the batch results file.");
+            batchImages = null;
+            batchScanner = null;
+        }
+    }
+
+    private File getBatchResultsFile() {
+        final String path = getIntent().getStringExtra(EXTRA_BATCH_RESULTS_FILE);
+        if (path == null) {
+            return new File(getExternalFilesDir(null), getClass().getSimpleName() + "-batch.jsonl");
+        } else {
+            return new File(path);
+        }
+    }
+
+    @Override
+    public void onRequestPermissionsResult(int requestCode, String[] permissions, int[] grantResults) {
+        if (requestCode == REQUEST_CAMERA_PERMISSION) {
+            if (grantResults.length > 0 && grantResults[0] == PackageManager.PERMISSION_GRANTED) {
+                if (burstRequested) {
+                    startBurstScan();
+                } else {
+                    startLiveScan();
+                }
+            } else {
+                textView.setText(burstRequested ? "Burst scanning requires the camera permission." : "Live scanning requires the camera permission.");
+            }
+            burstRequested = false;
+        } else {
+            super.onRequestPermissionsResult(requestCode, permissions, grantResults);
+        }
+    }
+
+    private void startLiveScan() {
+        stopBurstScan();
+        if (cameraSource == null) {
+            // The live frames reach the detector through a frame dropping stage, so that a slow detection never delays the preview frames.
+            final FrameDroppingDetector<D> liveDetector = new FrameDroppingDetector<>(detector, LIVE_FRAME_BUFFER_SIZE);
+            liveDetector.setProcessor(new LiveScanProcessor());
+            cameraSource = buildCameraSource(liveDetector);
+        }
+
+        liveScanning = true;
+        onLiveScanStarted();
+        photoView.setVisibility(View.GONE);
+        preview.setVisibility(View.VISIBLE);
+        startCameraSource();
+    }
+
+    private CameraSource buildCameraSource(Detector<D> frameDetector) {
+        return new CameraSource.Builder(getApplicationContext(), frameDetector)
+                .setFacing(CameraSource.CAMERA_FACING_BACK)
+                .setRequestedPreviewSize(LIVE_PREVIEW_WIDTH, LIVE_PREVIEW_HEIGHT)
+                .setRequestedFps(LIVE_PREVIEW_FPS)
+                .setAutoFocusEnabled(true)
+                .build();
+    }
+
+    private void startCameraSource() {
+        startCameraSource(cameraSource);
+    }
+
+    private void startCameraSource(CameraSource source) {
+        try {
+            previewSource = source;
+            preview.start(source);
+        } catch (IOException | SecurityException e) {
+            Log.e(TAG, "Could not start the camera source.", e);
+            textView.setText("Could not start the camera.");
+            stopLiveScan();
+            stopBurstScan();
+        }
+    }
+
+    private void releaseIfNotInPreview(CameraSource source) {
+        if (source != null && source != previewSource) {
+            source.release();
+        }
+    }
+
+    private void stopLiveScan() {
+        if (liveScanning) {
+            liveScanning = false;
+            preview.stop();
+            preview.setVisibility(View.GONE);
+            photoView.setVisibility(View.VISIBLE);
+        }
+    }
+
+    private void startBurstScan() {
+        stopLiveScan(); // The burst frames come from a camera source of their own.
+        if (burstCameraSource == null) {
+            burstSelector = new BurstFrameSelector<>(detector, BURST_LENGTH, BURST_FRAMES_DETECTED);
+            burstCameraSource = buildCameraSource(burstSelector);
+        }
+
+        if (!burstSelector.startBurst(new BurstListener())) {
+            textView.setText("The previous burst is still being processed.");
+            return;
+        }
+
+        burstScanning = true;
+        textView.setText("Hold still...");
+        photoView.setVisibility(View.GONE);
+        preview.setVisibility(View.VISIBLE);
+        startCameraSource(burstCameraSource);
+    }
+
+    private void stopBurstScan() {
+        if (burstScanning) {
+            burstScanning = false;
+            burstSelector.cancelBurst(); // Nothing to cancel if the burst has completed.
+            preview.stop();
+            preview.setVisibility(View.GONE);
+            photoView.setVisibility(View.VISIBLE);
+        }
+    }
+
+    /**
+     * Called on the UI thread whenever live scanning starts, before the first preview frame of the
+     * session is received. Override this method to reset any state aggregated over the frames of the
+     * previous live scanning session.
+     */
+    protected void onLiveScanStarted() {}
+
+    /**
+     * Decodes the items detected in a single live preview frame as a string. This method is called
+     * on the camera frame processing thread and must be overridden by subclasses that support the
+     * live scanning mode (see {@link #getPreviewViewResId()}).
+     *
+     * @param detections the items detected in the preview frame (empty if nothing was detected)
+     * @return the decoded string or null if nothing useful was detected in the frame
+     */
+    protected String decodeDetectionsAsString(SparseArray<D> detections) {
+        return null;
+    }
+
+    /**
+     * Decodes the items detected in the sharpest frame of a burst as a string. This method is called
+     * on the burst worker thread. If this method is not overriden, then the detections are decoded
+     * as those of a live preview frame (see {@link #decodeDetectionsAsString(SparseArray)}).
+     *
+     * @param detections the items detected in the sharpest frame with any detections (empty if nothing was detected)
+     * @return the decoded string or null if nothing useful was detected
+     */
+    protected String decodeBurstDetectionsAsString(SparseArray<D> detections) {
+        return decodeDetectionsAsString(detections);
+    }
+
+    /**
+     * Override this method to return the individual values of the last string returned by
+     * {@link #decodeDetectionsAsString(SparseArray)} (e.g. the raw values of the barcodes reported),
+     * which are recorded in the {@link ScanHistory}. This method is called right after the decoding,
+     * on the same thread. If this method is not overriden, then the decoded string is recorded as the
+     * only value.
+     *
+     * @return the values of the last string decoded or null if the decoded string is the only value
+     */
+    protected List<String> getLiveResultValues() {
+        return null;
+    }
+
+    /**
+     * Override this method to return the category (e.g. the barcode format) of the last string
+     * returned by {@link #decodeDetectionsAsString(SparseArray)}, which is recorded in the
+     * {@link ScanHistory}. This method is called right after the decoding, on the same thread.
+     *
+     * @return the category of the last string decoded or null if not known
+     */
+    protected String getLiveResultCategory() {
+        return null;
+    }
+
+    /**
+     * Same as {@link #getLiveResultValues()}, for the last string returned by
+     * {@link #decodeBurstDetectionsAsString(SparseArray)}. If this method is not overriden, then the
+     * live scanning values are returned.
+     */
+    protected List<String> getBurstResultValues() {
+        return getLiveResultValues();
+    }
+
+    /**
+     * Same as {@link #getLiveResultCategory()}, for the last string returned by
+     * {@link #decodeBurstDetectionsAsString(SparseArray)}. If this method is not overriden, then the
+     * live scanning category is returned.
+     */
+    protected String getBurstResultCategory() {
+        return getLiveResultCategory();
+    }
+
+    private static List<String> valuesOrText(List<String> values, String text) {
+        return (values == null || values.isEmpty() ? Collections.singletonList(text) : values);
+    }
+
     /**
      * Override this method to provide a specific scale for the bitmap that will be read from the
      * stored image file. If this method is not overriden, then the default scale will be used.
@@ -110,6 +591,37 @@ public abstract class AbstractVisionActivity<D> extends PhotoActivity {
         return 0;
     }
 
+    /**
+     * Override this method to read the stored image file at increasing scales, until the decoding
+     * succeeds. If this method is not overriden, then the image file is read only once, at the scale
+     * returned by {@link #getPhotoScale()}.
+     *
+     * @return the scale selector or null if the image file should be read only once
+     */
+    protected AdaptiveScaleSelector getScaleSelector() {
+        return null;
+    }
+
+    /**
+     * Override this method to read the stored image file into bitmaps with fewer bytes per pixel
+     * (e.g. {@link Bitmap.Config#RGB_565}), when the detector does not need the full colour depth.
+     * If this method is not overriden, then the image file is read into ARGB_8888 bitmaps.
+     */
+    protected Bitmap.Config getPreferredBitmapConfig() {
+        return Bitmap.Config.ARGB_8888;
+    }
+
+    /**
+     * Override this method to skip the detection for image files decoded recently (picked again or
+     * scanned again in a batch), by returning the results cached for them. Camera captures are always
+     * decoded. If this method is not overriden, then every photo is decoded.
+     *
+     * @return the result cache or null if the results should not be cached
+     */
+    protected ResultCache getResultCache() {
+        return null;
+    }
+
     public final boolean hasDetector() {
         return (detector != null);
     }
@@ -118,21 +630,95 @@ public abstract class AbstractVisionActivity<D> extends PhotoActivity {
         return detector;
     }
 
+    /**
+     * Displays the input bitmap, which is handed over to this activity: it is returned to the
+     * {@link BitmapPool} once it has been replaced, so the caller must not use it any more. The
+     * decoding pipeline passes a small preview copy here and keeps the decoded bitmap to itself.
+     */
     public final void setImageView(final Bitmap photo) {
+        final long postTime = ScanMetrics.getInstance().start();
         runOnUiThread(new Runnable() {
             @Override
             public void run() {
                 photoView.setImageBitmap(photo);
+                ScanMetrics.getInstance().stop(ScanMetrics.Stage.UI_POST, postTime);
+
+                // The photo replaced is not displayed any more, so it can be reused for decoding the next photo.
+                final Bitmap replaced = displayedPhoto;
+                displayedPhoto = photo;
+                if (replaced != null && replaced != photo) {
+                    BitmapPool.getInstance().put(replaced);
+                }
             }
         });
     }
 
     public final void setTextView(final String text) {
+        final long postTime = ScanMetrics.getInstance().start();
         runOnUiThread(new Runnable() {
             @Override
             public void run() {
                 textView.setText(text);
+                ScanMetrics.getInstance().stop(ScanMetrics.Stage.UI_POST, postTime);
             }
         });
     }
+
+    /**
+     * Receives the detections of each live preview frame and displays their decoded string, if it
+     * differs from the last one displayed.
+     */
+    private final class LiveScanProcessor implements Detector.Processor<D> {
+        private String lastText;
+
+        @Override
+        public void receiveDetections(Detector.Detections<D> detections) {
+            // Frames without detections are passed on too, since they matter when aggregating consecutive frames.
+            final SparseArray<D> detected = detections.getDetectedItems();
+            final SparseArray<D> items = (detected == null ? new SparseArray<D>(0) : detected);
+
+            final ScanMetrics metrics = ScanMetrics.getInstance();
+            final long start = metrics.start();
+            final String text = decodeDetectionsAsString(items);
+            metrics.stop(ScanMetrics.Stage.FORMAT, start);
+            if (text != null && !text.equals(lastText)) {
+                lastText = text;
+                setTextView(text);
+                ScanHistory.getInstance(AbstractVisionActivity.this).record(ScanHistory.SOURCE_LIVE, getLiveResultCategory(), valuesOrText(getLiveResultValues(), text), text, -1);
+            }
+        }
+
+        @Override
+        public void release() {
+            lastText = null;
+        }
+    }
+
+    /**
+     * Receives the outcome of a burst, displays its decoded string and stops the camera.
+     */
+    private final class BurstListener implements BurstFrameSelector.Listener<D> {
+
+        @Override
+        public void onBurstCompleted(SparseArray<D> detections, final int framesDetected, double bestSharpness) {
+            final ScanMetrics metrics = ScanMetrics.getInstance();
+            final long start = metrics.start();
+            final String text = decodeBurstDetectionsAsString(detections);
+            metrics.stop(ScanMetrics.Stage.FORMAT, start);
+            metrics.recordOutcome(null, text != null);
+            if (text != null) {
+                ScanHistory.getInstance(AbstractVisionActivity.this).record(ScanHistory.SOURCE_BURST, getBurstResultCategory(), valuesOrText(getBurstResultValues(), text), text, -1);
+            }
+
+            runOnUiThread(new Runnable() {
+                @Override
+                public void run() {
+                    if (burstScanning) {
+                        stopBurstScan();
+                        textView.setText(text == null ? "Nothing detected in the " + framesDetected + " sharpest of " + BURST_LENGTH + " frames." : text);
+                    }
+                }
+            });
+        }
+    }
 }
@@ -0,0 +1,82 @@
+package uk.co.akm.test.barcodereaderdemo.base;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Multi-resolution strategy for reading the stored image file. The image is decoded at the lowest
+ * scale level first and the decoding escalates to the next (larger) scale level only if nothing was
+ * detected at the current one. The level that succeeded is remembered per result category (e.g. per
+ * barcode format), so that the next scan starts directly at the cheapest level known to work for the
+ * category seen last. Every few scans the decoding starts again at the lowest level, in case a
+ * cheaper scale works as well: since the decoding escalates from there, every cheaper level is
+ * probed (not just the one below the remembered level) and the remembered level can drop all the
+ * way down.
+ *
+ * All methods are thread-safe.
+ */
+public final class AdaptiveScaleSelector {
+    static final int PROBE_INTERVAL = 8; // Package-private for testing.
+
+    private final int[] targetSizes;
+
+    private final Map<String, Integer> levelsByCategory = new HashMap<>();
+    private String lastCategory;
+    private int scanCount;
+
+    /**
+     * @param targetSizes the target bitmap size (i.e. the minimum bitmap width and height) of each
+     *                    scale level, in ascending order
+     */
+    public AdaptiveScaleSelector(int... targetSizes) {
+        if (targetSizes.length == 0) {
+            throw new IllegalArgumentException("At least one scale level is required.");
+        }
+
+        for (int i=0 ; i<targetSizes.length ; i++) {
+            if (targetSizes[i] <= 0 || (i > 0 && targetSizes[i] <= targetSizes[i - 1])) {
+                throw new IllegalArgumentException("The target sizes must be positive and in ascending order.");
+            }
+        }
+
+        this.targetSizes = targetSizes.clone();
+    }
+
+    public int getLevelCount() {
+        return targetSizes.length;
+    }
+
+    /**
+     * Returns the target bitmap size (i.e. the minimum bitmap width and height) of the input level.
+     */
+    public int getTargetSize(int level) {
+        return targetSizes[level];
+    }
+
+    /**
+     * Returns the level at which the decoding of a new scan should start.
+     */
+    public synchronized int getStartLevel() {
+        scanCount++;
+
+        final Integer level = (lastCategory == null ? null : levelsByCategory.get(lastCategory));
+        if (level == null || scanCount%PROBE_INTERVAL == 0) {
+            return 0; // Probing starts at the lowest level.
+        } else {
+            return level;
+        }
+    }
+
+    /**
+     * Records a successful decoding.
+     *
+     * @param level the level at which the decoding succeeded
+     * @param category the category of the decoded result (e.g. the barcode format) or null if not known
+     */
+    public synchronized void onSuccess(int level, String category) {
+        if (category != null) {
+            levelsByCategory.put(category, level);
+            lastCategory = category;
+        }
+    }
+}
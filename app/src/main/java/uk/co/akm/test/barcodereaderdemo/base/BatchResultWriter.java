@@ -0,0 +1,182 @@
+package uk.co.akm.test.barcodereaderdemo.base;
+
+import android.util.Log;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Appends the per-image results of a batch scan to a file, one line per image, as soon as each
+ * result is available. The format is CSV if the file name ends with ".csv" and JSON lines otherwise.
+ * Every line is flushed when written, so the file reflects all the images completed even if the
+ * batch is interrupted, and a later batch can skip them (see {@link #readCompletedInputs(File)}).
+ *
+ * All writing methods are thread-safe.
+ */
+final class BatchResultWriter {
+    private static final String TAG = BatchResultWriter.class.getSimpleName();
+
+    static final String STATUS_DECODED = "decoded";
+    static final String STATUS_NOT_DECODED = "not_decoded";
+    static final String STATUS_UNREADABLE = "unreadable";
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final String CSV_EXTENSION = ".csv";
+    private static final String CSV_HEADER = "input,status,category,millis,text";
+
+    private final boolean csv;
+    private final Writer writer;
+
+    /**
+     * Opens the input file for appending. A CSV header is written if the file is new.
+     *
+     * @param file the results file
+     * @throws IOException if the file cannot be opened
+     */
+    BatchResultWriter(File file) throws IOException {
+        this.csv = isCsv(file);
+
+        final boolean newFile = (!file.exists() || file.length() == 0);
+        this.writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file, true), UTF_8));
+        if (csv && newFile) {
+            writer.write(CSV_HEADER);
+            writer.write('\n');
+            writer.flush();
+        }
+    }
+
+    private static boolean isCsv(File file) {
+        return file.getName().toLowerCase(Locale.US).endsWith(CSV_EXTENSION);
+    }
+
+    /**
+     * Writes the result of a single image.
+     *
+     * @param input the image identifier (e.g. its URI)
+     * @param status the outcome: {@link #STATUS_DECODED}, {@link #STATUS_NOT_DECODED} or {@link #STATUS_UNREADABLE}
+     * @param category the category of the decoded content (or null if not known)
+     * @param millis the time spent on the image
+     * @param text the decoded text (or null)
+     * @throws IOException if the result cannot be written
+     */
+    synchronized void write(String input, String status, String category, long millis, String text) throws IOException {
+        writer.write(csv ? toCsvLine(input, status, category, millis, text) : toJsonLine(input, status, category, millis, text));
+        writer.write('\n');
+        writer.flush();
+    }
+
+    private static String toCsvLine(String input, String status, String category, long millis, String text) {
+        return escapeCsv(input) + ',' + status + ',' + escapeCsv(category) + ',' + millis + ',' + escapeCsv(text);
+    }
+
+    private static String escapeCsv(String value) {
+        if (value == null) {
+            return "";
+        }
+
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+
+    private static String toJsonLine(String input, String status, String category, long millis, String text) {
+        try {
+            return new JSONObject()
+                    .put("input", input)
+                    .put("status", status)
+                    .put("category", category)
+                    .put("millis", millis)
+                    .put("text", text)
+                    .toString(); // Any line breaks in the text are escaped, so each result stays on a single line.
+        } catch (JSONException je) {
+            throw new IllegalStateException("Could not convert the result of " + input + " to JSON.", je);
+        }
+    }
+
+    synchronized void close() {
+        try {
+            writer.close();
+        } catch (IOException ioe) {
+            Log.d(TAG, "Could not close the batch results file.");
+        }
+    }
+
+    /**
+     * Returns the identifiers of the images already recorded in the input results file, so that a
+     * batch interrupted can be resumed. A truncated last line (e.g. if the batch was interrupted while
+     * writing it) is ignored.
+     *
+     * @param file the results file
+     * @return the identifiers of the images completed (empty if the file does not exist)
+     */
+    static Set<String> readCompletedInputs(File file) {
+        final Set<String> completed = new HashSet<>();
+        if (!file.exists()) {
+            return completed;
+        }
+
+        final boolean csv = isCsv(file);
+        try {
+            final BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), UTF_8));
+            try {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    final String input = (csv ? readCsvInput(line) : readJsonInput(line));
+                    if (input != null) {
+                        completed.add(input);
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+        } catch (IOException ioe) {
+            Log.w(TAG, "Could not read the batch results file: no images will be skipped.");
+        }
+
+        return completed;
+    }
+
+    // Multi-line text values split a CSV record over several lines, but only the first line holds the input.
+    private static String readCsvInput(String line) {
+        if (!line.startsWith("\"")) {
+            return null; // Header or continuation line.
+        }
+
+        final StringBuilder input = new StringBuilder();
+        for (int i=1 ; i<line.length() ; i++) {
+            final char c = line.charAt(i);
+            if (c == '"') {
+                if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    input.append('"');
+                    i++;
+                } else {
+                    return input.toString();
+                }
+            } else {
+                input.append(c);
+            }
+        }
+
+        return null; // Truncated line.
+    }
+
+    private static String readJsonInput(String line) {
+        try {
+            return new JSONObject(line).optString("input", null);
+        } catch (JSONException je) {
+            return null; // Truncated line.
+        }
+    }
+}
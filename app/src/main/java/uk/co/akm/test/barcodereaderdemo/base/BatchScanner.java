@@ -0,0 +1,272 @@
+package uk.co.akm.test.barcodereaderdemo.base;
+
+import android.content.ContentResolver;
+import android.net.Uri;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Decodes a batch of existing images (files or content URIs) offline, with the same {@link VisionAsyncTask}
+ * decoding logic as the single photo scans. The images are decoded on the {@link DecodeScheduler}
+ * workers, with at most one image in flight per worker, so the file reading and bitmap decoding of
+ * some images overlaps with the detection of others. The result of each image is appended to a
+ * results file as soon as it is available (see {@link BatchResultWriter}).
+ *
+ * The batch is resumable: the images already recorded in the results file are skipped, so a batch
+ * interrupted (e.g. cancelled when the activity is paused) continues where it stopped when started
+ * again with the same results file.
+ *
+ * @param <D> the object detected by the Google Vision API
+ */
+final class BatchScanner<D> {
+    private static final String TAG = BatchScanner.class.getSimpleName();
+
+    private static final String[] IMAGE_EXTENSIONS = {".jpg", ".jpeg", ".png", ".webp", ".bmp"};
+
+    /**
+     * Receives the progress of the batch on the main thread.
+     */
+    interface ProgressListener {
+
+        void onBatchProgress(Progress progress);
+    }
+
+    /**
+     * Snapshot of the batch progress.
+     */
+    static final class Progress {
+        final int total;
+        final int skipped;
+        final int completed;
+        final int decoded;
+        final float imagesPerSecond;
+        final boolean finished;
+
+        Progress(int total, int skipped, int completed, int decoded, float imagesPerSecond, boolean finished) {
+            this.total = total;
+            this.skipped = skipped;
+            this.completed = completed;
+            this.decoded = decoded;
+            this.imagesPerSecond = imagesPerSecond;
+            this.finished = finished;
+        }
+
+        String getSummary() {
+            return String.format(Locale.US, "%s: %d/%d images (%d skipped as done before), %d decoded, %.1f images/s",
+                    (finished ? "Batch complete" : "Batch in progress"), skipped + completed, total, skipped, decoded, imagesPerSecond);
+        }
+    }
+
+    /**
+     * Returns the URIs of the image files in the input directory, in name order.
+     */
+    static List<Uri> listImageFiles(File directory) {
+        final File[] files = directory.listFiles();
+        if (files == null) {
+            return new ArrayList<>(0);
+        }
+
+        Arrays.sort(files);
+        final List<Uri> images = new ArrayList<>(files.length);
+        for (File file : files) {
+            if (file.isFile() && isImageFile(file.getName())) {
+                images.add(Uri.fromFile(file));
+            }
+        }
+
+        return images;
+    }
+
+    private static boolean isImageFile(String fileName) {
+        final String name = fileName.toLowerCase(Locale.US);
+        for (String extension : IMAGE_EXTENSIONS) {
+            if (name.endsWith(extension)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private final AbstractVisionActivity<D> parent;
+    private final ContentResolver contentResolver;
+    private final List<Uri> images;
+    private final File resultsFile;
+    private final int targetSize;
+    private final int maxInFlight;
+    private final ProgressListener progressListener;
+
+    private BatchResultWriter writer;
+    private List<Uri> pending;
+    private final List<VisionAsyncTask<?>> inFlight = new ArrayList<>();
+    private int nextIndex;
+    private int skipped;
+    private int completed;
+    private int decoded;
+    private long startTime;
+    private boolean cancelled;
+
+    /**
+     * @param parent the activity providing the decoding tasks and the detector
+     * @param images the URIs of the images to decode (file or content URIs)
+     * @param resultsFile the file the results are appended to
+     * @param targetSize the target scale of the bitmaps read or zero if the default scale is enough
+     * @param progressListener the listener notified of the progress on the main thread
+     */
+    BatchScanner(AbstractVisionActivity<D> parent, List<Uri> images, File resultsFile, int targetSize, ProgressListener progressListener) {
+        this.parent = parent;
+        this.contentResolver = parent.getContentResolver();
+        this.images = images;
+        this.resultsFile = resultsFile;
+        this.targetSize = targetSize;
+        this.maxInFlight = Runtime.getRuntime().availableProcessors();
+        this.progressListener = progressListener;
+    }
+
+    /**
+     * Starts decoding the images not recorded in the results file yet.
+     *
+     * @throws IOException if the results file cannot be opened
+     */
+    synchronized void start() throws IOException {
+        final Set<String> done = BatchResultWriter.readCompletedInputs(resultsFile);
+        writer = new BatchResultWriter(resultsFile);
+        startTime = SystemClock.elapsedRealtime();
+
+        pending = new ArrayList<>(images.size());
+        for (Uri image : images) {
+            if (done.contains(image.toString())) {
+                skipped++;
+            } else {
+                pending.add(image);
+            }
+        }
+        Log.d(TAG, "Batch of " + images.size() + " images: " + skipped + " done before.");
+
+        boolean scheduled = true;
+        while (scheduled && inFlight.size() < maxInFlight) {
+            scheduled = scheduleNext();
+        }
+
+        if (inFlight.isEmpty()) {
+            closeWriter(); // Nothing left to decode.
+        }
+        postProgress();
+    }
+
+    // Must be called while holding the lock of this scanner.
+    private boolean scheduleNext() {
+        if (cancelled || nextIndex >= pending.size()) {
+            return false;
+        }
+
+        final Uri image = pending.get(nextIndex++);
+        final VisionAsyncTask<D> task = parent.buildVisionTask();
+        if ("file".equals(image.getScheme())) {
+            task.setImageParameters(targetSize, targetSize, image.getPath());
+        } else {
+            task.setImageParameters(targetSize, targetSize, image, contentResolver);
+        }
+        task.setResultListener(new ImageResultListener(image, SystemClock.elapsedRealtime()));
+        inFlight.add(task);
+        task.execute();
+
+        return true;
+    }
+
+    /**
+     * Cancels the images in flight and stops scheduling new ones. The results file keeps the
+     * results of all the images completed so far.
+     */
+    synchronized void cancel() {
+        if (cancelled) {
+            return;
+        }
+
+        cancelled = true;
+        for (VisionAsyncTask<?> task : inFlight) {
+            task.cancel();
+        }
+        inFlight.clear();
+        closeWriter();
+    }
+
+    private void closeWriter() {
+        if (writer != null) {
+            writer.close();
+            writer = null;
+        }
+    }
+
+    private synchronized void onImageCompleted(VisionAsyncTask<?> task, Uri image, long startTime, String text) {
+        if (cancelled || !inFlight.remove(task)) {
+            return;
+        }
+
+        final String status = (text != null ? BatchResultWriter.STATUS_DECODED : (task.hasReadFailed() ? BatchResultWriter.STATUS_UNREADABLE : BatchResultWriter.STATUS_NOT_DECODED));
+        try {
+            writer.write(image.toString(), status, task.resultCategory(), SystemClock.elapsedRealtime() - startTime, text);
+        } catch (IOException ioe) {
+            Log.e(TAG, "Could not write the batch results: cancelling the batch.", ioe);
+            cancel();
+            return;
+        }
+
+        completed++;
+        if (text != null) {
+            decoded++;
+        }
+
+        scheduleNext();
+        if (inFlight.isEmpty()) {
+            closeWriter();
+            Log.d(TAG, buildProgress().getSummary());
+        }
+        postProgress();
+    }
+
+    private Progress buildProgress() {
+        final long elapsedMillis = Math.max(1, SystemClock.elapsedRealtime() - startTime);
+
+        return new Progress(images.size(), skipped, completed, decoded, completed*1000f/elapsedMillis, inFlight.isEmpty());
+    }
+
+    private void postProgress() {
+        final Progress progress = buildProgress();
+        DecodeScheduler.getInstance().postToMainThread(new Runnable() {
+            @Override
+            public void run() {
+                if (!isCancelled()) {
+                    progressListener.onBatchProgress(progress);
+                }
+            }
+        });
+    }
+
+    private synchronized boolean isCancelled() {
+        return cancelled;
+    }
+
+    private final class ImageResultListener implements VisionAsyncTask.ResultListener {
+        private final Uri image;
+        private final long startTime;
+
+        ImageResultListener(Uri image, long startTime) {
+            this.image = image;
+            this.startTime = startTime;
+        }
+
+        @Override
+        public void onResult(VisionAsyncTask<?> task, String text) {
+            onImageCompleted(task, image, startTime, text);
+        }
+    }
+}
@@ -0,0 +1,255 @@
+package uk.co.akm.test.barcodereaderdemo.base;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.os.Build;
+import android.util.Log;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Pool of reusable mutable bitmaps, so that the image decoding and rotation buffers do not have to
+ * be allocated (and garbage collected) for every scan. Bitmaps are returned to the pool with
+ * {@link #put(Bitmap)} once they are no longer needed and are handed out again either as exact
+ * size/config matches ({@link #get(int, int, Bitmap.Config)}) or as {@link BitmapFactory.Options#inBitmap}
+ * candidates ({@link #getReusable(BitmapFactory.Options)}).
+ *
+ * The total size of the pooled bitmaps is capped: when the cap is exceeded, the least recently
+ * pooled bitmaps are evicted and recycled. The pool keeps hit/miss counters for all requests.
+ *
+ * All methods are thread-safe.
+ */
+public final class BitmapPool {
+    private static final String TAG = BitmapPool.class.getSimpleName();
+
+    private static final int DEFAULT_MAX_MEMORY_FRACTION = 4;
+
+    private static BitmapPool instance;
+
+    /**
+     * Returns the process-wide pool shared by all image decoding and processing code. Its size
+     * cap is a fraction of the maximum heap size.
+     */
+    public static synchronized BitmapPool getInstance() {
+        if (instance == null) {
+            instance = new BitmapPool(Runtime.getRuntime().maxMemory()/DEFAULT_MAX_MEMORY_FRACTION);
+        }
+
+        return instance;
+    }
+
+    private final long maxBytes;
+    private long currentBytes;
+
+    private long hitCount;
+    private long missCount;
+    private long evictionCount;
+
+    // Insertion-ordered, so the first entry is always the least recently pooled bitmap.
+    private final LinkedHashMap<Bitmap, Key> pooled = new LinkedHashMap<>();
+
+    /**
+     * @param maxBytes the maximum total size (in bytes) of the pooled bitmaps
+     */
+    public BitmapPool(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Returns a mutable bitmap with the specified dimensions and configuration. The bitmap is
+     * taken from the pool, if a matching one is available, or is allocated otherwise. The content
+     * of a pooled bitmap is undefined, so callers must overwrite all of its pixels.
+     */
+    public Bitmap get(int width, int height, Bitmap.Config config) {
+        final Bitmap.Config bitmapConfig = nonNullConfig(config);
+        final Bitmap bitmap = take(new Key(width, height, bitmapConfig));
+        if (bitmap == null) {
+            return Bitmap.createBitmap(width, height, bitmapConfig);
+        } else {
+            return bitmap;
+        }
+    }
+
+    /**
+     * Returns a pooled bitmap that can be used as the {@link BitmapFactory.Options#inBitmap} when
+     * decoding an image with the input options, or null if no such bitmap is available. The input
+     * options must contain the image dimensions (i.e. the result of a bounds-only decode) as well as
+     * the sample size and the preferred configuration that will be used in the decode.
+     */
+    public synchronized Bitmap getReusable(BitmapFactory.Options options) {
+        final Bitmap.Config config = nonNullConfig(options.inPreferredConfig);
+        final Iterator<Map.Entry<Bitmap, Key>> iterator = pooled.entrySet().iterator();
+        while (iterator.hasNext()) {
+            final Map.Entry<Bitmap, Key> entry = iterator.next();
+            if (canUseForInBitmap(entry.getKey(), entry.getValue(), options, config)) {
+                iterator.remove();
+                currentBytes -= entry.getValue().bytes;
+                hitCount++;
+
+                return entry.getKey();
+            }
+        }
+
+        missCount++;
+
+        return null;
+    }
+
+    private static boolean canUseForInBitmap(Bitmap candidate, Key key, BitmapFactory.Options options, Bitmap.Config config) {
+        if (key.config != config) {
+            return false;
+        }
+
+        final int sampleSize = Math.max(1, options.inSampleSize);
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
+            // Any bitmap large enough can be reused from KitKat onwards.
+            final long width = (options.outWidth + sampleSize - 1)/sampleSize;
+            final long height = (options.outHeight + sampleSize - 1)/sampleSize;
+
+            return (width*height*bytesPerPixel(config) <= key.bytes);
+        } else {
+            // Before KitKat, only bitmaps of the same size can be reused and only without sub-sampling.
+            return (sampleSize == 1 && key.width == options.outWidth && key.height == options.outHeight);
+        }
+    }
+
+    /**
+     * Returns the input bitmap to the pool, so that it can be reused. Immutable or recycled bitmaps
+     * are ignored. The caller must not use the bitmap after this call.
+     */
+    public void put(Bitmap bitmap) {
+        if (bitmap == null || bitmap.isRecycled() || !bitmap.isMutable()) {
+            return;
+        }
+
+        final Key key = new Key(bitmap);
+        if (key.bytes > maxBytes) {
+            bitmap.recycle();
+            return;
+        }
+
+        synchronized (this) {
+            if (pooled.put(bitmap, key) == null) {
+                currentBytes += key.bytes;
+                trimToSize();
+            }
+        }
+    }
+
+    private synchronized Bitmap take(Key key) {
+        final Iterator<Map.Entry<Bitmap, Key>> iterator = pooled.entrySet().iterator();
+        while (iterator.hasNext()) {
+            final Map.Entry<Bitmap, Key> entry = iterator.next();
+            if (key.sameShape(entry.getValue())) {
+                iterator.remove();
+                currentBytes -= entry.getValue().bytes;
+                hitCount++;
+
+                return entry.getKey();
+            }
+        }
+
+        missCount++;
+
+        return null;
+    }
+
+    private void trimToSize() {
+        final Iterator<Map.Entry<Bitmap, Key>> iterator = pooled.entrySet().iterator();
+        while (currentBytes > maxBytes && iterator.hasNext()) {
+            final Map.Entry<Bitmap, Key> eldest = iterator.next();
+            iterator.remove();
+            currentBytes -= eldest.getValue().bytes;
+            evictionCount++;
+            eldest.getKey().recycle();
+        }
+    }
+
+    /**
+     * Recycles all pooled bitmaps.
+     */
+    public synchronized void clear() {
+        for (Bitmap bitmap : pooled.keySet()) {
+            bitmap.recycle();
+        }
+
+        pooled.clear();
+        currentBytes = 0;
+    }
+
+    public synchronized long getHitCount() {
+        return hitCount;
+    }
+
+    public synchronized long getMissCount() {
+        return missCount;
+    }
+
+    public synchronized long getEvictionCount() {
+        return evictionCount;
+    }
+
+    public synchronized long getCurrentBytes() {
+        return currentBytes;
+    }
+
+    public synchronized String getStatsSummary() {
+        return ("Bitmap pool hits: " + hitCount + ", misses: " + missCount + ", evictions: " + evictionCount + ", size: " + currentBytes + "/" + maxBytes + " bytes");
+    }
+
+    /**
+     * Logs the pool statistics.
+     */
+    public void logStats() {
+        Log.d(TAG, getStatsSummary());
+    }
+
+    private static Bitmap.Config nonNullConfig(Bitmap.Config config) {
+        return (config == null ? Bitmap.Config.ARGB_8888 : config);
+    }
+
+    private static int bytesPerPixel(Bitmap.Config config) {
+        switch (config) {
+            case ALPHA_8: return 1;
+            case RGB_565:
+            case ARGB_4444: return 2;
+
+            default: return 4;
+        }
+    }
+
+    private static int allocatedBytes(Bitmap bitmap) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
+            return bitmap.getAllocationByteCount();
+        } else {
+            return bitmap.getByteCount();
+        }
+    }
+
+    private static final class Key {
+        final int width;
+        final int height;
+        final Bitmap.Config config;
+        final int bytes;
+
+        Key(int width, int height, Bitmap.Config config) {
+            this.width = width;
+            this.height = height;
+            this.config = config;
+            this.bytes = width*height*bytesPerPixel(config);
+        }
+
+        Key(Bitmap bitmap) {
+            this.width = bitmap.getWidth();
+            this.height = bitmap.getHeight();
+            this.config = nonNullConfig(bitmap.getConfig());
+            this.bytes = allocatedBytes(bitmap);
+        }
+
+        boolean sameShape(Key other) {
+            return (width == other.width && height == other.height && config == other.config);
+        }
+    }
+}
@@ -0,0 +1,249 @@
+package uk.co.akm.test.barcodereaderdemo.base;
+
+import android.util.Log;
+import android.util.SparseArray;
+
+import com.google.android.gms.vision.Detector;
+import com.google.android.gms.vision.Frame;
+
+import java.nio.ByteBuffer;
+
+import uk.co.akm.test.barcodereaderdemo.core.Sharpness;
+
+/**
+ * Pipeline stage that sits in front of a detector and captures bursts of frames (e.g. from a camera
+ * source), so that a single blurry frame does not fail the scan. Each frame of a burst is scored with
+ * a cheap sharpness metric (the variance of the Laplacian of its downsampled luminance, see
+ * {@link Sharpness}) as it arrives, and only the sharpest few frames are copied and kept. Once the
+ * burst is complete, the wrapped detector runs on the kept frames, sharpest first, until something is
+ * detected. Hence a burst costs at most that few detections, however long it is.
+ *
+ * Frames received while no burst is in progress are ignored. The kept frames are held in slots that
+ * are reused from burst to burst. The detection runs on a worker thread, so the frame producer is
+ * never blocked by it.
+ *
+ * Releasing this stage cancels any burst in progress, but does not release the wrapped detector.
+ *
+ * @param <D> the object detected by the wrapped detector
+ */
+public final class BurstFrameSelector<D> extends Detector<D> {
+    private static final String TAG = BurstFrameSelector.class.getSimpleName();
+
+    private static final int SHARPNESS_SAMPLE_SIZE = 320; // The number of pixels sampled along the longest frame dimension.
+
+    /**
+     * Receives the outcome of a burst.
+     */
+    public interface Listener<D> {
+
+        /**
+         * Called on the worker thread, once the kept frames of a burst have been passed to the
+         * detector (unless the burst has been cancelled in the meantime).
+         *
+         * @param detections the items detected in the sharpest frame with any detections (empty if none)
+         * @param framesDetected the number of frames passed to the detector
+         * @param bestSharpness the sharpness of the sharpest frame of the burst
+         */
+        void onBurstCompleted(SparseArray<D> detections, int framesDetected, double bestSharpness);
+    }
+
+    private final Detector<D> delegate;
+    private final int burstLength;
+
+    private final Object lock = new Object();
+    private final FrameCopy[] keptFrames;
+    private final double[] keptScores;
+    private int keptCount;
+    private int receivedCount;
+    private boolean detecting;
+    private int generation;
+    private Listener<D> listener;
+
+    private byte[] luminanceScratch;
+
+    /**
+     * @param delegate the detector that will process the sharpest frames
+     * @param burstLength the number of frames in a burst
+     * @param framesToDetect the maximum number of frames of a burst passed to the detector (at most the burst length)
+     */
+    public BurstFrameSelector(Detector<D> delegate, int burstLength, int framesToDetect) {
+        if (framesToDetect < 1 || framesToDetect > burstLength) {
+            throw new IllegalArgumentException("Illegal number of frames to detect: " + framesToDetect + ". It must be between 1 and the burst length " + burstLength + ".");
+        }
+
+        this.delegate = delegate;
+        this.burstLength = burstLength;
+        this.keptFrames = new FrameCopy[framesToDetect];
+        this.keptScores = new double[framesToDetect];
+    }
+
+    /**
+     * Starts capturing a burst from the next frame received.
+     *
+     * @param listener the listener that will receive the outcome of the burst
+     * @return true if the burst was started or false if the previous burst is still in progress
+     */
+    public boolean startBurst(Listener<D> listener) {
+        synchronized (lock) {
+            if (this.listener != null || detecting) {
+                return false;
+            }
+
+            this.listener = listener;
+            keptCount = 0;
+            receivedCount = 0;
+            generation++;
+
+            return true;
+        }
+    }
+
+    /**
+     * Cancels the burst in progress (if any): its outcome is not delivered.
+     */
+    public void cancelBurst() {
+        synchronized (lock) {
+            listener = null;
+            keptCount = 0;
+            generation++;
+        }
+    }
+
+    /**
+     * Runs the wrapped detector synchronously on the input frame, bypassing the burst selection.
+     */
+    @Override
+    public SparseArray<D> detect(Frame frame) {
+        return delegate.detect(frame);
+    }
+
+    @Override
+    public boolean isOperational() {
+        return delegate.isOperational();
+    }
+
+    @Override
+    public boolean setFocus(int id) {
+        return delegate.setFocus(id);
+    }
+
+    /**
+     * Scores the input frame and keeps a copy of it, if it is one of the sharpest frames of the burst
+     * in progress. The last frame of a burst starts the detection on the kept frames.
+     */
+    @Override
+    public void receiveFrame(Frame frame) {
+        synchronized (lock) {
+            if (listener == null) {
+                return; // No burst in progress.
+            }
+
+            keepIfSharp(frame, score(frame));
+
+            receivedCount++;
+            if (receivedCount == burstLength) {
+                startDetection();
+            }
+        }
+    }
+
+    private double score(Frame frame) {
+        final Frame.Metadata metadata = frame.getMetadata();
+        final int width = metadata.getWidth();
+        final int height = metadata.getHeight();
+        final ByteBuffer data = frame.getGrayscaleImageData();
+        if (data == null || data.remaining() < width*height) {
+            return 0;
+        }
+
+        final int step = Sharpness.computeStep(width, height, SHARPNESS_SAMPLE_SIZE);
+        if (data.hasArray()) {
+            return Sharpness.varianceOfLaplacian(data.array(), data.arrayOffset() + data.position(), width, height, width, step);
+        }
+
+        final int size = width*height; // Only the luminance plane is needed, which comes first in the NV21 and YV12 frames.
+        if (luminanceScratch == null || luminanceScratch.length < size) {
+            luminanceScratch = new byte[size];
+        }
+        data.duplicate().get(luminanceScratch, 0, size);
+
+        return Sharpness.varianceOfLaplacian(luminanceScratch, 0, width, height, width, step);
+    }
+
+    // The kept frames are sorted from the sharpest to the least sharp.
+    private void keepIfSharp(Frame frame, double score) {
+        final int capacity = keptFrames.length;
+        if (keptCount == capacity && score <= keptScores[capacity - 1]) {
+            return;
+        }
+
+        int index = Math.min(keptCount, capacity - 1); // The least sharp frame is dropped, if all slots are taken.
+        final FrameCopy slot = (keptFrames[index] == null ? new FrameCopy() : keptFrames[index]);
+        while (index > 0 && keptScores[index - 1] < score) {
+            keptFrames[index] = keptFrames[index - 1];
+            keptScores[index] = keptScores[index - 1];
+            index--;
+        }
+
+        slot.copy(frame);
+        keptFrames[index] = slot;
+        keptScores[index] = score;
+        keptCount = Math.min(keptCount + 1, capacity);
+    }
+
+    private void startDetection() {
+        final Listener<D> burstListener = listener;
+        final int burstGeneration = generation;
+        final int framesToDetect = keptCount;
+        final double bestSharpness = (keptCount == 0 ? 0 : keptScores[0]);
+
+        listener = null;
+        detecting = true;
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                detectKeptFrames(burstListener, burstGeneration, framesToDetect, bestSharpness);
+            }
+        }, TAG).start();
+    }
+
+    private void detectKeptFrames(Listener<D> burstListener, int burstGeneration, int framesToDetect, double bestSharpness) {
+        SparseArray<D> detected = null;
+        int framesDetected = 0;
+        try {
+            while (framesDetected < framesToDetect && (detected == null || detected.size() == 0) && isCurrent(burstGeneration)) {
+                final Frame frame = keptFrames[framesDetected++].toFrame();
+                final ScanMetrics metrics = ScanMetrics.getInstance();
+                final long start = metrics.start();
+                synchronized (delegate) { // Not used by a photo decoding task at the same time.
+                    detected = delegate.detect(frame);
+                }
+                metrics.stop(ScanMetrics.Stage.DETECT, start);
+            }
+        } finally {
+            synchronized (lock) {
+                detecting = false;
+            }
+        }
+
+        Log.d(TAG, "Burst of " + burstLength + " frames: " + framesDetected + " frames detected, best sharpness " + bestSharpness + ".");
+        if (isCurrent(burstGeneration)) {
+            burstListener.onBurstCompleted((detected == null ? new SparseArray<D>(0) : detected), framesDetected, bestSharpness);
+        }
+    }
+
+    private boolean isCurrent(int burstGeneration) {
+        synchronized (lock) {
+            return (generation == burstGeneration);
+        }
+    }
+
+    /**
+     * Cancels any burst in progress. The wrapped detector is not released.
+     */
+    @Override
+    public void release() {
+        cancelBurst();
+        super.release();
+    }
+}
@@ -0,0 +1,94 @@
+package uk.co.akm.test.barcodereaderdemo.base;
+
+import android.content.Context;
+import android.util.AttributeSet;
+import android.util.Log;
+import android.view.SurfaceHolder;
+import android.view.SurfaceView;
+
+import com.google.android.gms.vision.CameraSource;
+
+import java.io.IOException;
+
+/**
+ * Surface view that displays the live preview of a {@link CameraSource}. A camera source can only be
+ * started once the preview surface has been created, so any start request made before that point is
+ * remembered and honoured as soon as the surface becomes available.
+ */
+public final class CameraSourcePreview extends SurfaceView {
+    private static final String TAG = CameraSourcePreview.class.getSimpleName();
+
+    private boolean surfaceAvailable;
+    private boolean startRequested;
+    private CameraSource cameraSource;
+
+    public CameraSourcePreview(Context context, AttributeSet attrs) {
+        super(context, attrs);
+
+        getHolder().addCallback(new SurfaceCallback());
+    }
+
+    /**
+     * Starts the input camera source and displays its preview in this view. If the preview surface
+     * is not available yet, then the camera source will be started once the surface is created.
+     *
+     * @param cameraSource the camera source to start
+     * @throws IOException if the camera could not be started
+     * @throws SecurityException if the camera permission has not been granted
+     */
+    public void start(CameraSource cameraSource) throws IOException {
+        this.cameraSource = cameraSource;
+
+        startRequested = true;
+        startIfReady();
+    }
+
+    /**
+     * Stops the camera source (if any), but does not release it so that it can be started again.
+     */
+    public void stop() {
+        startRequested = false;
+        if (cameraSource != null) {
+            cameraSource.stop();
+        }
+    }
+
+    /**
+     * Stops and releases the camera source (if any). After this call, a new camera source must be
+     * provided through {@link #start(CameraSource)}.
+     */
+    public void release() {
+        if (cameraSource != null) {
+            cameraSource.release();
+            cameraSource = null;
+        }
+    }
+
+    private void startIfReady() throws IOException {
+        if (startRequested && surfaceAvailable && cameraSource != null) {
+            cameraSource.start(getHolder());
+            startRequested = false;
+        }
+    }
+
+    private final class SurfaceCallback implements SurfaceHolder.Callback {
+
+        @Override
+        public void surfaceCreated(SurfaceHolder holder) {
+            surfaceAvailable = true;
+            try {
+                startIfReady();
+            } catch (IOException | SecurityException e) {
+                Log.e(TAG, "Could not start the camera source.", e);
+            }
+        }
+
+        @Override
+        public void surfaceChanged(SurfaceHolder holder, int format, int width, int height) {}
+
+        @Override
+        public void surfaceDestroyed(SurfaceHolder holder) {
+            surfaceAvailable = false;
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package uk.co.akm.test.barcodereaderdemo.base;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Dedicated executor of the {@link VisionAsyncTask} decoding work, so that the decoding neither
+ * competes with (nor waits behind) unrelated work queued on the shared AsyncTask executor. The
+ * worker pool is bounded by the number of processor cores and its threads time out when idle. The
+ * interactive scans (i.e. the ones the user is waiting for) run at the default thread priority, while
+ * the batch scans run at background priority, so that they do not compete with the UI.
+ *
+ * Queued tasks are prioritised by recency: the most recently scheduled task runs first, so that a
+ * fresh user scan is never stuck behind stale work. Cancelled tasks still leave the queue through a
+ * worker, but they do no work once they get there.
+ */
+final class DecodeScheduler {
+    private static final String TAG = DecodeScheduler.class.getSimpleName();
+
+    private static final long KEEP_ALIVE_SECONDS = 30;
+
+    private static DecodeScheduler instance;
+
+    static synchronized DecodeScheduler getInstance() {
+        if (instance == null) {
+            instance = new DecodeScheduler(Runtime.getRuntime().availableProcessors());
+        }
+
+        return instance;
+    }
+
+    private final ThreadPoolExecutor executor;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final AtomicLong sequence = new AtomicLong();
+
+    private DecodeScheduler(int nThreads) {
+        final int poolSize = Math.max(1, nThreads);
+        executor = new ThreadPoolExecutor(poolSize, poolSize, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new PriorityBlockingQueue<Runnable>(), new WorkerThreadFactory());
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Queues the input task for execution ahead of all the tasks queued so far.
+     */
+    void schedule(VisionAsyncTask<?> task) {
+        executor.execute(new PrioritizedTask(sequence.incrementAndGet(), task));
+    }
+
+    /**
+     * Posts the input runnable to the main thread.
+     */
+    void postToMainThread(Runnable runnable) {
+        mainHandler.post(runnable);
+    }
+
+    private static final class PrioritizedTask implements Runnable, Comparable<PrioritizedTask> {
+        private final long sequenceNumber;
+        private final VisionAsyncTask<?> task;
+
+        PrioritizedTask(long sequenceNumber, VisionAsyncTask<?> task) {
+            this.sequenceNumber = sequenceNumber;
+            this.task = task;
+        }
+
+        @Override
+        public void run() {
+            Process.setThreadPriority(task.isBatchTask() ? Process.THREAD_PRIORITY_BACKGROUND : Process.THREAD_PRIORITY_DEFAULT);
+            task.runInBackground();
+        }
+
+        // The most recent task comes first.
+        @Override
+        public int compareTo(PrioritizedTask other) {
+            return (sequenceNumber > other.sequenceNumber ? -1 : (sequenceNumber < other.sequenceNumber ? 1 : 0));
+        }
+    }
+
+    private static final class WorkerThreadFactory implements ThreadFactory {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            return new Thread(runnable, TAG + "-" + count.incrementAndGet());
+        }
+    }
+}
@@ -0,0 +1,260 @@
+package uk.co.akm.test.barcodereaderdemo.base;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Color;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.util.Log;
+
+import com.google.android.gms.vision.Detector;
+import com.google.android.gms.vision.Frame;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Process-wide registry of the Google Vision API detectors, so that the (expensive) native model
+ * loading is paid once per process rather than every time a vision activity is created. Detectors
+ * are created lazily, warmed up with a synthetic frame and reference counted: a detector is only
+ * released once it has not been acquired for a while, so that configuration changes and re-entries
+ * find a hot detector. Detectors can also be pre-warmed in the background before they are needed.
+ *
+ * Each detector is identified by the {@link Factory} that builds it, so factories should be
+ * shared constants. The warm-up holds the detector monitor, i.e. the same lock held by the
+ * {@link VisionAsyncTask} decoding, so a scan started during the warm-up waits for it to complete.
+ *
+ * The registry lock only guards the reference counts: the detectors are built (i.e. their native
+ * models are loaded) under a lock of their own entry and released on a background thread, so the
+ * loading of one detector never holds up the acquisition of another one and the registry lock is
+ * never held while waiting for a detector monitor.
+ *
+ * All methods are thread-safe.
+ */
+public final class DetectorRegistry {
+    private static final String TAG = DetectorRegistry.class.getSimpleName();
+
+    private static final long IDLE_RELEASE_DELAY_MILLIS = 60000;
+    private static final int WARM_UP_FRAME_SIZE = 64;
+
+    /**
+     * Builds the detectors held by the registry.
+     */
+    public interface Factory<D> {
+
+        /**
+         * Returns a new detector.
+         *
+         * @param context the application context
+         * @return a new detector
+         */
+        Detector<D> build(Context context);
+    }
+
+    private static DetectorRegistry instance;
+
+    public static synchronized DetectorRegistry getInstance() {
+        if (instance == null) {
+            instance = new DetectorRegistry();
+        }
+
+        return instance;
+    }
+
+    private final Handler releaseHandler;
+    private final Map<Factory<?>, Entry<?>> entries = new HashMap<>();
+
+    private DetectorRegistry() {
+        final HandlerThread releaseThread = new HandlerThread(TAG);
+        releaseThread.start();
+        releaseHandler = new Handler(releaseThread.getLooper());
+    }
+
+    /**
+     * Returns the detector built by the input factory, creating it if required, and increments its
+     * reference count. Each call must be matched by a {@link #release(Factory)} call. A newly
+     * created detector is warmed up in the background. If the detector is being built by another
+     * thread (e.g. pre-warmed), then this method waits for it to be built.
+     *
+     * @param context any context (the application context is used to build the detector)
+     * @param factory the factory that builds the detector
+     * @return the detector built by the factory
+     */
+    public <D> Detector<D> acquire(Context context, Factory<D> factory) {
+        final Entry<D> entry;
+        synchronized (this) {
+            entry = getOrCreateEntry(factory);
+            entry.referenceCount++;
+            releaseHandler.removeCallbacks(entry.idleRelease);
+        }
+
+        final Detector<D> detector = entry.getDetector(context); // Never null, since the entry is referenced.
+        warmUpInBackground(entry);
+
+        return detector;
+    }
+
+    /**
+     * Decrements the reference count of the detector built by the input factory. The detector is
+     * released once it has not been acquired again for a while.
+     */
+    public synchronized void release(Factory<?> factory) {
+        final Entry<?> entry = entries.get(factory);
+        if (entry == null || entry.referenceCount == 0) {
+            Log.w(TAG, "Unbalanced detector release.");
+            return;
+        }
+
+        entry.referenceCount--;
+        if (entry.referenceCount == 0) {
+            releaseHandler.postDelayed(entry.idleRelease, IDLE_RELEASE_DELAY_MILLIS);
+        }
+    }
+
+    /**
+     * Creates and warms up the detector built by the input factory in the background, unless it is
+     * already available. A pre-warmed detector that is not acquired is released after a while.
+     */
+    public void prewarm(Context context, final Factory<?> factory) {
+        final Context appContext = context.getApplicationContext();
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                final Entry<?> entry;
+                synchronized (DetectorRegistry.this) {
+                    entry = getOrCreateEntry(factory);
+                    if (entry.referenceCount == 0) {
+                        releaseHandler.removeCallbacks(entry.idleRelease);
+                        releaseHandler.postDelayed(entry.idleRelease, IDLE_RELEASE_DELAY_MILLIS);
+                    }
+                }
+
+                if (entry.getDetector(appContext) != null) { // Null if released as idle in the meantime.
+                    entry.warmUp();
+                }
+            }
+        }, TAG).start();
+    }
+
+    // Must be called while holding the registry lock. The detector itself is built later, outside of it.
+    @SuppressWarnings("unchecked")
+    private <D> Entry<D> getOrCreateEntry(Factory<D> factory) {
+        Entry<D> entry = (Entry<D>) entries.get(factory);
+        if (entry == null) {
+            entry = new Entry<>(factory);
+            entries.put(factory, entry);
+        }
+
+        return entry;
+    }
+
+    private void warmUpInBackground(final Entry<?> entry) {
+        if (entry.warmUpStarted) {
+            return;
+        }
+
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                entry.warmUp();
+            }
+        }, TAG).start();
+    }
+
+    // Runs on the release thread. The detector monitor is only taken after the registry lock has been released.
+    private void releaseIfIdle(Entry<?> entry) {
+        synchronized (this) {
+            if (entry.referenceCount != 0 || entries.get(entry.factory) != entry) {
+                return;
+            }
+            entries.remove(entry.factory);
+        }
+
+        entry.releaseDetector();
+    }
+
+    private final class Entry<D> {
+        final Factory<D> factory;
+        private final Object buildLock = new Object();
+        private Detector<D> detector; // Guarded by the build lock.
+        private boolean released; // Guarded by the build lock.
+        int referenceCount; // Guarded by the registry lock.
+        volatile boolean warmUpStarted;
+
+        final Runnable idleRelease = new Runnable() {
+            @Override
+            public void run() {
+                releaseIfIdle(Entry.this);
+            }
+        };
+
+        Entry(Factory<D> factory) {
+            this.factory = factory;
+        }
+
+        /**
+         * Returns the detector of this entry, building it on first use, or null if the entry has been
+         * released (which cannot happen while the entry is referenced).
+         */
+        Detector<D> getDetector(Context context) {
+            synchronized (buildLock) {
+                if (detector == null && !released) {
+                    detector = factory.build(context.getApplicationContext());
+                }
+
+                return detector;
+            }
+        }
+
+        void releaseDetector() {
+            final Detector<D> built;
+            synchronized (buildLock) {
+                released = true;
+                built = detector;
+                detector = null;
+            }
+
+            if (built != null) {
+                synchronized (built) {
+                    built.release();
+                }
+                Log.d(TAG, "Idle detector released: " + built.getClass().getSimpleName());
+            }
+        }
+
+        // Runs a detection on a blank frame, which forces the native models to load.
+        void warmUp() {
+            final Detector<D> detector;
+            synchronized (buildLock) {
+                detector = this.detector;
+            }
+            if (detector == null) {
+                return;
+            }
+
+            synchronized (detector) {
+                if (warmUpStarted) {
+                    return;
+                }
+                warmUpStarted = true;
+
+                if (!detector.isOperational()) {
+                    Log.d(TAG, "Detector not operational yet: warm-up skipped.");
+                    return;
+                }
+
+                final long start = System.currentTimeMillis();
+                final Bitmap blank = Bitmap.createBitmap(WARM_UP_FRAME_SIZE, WARM_UP_FRAME_SIZE, Bitmap.Config.ARGB_8888);
+                blank.eraseColor(Color.WHITE);
+                try {
+                    detector.detect(new Frame.Builder().setBitmap(blank).build());
+                } catch (RuntimeException re) {
+                    Log.w(TAG, "Detector warm-up failed.", re);
+                } finally {
+                    blank.recycle();
+                }
+                Log.d(TAG, detector.getClass().getSimpleName() + " warmed up in " + (System.currentTimeMillis() - start) + " ms.");
+            }
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package uk.co.akm.test.barcodereaderdemo.base;
+
+import android.graphics.Bitmap;
+
+import com.google.android.gms.vision.Frame;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Reusable holder of a frame copy. Frame producers (e.g. a camera source) recycle their buffers as
+ * soon as the frame has been received, so frames processed later must be copied first. The image
+ * data buffer is reused from frame to frame and only grows when a larger frame is copied.
+ */
+final class FrameCopy {
+    private ByteBuffer data;
+    private Bitmap bitmap;
+    private int width;
+    private int height;
+    private int format;
+    private int id;
+    private int rotation;
+    private long timestampMillis;
+
+    void copy(Frame frame) {
+        final Frame.Metadata metadata = frame.getMetadata();
+        width = metadata.getWidth();
+        height = metadata.getHeight();
+        format = metadata.getFormat();
+        id = metadata.getId();
+        rotation = metadata.getRotation();
+        timestampMillis = metadata.getTimestampMillis();
+
+        bitmap = frame.getBitmap();
+        if (bitmap == null) {
+            copyImageData(frame.getGrayscaleImageData());
+        }
+    }
+
+    private void copyImageData(ByteBuffer source) {
+        final ByteBuffer src = source.duplicate(); // Do not disturb the position of the producer's buffer.
+        src.rewind();
+
+        final int size = src.remaining();
+        if (data == null || data.capacity() < size) {
+            data = ByteBuffer.allocate(size);
+        }
+
+        data.clear();
+        data.put(src);
+        data.flip();
+    }
+
+    Frame toFrame() {
+        final Frame.Builder builder = new Frame.Builder();
+        if (bitmap != null) {
+            builder.setBitmap(bitmap);
+        } else {
+            builder.setImageData(data, width, height, format);
+        }
+
+        return builder.setId(id).setRotation(rotation).setTimestampMillis(timestampMillis).build();
+    }
+}
@@ -0,0 +1,244 @@
+package uk.co.akm.test.barcodereaderdemo.base;
+
+import android.util.Log;
+import android.util.SparseArray;
+
+import com.google.android.gms.vision.Detector;
+import com.google.android.gms.vision.Frame;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pipeline stage that sits in front of a detector and decouples the frame producer (e.g. a camera
+ * source) from the detection. Incoming frames are copied into a bounded ring buffer that keeps only
+ * the latest N frames: when the buffer is full, the oldest (stale) frame is dropped to make room for
+ * the new one. A single worker thread runs the wrapped detector on the buffered frames and forwards
+ * the detections to the processor set on this stage. Hence the frame producer never blocks and the
+ * latency stays flat when frames arrive faster than they can be detected, instead of queueing up.
+ *
+ * The frame data are copied because frame producers recycle their buffers as soon as the frame has
+ * been received. The copies ({@link FrameCopy}) are held in slots, which are reused from frame to frame.
+ *
+ * The wrapped detector is shared (e.g. with the decoding of stored images), so it is only used while
+ * holding its lock. A frame that fails to be detected is logged and skipped, so it does not stop the
+ * worker thread.
+ *
+ * Releasing this stage stops the worker thread, but does not release the wrapped detector.
+ *
+ * @param <D> the object detected by the wrapped detector
+ */
+public final class FrameDroppingDetector<D> extends Detector<D> {
+    private static final String TAG = FrameDroppingDetector.class.getSimpleName();
+
+    private final Detector<D> delegate;
+    private final int capacity;
+
+    private final Object lock = new Object();
+    private final ArrayDeque<FrameCopy> pending;
+    private final ArrayDeque<FrameCopy> free;
+    private int allocatedSlots;
+
+    private Worker worker;
+    private Detector.Processor<D> processor;
+
+    private final AtomicLong receivedCount = new AtomicLong();
+    private final AtomicLong droppedCount = new AtomicLong();
+    private final AtomicLong processedCount = new AtomicLong();
+
+    /**
+     * @param delegate the detector that will process the buffered frames
+     * @param capacity the maximum number of frames waiting to be processed
+     */
+    public FrameDroppingDetector(Detector<D> delegate, int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Illegal frame buffer capacity: " + capacity + ". It must be at least 1.");
+        }
+
+        this.delegate = delegate;
+        this.capacity = capacity;
+        this.pending = new ArrayDeque<>(capacity);
+        this.free = new ArrayDeque<>(capacity + 1);
+    }
+
+    /**
+     * Runs the wrapped detector synchronously on the input frame, bypassing the frame buffer.
+     */
+    @Override
+    public SparseArray<D> detect(Frame frame) {
+        synchronized (delegate) {
+            return delegate.detect(frame);
+        }
+    }
+
+    @Override
+    public boolean isOperational() {
+        return delegate.isOperational();
+    }
+
+    @Override
+    public boolean setFocus(int id) {
+        return delegate.setFocus(id);
+    }
+
+    @Override
+    public void setProcessor(Detector.Processor<D> processor) {
+        super.setProcessor(processor);
+
+        synchronized (lock) {
+            this.processor = processor;
+        }
+    }
+
+    /**
+     * Buffers the input frame for asynchronous detection. This method never blocks waiting for the
+     * detection: if the buffer is full, the oldest buffered frame is dropped.
+     */
+    @Override
+    public void receiveFrame(Frame frame) {
+        receivedCount.incrementAndGet();
+
+        synchronized (lock) {
+            if (processor == null) {
+                throw new IllegalStateException("The detector processor must be set before receiving frames.");
+            }
+
+            FrameCopy slot = free.pollFirst();
+            if (slot == null) {
+                if (allocatedSlots < capacity + 1) {
+                    slot = new FrameCopy();
+                    allocatedSlots++;
+                } else {
+                    slot = pending.pollFirst(); // Buffer full: drop the oldest frame and reuse its slot.
+                    droppedCount.incrementAndGet();
+                }
+            }
+
+            slot.copy(frame);
+            pending.addLast(slot);
+
+            startWorkerIfRequired();
+            lock.notifyAll();
+        }
+    }
+
+    private void startWorkerIfRequired() {
+        if (worker == null) {
+            worker = new Worker();
+            new Thread(worker, TAG).start();
+        }
+    }
+
+    /**
+     * Stops the worker thread and releases the processor. Any buffered frames not processed yet
+     * are discarded. The wrapped detector is not released.
+     */
+    @Override
+    public void release() {
+        synchronized (lock) {
+            worker = null;
+            processor = null;
+            droppedCount.addAndGet(pending.size());
+            free.addAll(pending);
+            pending.clear();
+            lock.notifyAll();
+        }
+
+        super.release();
+        Log.d(TAG, getStatsSummary());
+    }
+
+    /**
+     * Returns the number of frames received so far.
+     */
+    public long getReceivedCount() {
+        return receivedCount.get();
+    }
+
+    /**
+     * Returns the number of frames dropped so far, without being processed.
+     */
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    /**
+     * Returns the number of frames processed by the wrapped detector so far.
+     */
+    public long getProcessedCount() {
+        return processedCount.get();
+    }
+
+    public String getStatsSummary() {
+        return ("Frames received: " + receivedCount.get() + ", processed: " + processedCount.get() + ", dropped: " + droppedCount.get());
+    }
+
+    private FrameCopy takeNextSlot(Worker caller) throws InterruptedException {
+        synchronized (lock) {
+            while (worker == caller && pending.isEmpty()) {
+                lock.wait();
+            }
+
+            return (worker == caller ? pending.pollFirst() : null); // A released (or replaced) worker must stop.
+        }
+    }
+
+    private void recycleSlot(FrameCopy slot) {
+        synchronized (lock) {
+            free.addLast(slot);
+        }
+    }
+
+    private Detector.Processor<D> currentProcessor() {
+        synchronized (lock) {
+            return processor;
+        }
+    }
+
+    private void clearWorker(Worker caller) {
+        synchronized (lock) {
+            if (worker == caller) {
+                worker = null; // The next frame received starts a new worker.
+            }
+        }
+    }
+
+    private final class Worker implements Runnable {
+
+        @Override
+        public void run() {
+            try {
+                FrameCopy slot;
+                while ((slot = takeNextSlot(this)) != null) {
+                    try {
+                        process(slot.toFrame());
+                    } catch (RuntimeException re) {
+                        Log.e(TAG, "Could not process a buffered frame.", re);
+                    } finally {
+                        recycleSlot(slot);
+                    }
+                }
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+            } finally {
+                clearWorker(this);
+            }
+        }
+
+        private void process(Frame frame) {
+            final ScanMetrics metrics = ScanMetrics.getInstance();
+            final long start = metrics.start();
+            final SparseArray<D> detected;
+            synchronized (delegate) {
+                detected = delegate.detect(frame);
+            }
+            metrics.stop(ScanMetrics.Stage.DETECT, start);
+            processedCount.incrementAndGet();
+
+            final Detector.Processor<D> processor = currentProcessor();
+            if (processor != null) {
+                processor.receiveDetections(new Detector.Detections<D>(detected, frame.getMetadata(), delegate.isOperational()));
+            }
+        }
+    }
+}
@@ -0,0 +1,310 @@
+package uk.co.akm.test.barcodereaderdemo.base;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.BitmapRegionDecoder;
+import android.graphics.Rect;
+import android.os.ParcelFileDescriptor;
+import android.util.Log;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Loads a stored image file at reduced scales. The file is opened only once and memory-mapped, so
+ * the dimensions measurement and every subsequent decode (at different scales or of a region of
+ * the image only) read the same mapped data, without opening the file again or copying it to the
+ * heap. Each decode is sub-sampled by a power of two (the only sample sizes JPEG decoding supports
+ * natively) and can produce a bitmap with fewer bytes per pixel, e.g. {@link Bitmap.Config#RGB_565}.
+ *
+ * Instances are not thread-safe, except for the region decoding, and must be closed once the image
+ * is no longer needed.
+ */
+final class ImageFileLoader {
+    private static final String TAG = ImageFileLoader.class.getSimpleName();
+
+    private final BitmapPool bitmapPool;
+    private ByteBuffer data;
+    private int width;
+    private int height;
+    private BitmapRegionDecoder regionDecoder;
+    private byte[] contentDigest;
+
+    /**
+     * Maps the input image file into memory. The file itself is closed straight away.
+     *
+     * @param imageFilePath the absolute path of the image file
+     * @param bitmapPool the pool providing reusable bitmaps for the decoding
+     * @throws IOException if the file cannot be read
+     */
+    ImageFileLoader(String imageFilePath, BitmapPool bitmapPool) throws IOException {
+        this.bitmapPool = bitmapPool;
+
+        final RandomAccessFile file = new RandomAccessFile(imageFilePath, "r");
+        try {
+            data = map(file.getChannel());
+        } finally {
+            file.close();
+        }
+    }
+
+    /**
+     * Maps the image file behind the input descriptor (e.g. of a content URI) into memory. The
+     * descriptor is closed straight away.
+     *
+     * @param imageFile the descriptor of the image file
+     * @param bitmapPool the pool providing reusable bitmaps for the decoding
+     * @throws IOException if the file cannot be read (e.g. it is not a regular file)
+     */
+    ImageFileLoader(ParcelFileDescriptor imageFile, BitmapPool bitmapPool) throws IOException {
+        this.bitmapPool = bitmapPool;
+
+        final FileInputStream in = new FileInputStream(imageFile.getFileDescriptor());
+        try {
+            data = map(in.getChannel());
+        } finally {
+            in.close();
+            imageFile.close();
+        }
+    }
+
+    private static ByteBuffer map(FileChannel channel) throws IOException {
+        return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+    }
+
+    /**
+     * Returns the image width, measured from the image header the first time it is needed.
+     */
+    int getWidth() {
+        measureDimensions();
+
+        return width;
+    }
+
+    /**
+     * Returns the image height, measured from the image header the first time it is needed.
+     */
+    int getHeight() {
+        measureDimensions();
+
+        return height;
+    }
+
+    private void measureDimensions() {
+        if (width == 0 || height == 0) {
+            final ScanMetrics metrics = ScanMetrics.getInstance();
+            final long start = metrics.start();
+
+            final BitmapFactory.Options bmOptions = new BitmapFactory.Options();
+            bmOptions.inJustDecodeBounds = true;
+            BitmapFactory.decodeStream(openStream(), null, bmOptions);
+            width = bmOptions.outWidth;
+            height = bmOptions.outHeight;
+
+            metrics.stop(ScanMetrics.Stage.BOUNDS_MEASURE, start);
+        }
+    }
+
+    /**
+     * Returns the SHA-256 digest of the image file content, computed from the mapped data the first
+     * time it is needed, or null if it could not be computed (e.g. the loader has been closed).
+     */
+    byte[] getContentDigest() {
+        if (contentDigest == null && data != null) {
+            try {
+                final MessageDigest messageDigest = MessageDigest.getInstance("SHA-256");
+                messageDigest.update(data.duplicate());
+                contentDigest = messageDigest.digest();
+            } catch (NoSuchAlgorithmException nsae) {
+                Log.d(TAG, "Could not compute the digest of the stored image.");
+            }
+        }
+
+        return contentDigest;
+    }
+
+    /**
+     * Decodes the whole image, sub-sampled by the input power of two sample size. The bitmap is
+     * decoded into a pooled bitmap, if a suitable one is available, and it is mutable, so that it
+     * can be returned to the pool once it is no longer needed.
+     *
+     * @param sampleSize the sample size (a power of two)
+     * @param config the bitmap configuration
+     * @return the decoded bitmap or null if the image could not be decoded
+     */
+    Bitmap decode(int sampleSize, Bitmap.Config config) {
+        final BitmapFactory.Options bmOptions = new BitmapFactory.Options();
+        bmOptions.inSampleSize = sampleSize;
+        bmOptions.inPreferredConfig = config;
+        bmOptions.outWidth = getWidth(); // Required for finding a suitable pooled bitmap.
+        bmOptions.outHeight = getHeight();
+        bmOptions.inMutable = true;
+        bmOptions.inBitmap = bitmapPool.getReusable(bmOptions);
+        if (bmOptions.inBitmap != null) {
+            try {
+                return decodeTimed(bmOptions);
+            } catch (IllegalArgumentException iae) {
+                Log.d(TAG, "Could not decode the stored image into a pooled bitmap.");
+                bmOptions.inBitmap = null; // The pooled bitmap could be in an inconsistent state, so we just drop it.
+            }
+        }
+
+        return decodeTimed(bmOptions);
+    }
+
+    /**
+     * Decodes the input region of the image only, sub-sampled by the input power of two sample size.
+     * Regions read without sub-sampling are decoded into pooled bitmaps, if available, so reading
+     * many regions of the same size (e.g. tiles) allocates only a few bitmaps. Regions can be decoded
+     * from any thread, one at a time.
+     *
+     * @param region the region to decode, in image pixels
+     * @param sampleSize the sample size (a power of two)
+     * @param config the bitmap configuration
+     * @return the decoded bitmap or null if the region could not be decoded (e.g. the loader has been closed)
+     */
+    synchronized Bitmap decodeRegion(Rect region, int sampleSize, Bitmap.Config config) {
+        if (data == null) {
+            Log.d(TAG, "Could not decode a region of the stored image: the loader is closed.");
+            return null;
+        }
+
+        final BitmapFactory.Options bmOptions = new BitmapFactory.Options();
+        bmOptions.inSampleSize = sampleSize;
+        bmOptions.inPreferredConfig = config;
+        bmOptions.inMutable = true;
+        if (sampleSize == 1) {
+            bmOptions.inBitmap = bitmapPool.get(region.width(), region.height(), config);
+        }
+
+        final ScanMetrics metrics = ScanMetrics.getInstance();
+        final long start = metrics.start();
+        try {
+            if (regionDecoder == null) {
+                regionDecoder = BitmapRegionDecoder.newInstance(openStream(), false);
+            }
+
+            return decodeRegionReusing(region, bmOptions);
+        } catch (IOException | IllegalArgumentException e) {
+            Log.d(TAG, "Could not decode a region of the stored image.");
+            return null;
+        } finally {
+            metrics.stop(ScanMetrics.Stage.BITMAP_DECODE, start);
+        }
+    }
+
+    private Bitmap decodeRegionReusing(Rect region, BitmapFactory.Options bmOptions) {
+        if (bmOptions.inBitmap != null) {
+            try {
+                return regionDecoder.decodeRegion(region, bmOptions);
+            } catch (IllegalArgumentException iae) {
+                Log.d(TAG, "Could not decode a region of the stored image into a pooled bitmap.");
+                bmOptions.inBitmap = null; // The pooled bitmap could be in an inconsistent state, so we just drop it.
+            }
+        }
+
+        return regionDecoder.decodeRegion(region, bmOptions);
+    }
+
+    // The time spent reading the mapped data (i.e. mostly page faults) is recorded separately from the decoding time.
+    private Bitmap decodeTimed(BitmapFactory.Options bmOptions) {
+        final ScanMetrics metrics = ScanMetrics.getInstance();
+        final boolean timed = metrics.isEnabled();
+        final long start = (timed ? System.nanoTime() : 0);
+
+        final TimedInputStream in = new TimedInputStream(openStream(), timed);
+        try {
+            return BitmapFactory.decodeStream(in, null, bmOptions);
+        } finally {
+            if (timed) {
+                final long readNanos = in.getReadNanos();
+                metrics.record(ScanMetrics.Stage.FILE_READ, readNanos);
+                metrics.record(ScanMetrics.Stage.BITMAP_DECODE, System.nanoTime() - start - readNanos);
+            }
+        }
+    }
+
+    private InputStream openStream() {
+        return new ByteBufferInputStream(data.duplicate());
+    }
+
+    /**
+     * Releases the mapped image data and the region decoder (if any).
+     */
+    synchronized void close() {
+        if (regionDecoder != null) {
+            regionDecoder.recycle();
+            regionDecoder = null;
+        }
+
+        data = null; // The mapping is released once garbage collected.
+    }
+
+    /**
+     * Input stream reading a byte buffer (from its position to its limit), without copying it.
+     */
+    private static final class ByteBufferInputStream extends InputStream {
+        private final ByteBuffer buffer;
+        private int mark;
+
+        ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+            this.mark = buffer.position();
+        }
+
+        @Override
+        public int read() {
+            return (buffer.hasRemaining() ? (buffer.get() & 0xFF) : -1);
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int count) {
+            if (count == 0) {
+                return 0;
+            }
+
+            final int n = Math.min(count, buffer.remaining());
+            if (n == 0) {
+                return -1;
+            }
+
+            buffer.get(bytes, offset, n);
+
+            return n;
+        }
+
+        @Override
+        public long skip(long n) {
+            final int skipped = (int) Math.max(0, Math.min(n, buffer.remaining()));
+            buffer.position(buffer.position() + skipped);
+
+            return skipped;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+
+        @Override
+        public boolean markSupported() {
+            return true;
+        }
+
+        @Override
+        public synchronized void mark(int readLimit) {
+            mark = buffer.position();
+        }
+
+        @Override
+        public synchronized void reset() {
+            buffer.position(mark);
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package uk.co.akm.test.barcodereaderdemo.base;
+
+import android.graphics.Bitmap;
+import android.graphics.ImageFormat;
+import android.graphics.Rect;
+
+import com.google.android.gms.vision.Frame;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import uk.co.akm.test.barcodereaderdemo.core.Luminance;
+import uk.co.akm.test.barcodereaderdemo.core.ScanImage;
+
+/**
+ * Builds detector frames that carry the luminance of a bitmap only, as NV21 image data (i.e. the
+ * luminance plane followed by a neutral chroma plane), instead of the bitmap itself. A region of the
+ * bitmap can be cropped and the result can be rotated by quarter turns during the conversion, so
+ * neither a cropped nor a rotated copy of the bitmap (at 4 bytes per pixel) has to be allocated. The
+ * frame data take 1.5 bytes per pixel and are held in a buffer reused from frame to frame.
+ *
+ * The luminance frames are an alternative to the bitmap frames, enabled with {@link #setEnabled(boolean)},
+ * so that the throughput of the two paths can be compared (see {@link ScanMetrics}).
+ *
+ * Note that the luminance is still converted from a decoded bitmap: the platform decoders cannot
+ * decode a JPEG file straight to luminance (or YUV), so the decoded bitmap (pooled, and RGB_565 where
+ * the colour depth does not matter, e.g. for barcodes) is still allocated and this path adds a
+ * conversion pass over it. What it saves is the cropped and rotated bitmap copies and the bitmap
+ * handed to the detector. The camera preview frames are NV21 already, so they are never converted.
+ *
+ * Instances are not thread-safe, so each thread must use its own builder (see {@link #forCurrentThread()}).
+ * A frame built is only valid until the next frame is built by the same builder.
+ */
+public final class LuminanceFrameBuilder {
+    private static final byte NEUTRAL_CHROMA = (byte) 128;
+    private static final int NUMBER_OF_POSITIONS = 4;
+
+    private static volatile boolean enabled;
+
+    private static final ThreadLocal<LuminanceFrameBuilder> threadBuilders = new ThreadLocal<LuminanceFrameBuilder>() {
+        @Override
+        protected LuminanceFrameBuilder initialValue() {
+            return new LuminanceFrameBuilder();
+        }
+    };
+
+    /**
+     * Returns true if the detection code should build luminance frames instead of bitmap frames.
+     */
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    public static void setEnabled(boolean enabled) {
+        LuminanceFrameBuilder.enabled = enabled;
+    }
+
+    /**
+     * Returns the builder of the current thread, so that its buffers are reused by all the frames
+     * built on the thread.
+     */
+    public static LuminanceFrameBuilder forCurrentThread() {
+        return threadBuilders.get();
+    }
+
+    private int[] row;
+    private ByteBuffer frameData;
+
+    /**
+     * Returns a frame with the luminance of the whole input bitmap.
+     */
+    public Frame build(Bitmap source) {
+        return build(source, null, 0);
+    }
+
+    /**
+     * Returns a frame with the luminance of the input region of the input bitmap, rotated clockwise
+     * by the specified number of quarter turns.
+     *
+     * @param source the bitmap
+     * @param region the region of the bitmap (or null for the whole bitmap)
+     * @param quarterTurns the number of clockwise quarter turns
+     * @return the luminance frame
+     */
+    public Frame build(Bitmap source, Rect region, int quarterTurns) {
+        final ScanImage image = buildImage(source, region, quarterTurns);
+
+        return new Frame.Builder().setImageData(image.getNv21Data(), image.getWidth(), image.getHeight(), ImageFormat.NV21).build();
+    }
+
+    /**
+     * Returns an image backed by the NV21 data of the frame that {@link #build(Bitmap, Rect, int)}
+     * would return, so that it can be handed to a {@link VisionScanEngine} without a copy. The image
+     * is only valid until the next frame or image is built by the same builder.
+     */
+    public ScanImage buildImage(Bitmap source, Rect region, int quarterTurns) {
+        final ScanMetrics metrics = ScanMetrics.getInstance();
+        final long start = metrics.start();
+
+        final int left = (region == null ? 0 : region.left);
+        final int top = (region == null ? 0 : region.top);
+        final int width = (region == null ? source.getWidth() : region.width());
+        final int height = (region == null ? source.getHeight() : region.height());
+        final int turns = ((quarterTurns%NUMBER_OF_POSITIONS) + NUMBER_OF_POSITIONS)%NUMBER_OF_POSITIONS;
+        final boolean sideways = (turns%2 == 1);
+        final int frameWidth = (sideways ? height : width);
+        final int frameHeight = (sideways ? width : height);
+
+        final byte[] data = prepareFrameData(frameWidth, frameHeight);
+        if (row == null || row.length < width) {
+            row = new int[width];
+        }
+
+        // Each source row is written along a line of the frame, starting at the base index and moving by the step.
+        for (int y=0 ; y<height ; y++) {
+            source.getPixels(row, 0, width, left, top + y, width, 1);
+
+            int index;
+            final int step;
+            switch (turns) {
+                case 1: index = height - 1 - y; step = height; break;
+                case 2: index = (height - 1 - y)*width + width - 1; step = -1; break;
+                case 3: index = (width - 1)*height + y; step = -height; break;
+
+                default: index = y*width; step = 1;
+            }
+
+            for (int x=0 ; x<width ; x++) {
+                data[index] = (byte) Luminance.fromArgb(row[x]);
+                index += step;
+            }
+        }
+
+        final ScanImage image = ScanImage.ofNv21(frameData, frameWidth, frameHeight);
+        metrics.stop(ScanMetrics.Stage.FRAME_BUILD, start);
+
+        return image;
+    }
+
+    private byte[] prepareFrameData(int width, int height) {
+        final int lumaSize = width*height;
+        final int frameSize = ScanImage.nv21FrameSize(width, height);
+        if (frameData == null || frameData.capacity() < frameSize) {
+            frameData = ByteBuffer.allocate(frameSize);
+        }
+
+        final byte[] data = frameData.array();
+        Arrays.fill(data, lumaSize, frameSize, NEUTRAL_CHROMA);
+        frameData.clear();
+        frameData.limit(frameSize);
+
+        return data;
+    }
+}
@@ -31,7 +31,7 @@ public abstract class PhotoActivity extends AppCompatActivity {
     private int targetBitmapHeight;
     private String imageFilePath;
 
-    private VisionAsyncTask visionTask;
+    private VisionAsyncTask<?> visionTask;
 
     @Override
     protected void onPause() {
@@ -42,7 +42,7 @@ public abstract class PhotoActivity extends AppCompatActivity {
 
     protected final void cancelVisionTask() {
         if (visionTask != null) {
-            visionTask.onParentPause();
+            visionTask.cancel();
             visionTask = null;
         }
     }
@@ -135,9 +135,11 @@ public abstract class PhotoActivity extends AppCompatActivity {
     }
 
     private void launchImageReadingAndProcessingTask() {
+        cancelVisionTask(); // Any previous scan is stale by now.
+
         visionTask = buildVisionTask();
         visionTask.setImageParameters(targetBitmapWidth, targetBitmapHeight, imageFilePath);
-        visionTask.execute((Void) null);
+        visionTask.execute();
     }
 
     /**
@@ -151,7 +153,7 @@ public abstract class PhotoActivity extends AppCompatActivity {
      *     <li>Delete the image file processed, since it is no longer needed</li>
      * <ol/>
      */
-    protected abstract VisionAsyncTask buildVisionTask();
+    protected abstract VisionAsyncTask<?> buildVisionTask();
 
     protected final void deleteStoredImage() {
         if (imageFilePath != null) {
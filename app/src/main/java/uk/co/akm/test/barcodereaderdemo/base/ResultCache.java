@@ -0,0 +1,180 @@
+package uk.co.akm.test.barcodereaderdemo.base;
+
+import android.os.SystemClock;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Bounded LRU cache of decoding results, keyed by a digest of the stored image file content, so that
+ * repeated scans of the same image file (e.g. a batch run again, or a photo picked again) skip the
+ * detection entirely. The digest is exact: images that merely look alike (e.g. labels with the same
+ * layout, but different numbers) never share a result. For the same reason, the cache never serves
+ * camera captures, since two captures of the same barcode are never the same file. Only successful
+ * results are cached and each result expires after a fixed time to live.
+ *
+ * All methods are thread-safe.
+ */
+public final class ResultCache {
+    private final long timeToLiveMillis;
+    private final LinkedHashMap<Key, Result> results;
+
+    private long hitCount;
+    private long missCount;
+
+    /**
+     * @param maxEntries the maximum number of cached results
+     * @param timeToLiveMillis the time (in ms) after which a cached result expires
+     */
+    public ResultCache(final int maxEntries, long timeToLiveMillis) {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("Illegal result cache size: " + maxEntries + ". It must be at least 1.");
+        }
+
+        this.timeToLiveMillis = timeToLiveMillis;
+        this.results = new LinkedHashMap<Key, Result>(maxEntries + 1, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Result> eldest) {
+                return (size() > maxEntries);
+            }
+        };
+    }
+
+    /**
+     * Returns the cache key of the input image content. The variant distinguishes the results of
+     * different decoding modes for the same content (e.g. single or multiple barcodes).
+     *
+     * @param contentDigest the digest of the image file content (e.g. its SHA-256 digest)
+     * @param variant the decoding variant (or null if there is only one)
+     */
+    public static Key buildKey(byte[] contentDigest, String variant) {
+        return new Key(contentDigest.clone(), variant);
+    }
+
+    /**
+     * Returns the result cached for the input key or null if there is none (or it has expired).
+     */
+    public synchronized Result get(Key key) {
+        final Result result = results.get(key);
+        if (result != null && SystemClock.elapsedRealtime() - result.timestampMillis > timeToLiveMillis) {
+            results.remove(key);
+            missCount++;
+            return null;
+        }
+
+        if (result == null) {
+            missCount++;
+        } else {
+            hitCount++;
+        }
+
+        return result;
+    }
+
+    /**
+     * Caches the input (successful) result for the input key.
+     *
+     * @param key the key of the decoded content
+     * @param text the decoded text
+     * @param category the category of the result (or null if not known)
+     * @param values the individual values decoded (e.g. the barcode raw values) or null if only the text is known
+     */
+    public synchronized void put(Key key, String text, String category, List<String> values) {
+        results.put(key, new Result(text, category, values, SystemClock.elapsedRealtime()));
+    }
+
+    public synchronized void clear() {
+        results.clear();
+    }
+
+    public synchronized long getHitCount() {
+        return hitCount;
+    }
+
+    public synchronized long getMissCount() {
+        return missCount;
+    }
+
+    /**
+     * Returns the ratio of the lookups that found a cached result (zero if there were no lookups).
+     */
+    public synchronized double getHitRatio() {
+        final long lookups = hitCount + missCount;
+
+        return (lookups == 0 ? 0 : ((double) hitCount)/lookups);
+    }
+
+    public synchronized String getStatsSummary() {
+        return ("Result cache hits: " + hitCount + ", misses: " + missCount + ", hit ratio: " + String.format(Locale.US, "%.2f", getHitRatio()) + ", size: " + results.size());
+    }
+
+    /**
+     * Cache key: the content digest of an image and the decoding variant.
+     */
+    public static final class Key {
+        private final byte[] digest;
+        private final String variant;
+
+        Key(byte[] digest, String variant) {
+            this.digest = digest;
+            this.variant = variant;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+
+            final Key other = (Key) o;
+
+            return (Arrays.equals(digest, other.digest) && (variant == null ? other.variant == null : variant.equals(other.variant)));
+        }
+
+        @Override
+        public int hashCode() {
+            return 31*Arrays.hashCode(digest) + (variant == null ? 0 : variant.hashCode());
+        }
+    }
+
+    /**
+     * Cached decoding result.
+     */
+    public static final class Result {
+        private final String text;
+        private final String category;
+        private final List<String> values;
+        private final long timestampMillis;
+
+        Result(String text, String category, List<String> values, long timestampMillis) {
+            this.text = text;
+            this.category = category;
+            this.values = values;
+            this.timestampMillis = timestampMillis;
+        }
+
+        public String getText() {
+            return text;
+        }
+
+        /**
+         * Returns the category of the result (e.g. the barcode format) or null if not known.
+         */
+        public String getCategory() {
+            return category;
+        }
+
+        /**
+         * Returns the individual values decoded (e.g. the barcode raw values) or null if not known.
+         */
+        public List<String> getValues() {
+            return values;
+        }
+    }
+}
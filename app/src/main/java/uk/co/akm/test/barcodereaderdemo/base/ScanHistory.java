@@ -0,0 +1,314 @@
+package uk.co.akm.test.barcodereaderdemo.base;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Persistent on-device history of the scan results, stored in SQLite. Each decoded value (e.g. the
+ * raw value of a barcode) is recorded with its timestamp, source, category (e.g. the barcode format),
+ * decoded text and decoding time. The value and the timestamp are indexed, so the history can be
+ * looked up by value (or value prefix) and by time range, however many scans it holds.
+ *
+ * Recording never blocks the caller: entries are queued and written by a single background thread,
+ * in one transaction per batch, either once the batch is large enough or after a short delay. The
+ * queries run on the same background thread, after all the entries queued before them have been
+ * written, and their results are delivered on the main thread.
+ *
+ * All methods are thread-safe.
+ */
+public final class ScanHistory {
+    private static final String TAG = ScanHistory.class.getSimpleName();
+
+    public static final String SOURCE_PHOTO = "photo";
+    public static final String SOURCE_LIVE = "live";
+    public static final String SOURCE_BURST = "burst";
+
+    private static final int MAX_BATCH_SIZE = 64;
+    private static final long BATCH_DELAY_MILLIS = 500;
+
+    private static ScanHistory instance;
+
+    /**
+     * Returns the history shared by the whole process.
+     */
+    public static synchronized ScanHistory getInstance(Context context) {
+        if (instance == null) {
+            instance = new ScanHistory(new Database(context.getApplicationContext()));
+        }
+
+        return instance;
+    }
+
+    /**
+     * Receives the result of a history query on the main thread.
+     */
+    public interface QueryCallback {
+
+        void onEntriesFound(List<Entry> entries);
+    }
+
+    private final Database database;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(new WriterThreadFactory());
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    private final Object lock = new Object();
+    private List<Entry> pending = new ArrayList<>();
+    private boolean flushScheduled;
+
+    private ScanHistory(Database database) {
+        this.database = database;
+    }
+
+    /**
+     * Queues the input entry for writing. The entry is written within a short delay.
+     */
+    public void record(Entry entry) {
+        synchronized (lock) {
+            pending.add(entry);
+            if (pending.size() >= MAX_BATCH_SIZE) {
+                executor.execute(new FlushTask());
+            } else if (!flushScheduled) {
+                flushScheduled = true;
+                mainHandler.postDelayed(new Runnable() {
+                    @Override
+                    public void run() {
+                        executor.execute(new FlushTask());
+                    }
+                }, BATCH_DELAY_MILLIS);
+            }
+        }
+    }
+
+    /**
+     * Queues an entry for each of the input values, all with the same timestamp, source and text.
+     *
+     * @param source where the values were scanned (e.g. {@link #SOURCE_PHOTO} or a batch image URI)
+     * @param category the category of the values (or null if not known)
+     * @param values the decoded values (e.g. the barcode raw values)
+     * @param text the decoded text, as displayed
+     * @param durationMillis the decoding time (or -1 if not known)
+     */
+    public void record(String source, String category, List<String> values, String text, long durationMillis) {
+        final long timestampMillis = System.currentTimeMillis();
+        for (String value : values) {
+            record(new Entry(timestampMillis, source, category, value, text, durationMillis));
+        }
+    }
+
+    /**
+     * Looks up the most recent entries with values starting with the input prefix (an exact value
+     * is its own prefix).
+     *
+     * @param valuePrefix the prefix of the values looked up
+     * @param limit the maximum number of entries returned
+     * @param callback the callback receiving the entries found, most recent first, on the main thread
+     */
+    public void findByValuePrefix(String valuePrefix, int limit, QueryCallback callback) {
+        // A range on the indexed column, unlike a LIKE pattern, can always be resolved with the index.
+        query("value >= ? AND value < ?", new String[]{valuePrefix, valuePrefix + Character.MAX_VALUE}, limit, callback);
+    }
+
+    /**
+     * Looks up the most recent entries recorded in the input time range.
+     *
+     * @param fromMillis the start of the time range (inclusive)
+     * @param toMillis the end of the time range (exclusive)
+     * @param limit the maximum number of entries returned
+     * @param callback the callback receiving the entries found, most recent first, on the main thread
+     */
+    public void findByTimeRange(long fromMillis, long toMillis, int limit, QueryCallback callback) {
+        query("timestamp >= ? AND timestamp < ?", new String[]{Long.toString(fromMillis), Long.toString(toMillis)}, limit, callback);
+    }
+
+    private void query(final String selection, final String[] selectionArgs, final int limit, final QueryCallback callback) {
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                flush(); // Include the entries recorded so far.
+
+                final List<Entry> entries = readEntries(selection, selectionArgs, limit);
+                mainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        callback.onEntriesFound(entries);
+                    }
+                });
+            }
+        });
+    }
+
+    private List<Entry> readEntries(String selection, String[] selectionArgs, int limit) {
+        final List<Entry> entries = new ArrayList<>();
+        final Cursor cursor = database.getReadableDatabase().query(Database.TABLE_SCANS, Database.COLUMNS, selection, selectionArgs, null, null, "timestamp DESC", Integer.toString(limit));
+        try {
+            while (cursor.moveToNext()) {
+                entries.add(new Entry(cursor.getLong(0), cursor.getString(1), cursor.getString(2), cursor.getString(3), cursor.getString(4), cursor.getLong(5)));
+            }
+        } finally {
+            cursor.close();
+        }
+
+        return entries;
+    }
+
+    // Called on the writer thread only.
+    private void flush() {
+        final List<Entry> batch;
+        synchronized (lock) {
+            batch = pending;
+            pending = new ArrayList<>();
+            flushScheduled = false;
+        }
+
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        final SQLiteDatabase db = database.getWritableDatabase();
+        final SQLiteStatement insert = db.compileStatement("INSERT INTO " + Database.TABLE_SCANS + " (timestamp, source, category, value, text, duration) VALUES (?, ?, ?, ?, ?, ?)");
+        db.beginTransaction();
+        try {
+            for (Entry entry : batch) {
+                insert.bindLong(1, entry.timestampMillis);
+                bindNullableString(insert, 2, entry.source);
+                bindNullableString(insert, 3, entry.category);
+                insert.bindString(4, entry.value);
+                bindNullableString(insert, 5, entry.text);
+                insert.bindLong(6, entry.durationMillis);
+                insert.executeInsert();
+            }
+            db.setTransactionSuccessful();
+        } catch (RuntimeException re) {
+            Log.e(TAG, "Could not record " + batch.size() + " scans in the history.", re);
+        } finally {
+            db.endTransaction();
+            insert.close();
+        }
+    }
+
+    private static void bindNullableString(SQLiteStatement statement, int index, String value) {
+        if (value == null) {
+            statement.bindNull(index);
+        } else {
+            statement.bindString(index, value);
+        }
+    }
+
+    private final class FlushTask implements Runnable {
+
+        @Override
+        public void run() {
+            flush();
+        }
+    }
+
+    /**
+     * A single scanned value.
+     */
+    public static final class Entry {
+        private final long timestampMillis;
+        private final String source;
+        private final String category;
+        private final String value;
+        private final String text;
+        private final long durationMillis;
+
+        public Entry(long timestampMillis, String source, String category, String value, String text, long durationMillis) {
+            if (value == null) {
+                throw new IllegalArgumentException("The scanned value is required.");
+            }
+
+            this.timestampMillis = timestampMillis;
+            this.source = source;
+            this.category = category;
+            this.value = value;
+            this.text = text;
+            this.durationMillis = durationMillis;
+        }
+
+        public long getTimestampMillis() {
+            return timestampMillis;
+        }
+
+        public String getSource() {
+            return source;
+        }
+
+        /**
+         * Returns the category of the value (e.g. the barcode format) or null if not known.
+         */
+        public String getCategory() {
+            return category;
+        }
+
+        public String getValue() {
+            return value;
+        }
+
+        /**
+         * Returns the decoded text, as displayed, or null if not recorded.
+         */
+        public String getText() {
+            return text;
+        }
+
+        /**
+         * Returns the decoding time or -1 if not known.
+         */
+        public long getDurationMillis() {
+            return durationMillis;
+        }
+    }
+
+    private static final class Database extends SQLiteOpenHelper {
+        private static final String DATABASE_NAME = "scan_history.db";
+        private static final int DATABASE_VERSION = 1;
+
+        static final String TABLE_SCANS = "scans";
+        static final String[] COLUMNS = {"timestamp", "source", "category", "value", "text", "duration"};
+
+        Database(Context context) {
+            super(context, DATABASE_NAME, null, DATABASE_VERSION);
+        }
+
+        @Override
+        public void onCreate(SQLiteDatabase db) {
+            db.execSQL("CREATE TABLE " + TABLE_SCANS + " ("
+                    + "_id INTEGER PRIMARY KEY AUTOINCREMENT, "
+                    + "timestamp INTEGER NOT NULL, "
+                    + "source TEXT, "
+                    + "category TEXT, "
+                    + "value TEXT NOT NULL, "
+                    + "text TEXT, "
+                    + "duration INTEGER NOT NULL)");
+            db.execSQL("CREATE INDEX scans_value_index ON " + TABLE_SCANS + " (value)");
+            db.execSQL("CREATE INDEX scans_timestamp_index ON " + TABLE_SCANS + " (timestamp)");
+        }
+
+        @Override
+        public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {}
+    }
+
+    private static final class WriterThreadFactory implements ThreadFactory {
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            final Thread thread = new Thread(runnable, TAG);
+            thread.setDaemon(true);
+
+            return thread;
+        }
+    }
+}
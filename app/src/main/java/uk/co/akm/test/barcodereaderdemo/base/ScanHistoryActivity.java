@@ -0,0 +1,97 @@
+package uk.co.akm.test.barcodereaderdemo.base;
+
+import android.os.Bundle;
+import android.support.v7.app.AppCompatActivity;
+import android.text.format.DateFormat;
+import android.view.View;
+import android.widget.ArrayAdapter;
+import android.widget.EditText;
+import android.widget.ListView;
+import android.widget.TextView;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import uk.co.akm.test.barcodereaderdemo.R;
+
+/**
+ * Simple screen that looks up the {@link ScanHistory} by scanned value (or value prefix) and by
+ * recent time range. The queries run in the background, so the screen stays responsive however
+ * many scans the history holds. At most {@link #MAX_ENTRIES} entries are listed per query.
+ */
+public final class ScanHistoryActivity extends AppCompatActivity {
+    private static final int MAX_ENTRIES = 500;
+    private static final long HOUR_MILLIS = 60*60*1000L;
+
+    private EditText valueView;
+    private TextView messageView;
+    private ArrayAdapter<String> entriesAdapter;
+
+    private final ScanHistory.QueryCallback displayCallback = new ScanHistory.QueryCallback() {
+        @Override
+        public void onEntriesFound(List<ScanHistory.Entry> entries) {
+            displayEntries(entries);
+        }
+    };
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.activity_scan_history);
+
+        valueView = (EditText) findViewById(R.id.value);
+        messageView = (TextView) findViewById(R.id.message);
+        entriesAdapter = new ArrayAdapter<>(this, android.R.layout.simple_list_item_1, new ArrayList<String>());
+        ((ListView) findViewById(R.id.entries)).setAdapter(entriesAdapter);
+
+        findRecent(24*HOUR_MILLIS);
+    }
+
+    // Find button clicked.
+    public void onFindByValue(View view) {
+        final String value = valueView.getText().toString().trim();
+        if (value.isEmpty()) {
+            messageView.setText("Enter the value (or the start of the value) to find.");
+        } else {
+            ScanHistory.getInstance(this).findByValuePrefix(value, MAX_ENTRIES, displayCallback);
+        }
+    }
+
+    // Last hour button clicked.
+    public void onFindLastHour(View view) {
+        findRecent(HOUR_MILLIS);
+    }
+
+    // Last 24 hours button clicked.
+    public void onFindLastDay(View view) {
+        findRecent(24*HOUR_MILLIS);
+    }
+
+    private void findRecent(long periodMillis) {
+        final long now = System.currentTimeMillis();
+        ScanHistory.getInstance(this).findByTimeRange(now - periodMillis, now + 1, MAX_ENTRIES, displayCallback);
+    }
+
+    private void displayEntries(List<ScanHistory.Entry> entries) {
+        final java.text.DateFormat timeFormat = DateFormat.getTimeFormat(this);
+        final java.text.DateFormat dateFormat = DateFormat.getDateFormat(this);
+
+        final List<String> rows = new ArrayList<>(entries.size());
+        for (ScanHistory.Entry entry : entries) {
+            final StringBuilder row = new StringBuilder();
+            row.append(dateFormat.format(entry.getTimestampMillis())).append(' ').append(timeFormat.format(entry.getTimestampMillis()));
+            if (entry.getCategory() != null) {
+                row.append("  ").append(entry.getCategory());
+            }
+            if (entry.getDurationMillis() >= 0) {
+                row.append("  ").append(entry.getDurationMillis()).append(" ms");
+            }
+            row.append('\n').append(entry.getValue());
+            rows.add(row.toString());
+        }
+
+        messageView.setText(entries.size() == MAX_ENTRIES ? "Most recent " + MAX_ENTRIES + " scans" : entries.size() + " scans");
+        entriesAdapter.clear();
+        entriesAdapter.addAll(rows);
+    }
+}
@@ -0,0 +1,222 @@
+package uk.co.akm.test.barcodereaderdemo.base;
+
+import android.util.Log;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import uk.co.akm.test.barcodereaderdemo.BuildConfig;
+
+/**
+ * Lightweight metrics of the scanning hot path: the latency of each processing stage is recorded in
+ * a lock-free histogram and the outcome of each scan is counted per result category (e.g. barcode
+ * format). A summary of all metrics can be retrieved (or logged) on demand.
+ *
+ * Stages are timed with the {@link #start()}/{@link #stop(Stage, long)} pair. When the metrics are
+ * disabled (the default in release builds), {@link #start()} does not even read the clock, so the
+ * only overhead left is a volatile read per call.
+ *
+ * All methods are thread-safe.
+ */
+public final class ScanMetrics {
+    private static final String TAG = ScanMetrics.class.getSimpleName();
+
+    private static final long NOT_TIMED = Long.MIN_VALUE;
+    private static final String UNKNOWN_CATEGORY = "(unknown)";
+
+    private static final ScanMetrics instance = new ScanMetrics(BuildConfig.DEBUG);
+
+    /**
+     * The timed stages of the scanning pipeline.
+     */
+    public enum Stage {
+        FILE_READ, BOUNDS_MEASURE, BITMAP_DECODE, ROTATION, FRAME_BUILD, DETECT, FORMAT, UI_POST
+    }
+
+    /**
+     * Returns the process-wide metrics shared by all scanning code.
+     */
+    public static ScanMetrics getInstance() {
+        return instance;
+    }
+
+    private volatile boolean enabled;
+
+    private final LatencyHistogram[] histograms;
+    private final ConcurrentMap<String, AtomicLongArray> outcomes = new ConcurrentHashMap<>();
+
+    private ScanMetrics(boolean enabled) {
+        this.enabled = enabled;
+
+        final Stage[] stages = Stage.values();
+        histograms = new LatencyHistogram[stages.length];
+        for (int i=0 ; i<stages.length ; i++) {
+            histograms[i] = new LatencyHistogram();
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * Returns the start time of a stage, which must be passed to {@link #stop(Stage, long)} at the
+     * end of the stage. If the metrics are disabled, then the clock is not read.
+     */
+    public long start() {
+        return (enabled ? System.nanoTime() : NOT_TIMED);
+    }
+
+    /**
+     * Records the time elapsed since the input start time (returned by {@link #start()}) as the
+     * latency of the input stage.
+     */
+    public void stop(Stage stage, long startNanos) {
+        if (startNanos != NOT_TIMED) {
+            record(stage, System.nanoTime() - startNanos);
+        }
+    }
+
+    /**
+     * Records the input latency of the input stage.
+     */
+    public void record(Stage stage, long nanos) {
+        if (enabled) {
+            histograms[stage.ordinal()].record(nanos);
+        }
+    }
+
+    /**
+     * Counts the outcome of a scan for the input category (e.g. barcode format). A null category
+     * is counted as unknown, which is usually the case for failures.
+     */
+    public void recordOutcome(String category, boolean success) {
+        if (!enabled) {
+            return;
+        }
+
+        final String key = (category == null ? UNKNOWN_CATEGORY : category);
+        AtomicLongArray counters = outcomes.get(key);
+        if (counters == null) {
+            final AtomicLongArray newCounters = new AtomicLongArray(2);
+            counters = outcomes.putIfAbsent(key, newCounters);
+            if (counters == null) {
+                counters = newCounters;
+            }
+        }
+
+        counters.incrementAndGet(success ? 0 : 1);
+    }
+
+    /**
+     * Clears all recorded metrics.
+     */
+    public void reset() {
+        for (LatencyHistogram histogram : histograms) {
+            histogram.reset();
+        }
+        outcomes.clear();
+    }
+
+    public String getSummary() {
+        final StringBuilder sb = new StringBuilder();
+        sb.append("Stage latencies:");
+        for (Stage stage : Stage.values()) {
+            sb.append('\n').append(stage).append(": ");
+            histograms[stage.ordinal()].appendSummary(sb);
+        }
+
+        sb.append("\n\nScan outcomes:");
+        if (outcomes.isEmpty()) {
+            sb.append("\nnone");
+        }
+        for (Map.Entry<String, AtomicLongArray> entry : new TreeMap<>(outcomes).entrySet()) {
+            sb.append('\n').append(entry.getKey()).append(": ").append(entry.getValue().get(0)).append(" succeeded, ").append(entry.getValue().get(1)).append(" failed");
+        }
+
+        return sb.toString();
+    }
+
+    /**
+     * Logs the summary of all recorded metrics.
+     */
+    public void logSummary() {
+        Log.d(TAG, getSummary());
+    }
+
+    /**
+     * Histogram with power of two microsecond buckets, i.e. bucket i holds the latencies from 2^(i-1)
+     * (inclusive) up to 2^i (exclusive) microseconds. The percentiles reported are the upper bounds of
+     * the buckets they fall in.
+     */
+    private static final class LatencyHistogram {
+        private static final int N_BUCKETS = 32; // The last bucket holds anything above 2^30 us, i.e. about 18 minutes.
+
+        private final AtomicLongArray buckets = new AtomicLongArray(N_BUCKETS);
+        private final AtomicLong count = new AtomicLong();
+        private final AtomicLong totalNanos = new AtomicLong();
+        private final AtomicLong maxNanos = new AtomicLong();
+
+        void record(long nanos) {
+            final long micros = Math.max(0, nanos/1000);
+            buckets.incrementAndGet(Math.min(N_BUCKETS - 1, 64 - Long.numberOfLeadingZeros(micros)));
+            count.incrementAndGet();
+            totalNanos.addAndGet(nanos);
+
+            long max = maxNanos.get();
+            while (nanos > max && !maxNanos.compareAndSet(max, nanos)) {
+                max = maxNanos.get();
+            }
+        }
+
+        void reset() {
+            for (int i=0 ; i<N_BUCKETS ; i++) {
+                buckets.set(i, 0);
+            }
+            count.set(0);
+            totalNanos.set(0);
+            maxNanos.set(0);
+        }
+
+        // Returns the upper bound (in ms) of the bucket holding the input percentile.
+        private double percentileMillis(long n, double percentile) {
+            final long rank = (long) Math.ceil(n*percentile);
+            long cumulative = 0;
+            for (int i=0 ; i<N_BUCKETS ; i++) {
+                cumulative += buckets.get(i);
+                if (cumulative >= rank) {
+                    return (1L << i)/1000.0;
+                }
+            }
+
+            return maxNanos.get()/1000000.0;
+        }
+
+        void appendSummary(StringBuilder sb) {
+            final long n = count.get();
+            if (n == 0) {
+                sb.append("no samples");
+                return;
+            }
+
+            sb.append(n).append(" samples, mean ").append(formatMillis(totalNanos.get()/(double) n/1000000.0))
+                    .append(" ms, p50 <= ").append(formatMillis(percentileMillis(n, 0.5)))
+                    .append(" ms, p90 <= ").append(formatMillis(percentileMillis(n, 0.9)))
+                    .append(" ms, p99 <= ").append(formatMillis(percentileMillis(n, 0.99)))
+                    .append(" ms, max ").append(formatMillis(maxNanos.get()/1000000.0)).append(" ms");
+        }
+
+        private static String formatMillis(double millis) {
+            return String.format(Locale.US, "%.2f", millis);
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package uk.co.akm.test.barcodereaderdemo.base;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Input stream wrapper that accumulates the time spent in its read methods, so that the time spent
+ * reading an image file can be told apart from the time spent decoding it. If timing is disabled,
+ * then the clock is never read.
+ */
+final class TimedInputStream extends FilterInputStream {
+    private final boolean timed;
+    private long readNanos;
+
+    TimedInputStream(InputStream in, boolean timed) {
+        super(in);
+
+        this.timed = timed;
+    }
+
+    @Override
+    public int read() throws IOException {
+        final long start = (timed ? System.nanoTime() : 0);
+        try {
+            return super.read();
+        } finally {
+            addReadTime(start);
+        }
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int count) throws IOException {
+        final long start = (timed ? System.nanoTime() : 0);
+        try {
+            return super.read(buffer, offset, count);
+        } finally {
+            addReadTime(start);
+        }
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        final long start = (timed ? System.nanoTime() : 0);
+        try {
+            return super.skip(n);
+        } finally {
+            addReadTime(start);
+        }
+    }
+
+    private void addReadTime(long start) {
+        if (timed) {
+            readNanos += System.nanoTime() - start;
+        }
+    }
+
+    /**
+     * Returns the total time (in nanoseconds) spent reading this stream so far, or zero if timing is disabled.
+     */
+    long getReadNanos() {
+        return readNanos;
+    }
+}
@@ -1,31 +1,59 @@
 package uk.co.akm.test.barcodereaderdemo.base;
 
+import android.content.ContentResolver;
 import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
-import android.os.AsyncTask;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.net.Uri;
+import android.os.CancellationSignal;
+import android.os.ParcelFileDescriptor;
+import android.os.SystemClock;
 import android.util.Log;
 
 import com.google.android.gms.vision.Detector;
 
-import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+
+import uk.co.akm.test.barcodereaderdemo.core.Sampling;
 
 /**
  * Task that reads an image file and processes its content using some Google Vision API function.
  * The Google Vision API processing is abstracted and implemented by concrete sub-classes. The
  * result of such processing is a string (e.g. barcode reading or OCR).
  *
+ * Tasks run on the dedicated {@link DecodeScheduler} workers and their result is delivered on the
+ * main thread. A task can be cancelled at any time (see {@link #cancel()}): the cancellation is
+ * cooperative, i.e. the work in flight is abandoned at the next checkpoint (between the file reading,
+ * the decoding attempts and the orientations evaluated) and no result is delivered.
+ *
  * Created by Thanos Mavroidis on 29/05/2017.
  */
-public abstract class VisionAsyncTask<D> extends AsyncTask<Object, Void, String> {
+public abstract class VisionAsyncTask<D> {
     private static final String TAG = VisionAsyncTask.class.getSimpleName();
 
+    private static final int PREVIEW_SIZE = 480; // The maximum dimension of the bitmap displayed.
+    private static final Paint PREVIEW_PAINT = new Paint(Paint.FILTER_BITMAP_FLAG);
+
     private int targetBitmapWidth;
     private int targetBitmapHeight;
     private String imageFilePath;
+    private Uri imageUri;
+    private ContentResolver contentResolver;
+    private ImageFileLoader loader;
+    private RegionReader regionReader;
+    private boolean readFailed;
+    private ResultListener resultListener;
 
-    private AbstractVisionActivity<D> parent;
+    private volatile AbstractVisionActivity<D> parent;
+    private final CancellationSignal cancellationSignal = new CancellationSignal();
+
+    private boolean cacheHit;
+    private String cachedResultCategory;
+    private List<String> cachedResultValues;
 
     public VisionAsyncTask(AbstractVisionActivity<D> parent) {
         this.parent = parent;
@@ -42,6 +70,85 @@ public abstract class VisionAsyncTask<D> extends AsyncTask<Object, Void, String>
         this.imageFilePath = imageFilePath;
     }
 
+    /**
+     * @param targetBitmapWidth the required x-scale of the bitmap or zero if the default scale is enough
+     * @param targetBitmapHeight the required y-scale of the bitmap or zero if the default scale is enough
+     * @param imageUri the content URI of the image (e.g. picked by the user)
+     * @param contentResolver the resolver opening the content URI
+     */
+    final void setImageParameters(int targetBitmapWidth, int targetBitmapHeight, Uri imageUri, ContentResolver contentResolver) {
+        this.targetBitmapWidth = targetBitmapWidth;
+        this.targetBitmapHeight = targetBitmapHeight;
+        this.imageUri = imageUri;
+        this.contentResolver = contentResolver;
+    }
+
+    /**
+     * Runs this task in batch mode: the bitmaps read are not displayed and the result is passed to
+     * the input listener instead of the parent activity.
+     */
+    final void setResultListener(ResultListener resultListener) {
+        this.resultListener = resultListener;
+    }
+
+    /**
+     * Returns true if this task runs in batch mode, i.e. nobody is waiting for its result.
+     */
+    final boolean isBatchTask() {
+        return resultListener != null;
+    }
+
+    /**
+     * Schedules this task for execution on the decoding workers.
+     */
+    final void execute() {
+        DecodeScheduler.getInstance().schedule(this);
+    }
+
+    /**
+     * Decodes the image in the background and posts the result to the main thread, unless the task
+     * has been cancelled in the meantime.
+     */
+    final void runInBackground() {
+        if (isCancelled()) {
+            return; // Cancelled while still queued.
+        }
+
+        final long startMillis = SystemClock.elapsedRealtime();
+        final String text;
+        try {
+            text = readAndDecode();
+        } finally {
+            closeLoader();
+        }
+
+        if (!isCancelled()) {
+            ScanMetrics.getInstance().recordOutcome(resultCategory(), text != null);
+            if (text != null) {
+                recordInHistory(text, SystemClock.elapsedRealtime() - startMillis);
+            }
+
+            if (resultListener == null) {
+                DecodeScheduler.getInstance().postToMainThread(new Runnable() {
+                    @Override
+                    public void run() {
+                        deliverResult(text);
+                    }
+                });
+            } else {
+                resultListener.onResult(this, text);
+            }
+        }
+    }
+
+    private void recordInHistory(String text, long durationMillis) {
+        final AbstractVisionActivity<D> parent = this.parent;
+        if (parent != null) {
+            final String source = (imageUri == null ? (resultListener == null ? ScanHistory.SOURCE_PHOTO : imageFilePath) : imageUri.toString());
+            ScanHistory.getInstance(parent).record(source, resultCategory(), resultValues(text), text, durationMillis);
+        }
+    }
+
     /**
      * Returns the decoded image as a string by performing the following sequence:
      *
@@ -52,66 +159,221 @@ public abstract class VisionAsyncTask<D> extends AsyncTask<Object, Void, String>
      *     <li>Decode the bitmap into a string using some Google Vision API functionality</li>
      * <ol/>
      *
-     * @param params ignored
+     * If the parent activity provides an {@link AdaptiveScaleSelector}, then the sequence above is
+     * repeated at increasing scale levels, until the bitmap is decoded successfully. The stored image
+     * file itself is opened only once, whatever the number of levels.
+     *
+     * If the parent activity provides a {@link ResultCache}, then the cache is looked up once, before
+     * any bitmap is decoded, and a successful result is cached at the end (see {@link #getCacheKey}).
      *
-     * @return the decoded image as a string
+     * @return the decoded image as a string or null if it could not be decoded (or the task was cancelled)
      */
-    @Override
-    protected final String doInBackground(Object... params) {
-        final Bitmap bitmap = readImageFile(targetBitmapWidth, targetBitmapHeight, imageFilePath);
+    private String readAndDecode() {
+        final AbstractVisionActivity<D> parent = this.parent;
+        final ResultCache resultCache = (parent == null ? null : parent.getResultCache());
+        final ResultCache.Key key = (resultCache == null ? null : getCacheKey());
+        if (key != null) {
+            final ResultCache.Result cached = resultCache.get(key);
+            if (cached != null) {
+                Log.d(TAG, "Image file decoded before: returning the cached result.");
+                cacheHit = true;
+                cachedResultCategory = cached.getCategory();
+                cachedResultValues = cached.getValues();
+                return cached.getText();
+            }
+        }
+
+        final AdaptiveScaleSelector scaleSelector = (parent == null ? null : parent.getScaleSelector());
+        final String text = (scaleSelector == null ? readAndDecode(targetBitmapWidth, targetBitmapHeight) : readAndDecodeAdaptively(scaleSelector));
+        if (key != null && text != null && !isCancelled()) {
+            resultCache.put(key, text, getResultCategory(), getResultValues());
+        }
+
+        return text;
+    }
+
+    /**
+     * Returns the cache key of the stored image file or null if the results of this task should not
+     * be cached. The key is a digest of the file content, so the cache only serves files that are
+     * scanned again as they are, i.e. images picked again or batch runs repeated. Camera captures
+     * are skipped: every capture is a new file (deleted after the scan), so it would never be found
+     * in the cache and hashing it would only slow the scan down.
+     */
+    private ResultCache.Key getCacheKey() {
+        if (imageUri == null && !isBatchTask()) {
+            return null; // Camera capture.
+        }
+
+        final ImageFileLoader loader = getLoader();
+        final byte[] contentDigest = (loader == null ? null : loader.getContentDigest());
+
+        return (contentDigest == null ? null : ResultCache.buildKey(contentDigest, getCacheVariant()));
+    }
+
+    private String readAndDecodeAdaptively(AdaptiveScaleSelector scaleSelector) {
+        int previousSampleSize = 0;
+        for (int level = scaleSelector.getStartLevel() ; level < scaleSelector.getLevelCount() && !isCancelled() ; level++) {
+            final int targetSize = scaleSelector.getTargetSize(level);
+            final int sampleSize = computeSampleSize(targetSize, targetSize);
+            if (sampleSize == previousSampleSize) {
+                continue; // This level would decode exactly the same bitmap as the previous one.
+            }
+            previousSampleSize = sampleSize;
+
+            final String text = readAndDecode(targetSize, targetSize);
+            if (text != null) {
+                scaleSelector.onSuccess(level, resultCategory());
+                return text;
+            }
+        }
+
+        return null;
+    }
+
+    private String readAndDecode(int targetBitmapWidth, int targetBitmapHeight) {
+        final ImageFileLoader loader = getLoader();
+        if (loader == null) {
+            return null;
+        }
+
+        final int overviewSize = getRegionDecodingOverviewSize(loader.getWidth(), loader.getHeight());
+        if (overviewSize > 0) {
+            regionReader = new LoaderRegionReader(loader);
+            return decode(loader.decode(Sampling.computePowerOfTwoSampleSize(loader.getWidth(), loader.getHeight(), overviewSize, overviewSize), getBitmapConfig()));
+        }
+
+        final int sampleSize = computeSampleSize(targetBitmapWidth, targetBitmapHeight); // A sample size of 1 means no scale, i.e. just read the image file.
+        final Rect region = getDecodeRegion(loader.getWidth(), loader.getHeight());
+        if (region != null) {
+            final String text = decode(loader.decodeRegion(region, sampleSize, getBitmapConfig()));
+            if (text != null || isCancelled()) {
+                return text;
+            }
+
+            Log.d(TAG, "Nothing decoded in the image region. Reading the whole image.");
+        }
+
+        return decode(loader.decode(sampleSize, getBitmapConfig()));
+    }
+
+    private String decode(Bitmap bitmap) {
         if (bitmap == null) {
             Log.d(TAG, "Could not read the stored image file.");
+            readFailed = true;
             return null;
         }
 
-        if (parent == null) {
-            Log.d(TAG, "No parent activity available to display the image read.");
-            return null;
-        } else {
-            parent.setImageView(bitmap);
+        // The decoded bitmap is owned by this task only: the UI displays a small copy of it (if at
+        // all), so the bitmap can be reused for the next decoding as soon as it has been processed.
+        // The decoding implementations wait for any worker threads they use before returning (see
+        // decodeBitmapAsString(Detector, Bitmap)), so no other thread reads the bitmap past this point.
+        try {
+            final AbstractVisionActivity<D> parent = this.parent;
+            if (parent == null) {
+                Log.d(TAG, "No parent activity available to process the image read.");
+                return null;
+            }
+
+            if (resultListener == null) {
+                parent.setImageView(buildPreview(bitmap)); // Not displayed in batch mode.
+            }
 
-            return decodeBitmapAsString(bitmap);
+            return decodeBitmapWithDetector(parent, bitmap);
+        } finally {
+            BitmapPool.getInstance().put(bitmap);
         }
     }
 
-    private Bitmap readImageFile(int targetBitmapWidth, int targetBitmapHeight, String imageFilePath) {
-        if (targetBitmapWidth <= 0 || targetBitmapHeight <= 0) {
-            return BitmapFactory.decodeFile(imageFilePath); // No scale. Just read the image file.
-        } else {
+    /**
+     * Returns a pooled copy of the input bitmap, scaled down so that it fits the preview size.
+     */
+    private static Bitmap buildPreview(Bitmap bitmap) {
+        final int width = bitmap.getWidth();
+        final int height = bitmap.getHeight();
+        final float scale = Math.min(1f, ((float) PREVIEW_SIZE)/Math.max(width, height));
+        final int previewWidth = Math.max(1, Math.round(width*scale));
+        final int previewHeight = Math.max(1, Math.round(height*scale));
+
+        final Bitmap preview = BitmapPool.getInstance().get(previewWidth, previewHeight, bitmap.getConfig());
+        new Canvas(preview).drawBitmap(bitmap, null, new Rect(0, 0, previewWidth, previewHeight), PREVIEW_PAINT);
+
+        return preview;
+    }
+
+    // The image file is opened (and mapped) only once, however many times it is decoded.
+    private ImageFileLoader getLoader() {
+        if (loader == null) {
             try {
-                return decodeFileToScale(targetBitmapWidth, targetBitmapHeight, imageFilePath); // Read the image file to the given scale.
-            } catch (FileNotFoundException fnfe) {
-                Log.d(TAG, "Could not convert stored image to a bitmap: image file not found.");
-                return null;
+                loader = (imageUri == null ? new ImageFileLoader(imageFilePath, BitmapPool.getInstance()) : new ImageFileLoader(openImageUri(), BitmapPool.getInstance()));
+            } catch (IOException | SecurityException e) {
+                Log.d(TAG, "Could not read the stored image file.");
+                readFailed = true;
             }
         }
+
+        return loader;
     }
 
-    private Bitmap decodeFileToScale(int targetBitmapWidth, int targetBitmapHeight, String imageFilePath) throws FileNotFoundException {
-        final File imageFile = new File(imageFilePath);
+    private ParcelFileDescriptor openImageUri() throws FileNotFoundException {
+        final ParcelFileDescriptor imageFile = contentResolver.openFileDescriptor(imageUri, "r");
+        if (imageFile == null) {
+            throw new FileNotFoundException("No content for " + imageUri);
+        }
+
+        return imageFile;
+    }
 
-        final BitmapFactory.Options bmOptions = measurePhotoDimensions(imageFile);
-        final int photoWidth = bmOptions.outWidth;
-        final int photoHeight = bmOptions.outHeight;
+    private void closeLoader() {
+        regionReader = null;
+        if (loader != null) {
+            loader.close();
+            loader = null;
+        }
+    }
 
-        final int scaleFactor = Math.min(photoWidth / targetBitmapWidth, photoHeight / targetBitmapHeight);
-        bmOptions.inJustDecodeBounds = false;
-        bmOptions.inSampleSize = scaleFactor;
+    private Bitmap.Config getBitmapConfig() {
+        final AbstractVisionActivity<D> parent = this.parent;
 
-        return BitmapFactory.decodeStream(new FileInputStream(imageFile), null, bmOptions);
+        return (parent == null ? Bitmap.Config.ARGB_8888 : parent.getPreferredBitmapConfig());
     }
 
-    private BitmapFactory.Options measurePhotoDimensions(File photoFile) throws FileNotFoundException {
-        final BitmapFactory.Options bmOptions = new BitmapFactory.Options();
-        bmOptions.inJustDecodeBounds = true;
-        BitmapFactory.decodeStream(new FileInputStream(photoFile), null, bmOptions);
+    /**
+     * Returns the power of two sample size that scales the stored image down to (but not below) the
+     * target dimensions. The sample size is 1 (i.e. no scale) if either target dimension is not
+     * positive or if the stored image cannot be read.
+     */
+    private int computeSampleSize(int targetBitmapWidth, int targetBitmapHeight) {
+        if (targetBitmapWidth <= 0 || targetBitmapHeight <= 0) {
+            return 1;
+        }
+
+        final ImageFileLoader loader = getLoader();
+        if (loader == null) {
+            return 1;
+        }
 
-        return bmOptions;
+        return Sampling.computePowerOfTwoSampleSize(loader.getWidth(), loader.getHeight(), targetBitmapWidth, targetBitmapHeight);
     }
 
-    public final String decodeBitmapAsString(Bitmap bitmap) {
+    /**
+     * Returns the absolute path of the stored image file being processed or null if the image is
+     * read from a content URI. The file is available until the processing result has been delivered.
+     */
+    protected final String getImageFilePath() {
+        return imageFilePath;
+    }
+
+    /**
+     * Decodes the input bitmap with the detector of the parent activity. A detector is not used by
+     * more than one task at a time, so a task still running (e.g. cancelled, but not at a checkpoint
+     * yet) holds up the next one until it completes or reaches a checkpoint.
+     */
+    private String decodeBitmapWithDetector(AbstractVisionActivity<D> parent, Bitmap bitmap) {
         if (parent.hasDetector()) {
-            return decodeBitmapAsString(parent.getDetector(), bitmap);
+            final Detector<D> detector = parent.getDetector();
+            synchronized (detector) {
+                return (isCancelled() ? null : decodeBitmapAsString(detector, bitmap));
+            }
         } else {
             Log.d(TAG, "Parent activity has no available detector to decode the image read.");
             return null;
@@ -123,19 +385,189 @@ public abstract class VisionAsyncTask<D> extends AsyncTask<Object, Void, String>
      * bitmap as a string and return the latter. Examples of such Google Vision API functions are
      * barcode or QR code reading or OCR operations.
      *
+     * Long running implementations should check {@link #isCancelled()} between their stages and
+     * return early (the result is ignored) when the task has been cancelled.
+     *
+     * The input bitmap is put back in the {@link BitmapPool} (and so may be overwritten) as soon as
+     * this method returns. Implementations that hand the bitmap to other threads must therefore wait
+     * for those threads to stop reading it before returning, even when returning early.
+     *
      * @param detector the detector used to process the bitmap
      * @param bitmap the bitmap to process
      * @return the string result of the image decoding
      */
     protected abstract String decodeBitmapAsString(Detector<D> detector, Bitmap bitmap);
 
-    public final void onParentPause() {
+    /**
+     * Override this method to return the category of the last successful decoding (e.g. the barcode
+     * format). The category is used to remember the scale level that works for each category, when
+     * the parent activity provides an {@link AdaptiveScaleSelector}.
+     *
+     * @return the category of the last successful decoding or null if not known
+     */
+    protected String getResultCategory() {
+        return null;
+    }
+
+    /**
+     * Returns true if the image could not be read at all (as opposed to read, but not decoded).
+     */
+    final boolean hasReadFailed() {
+        return readFailed;
+    }
+
+    final String resultCategory() {
+        return (cacheHit ? cachedResultCategory : getResultCategory());
+    }
+
+    /**
+     * Override this method to return the individual values of the last successful decoding (e.g.
+     * the raw values of the barcodes decoded), which are recorded in the {@link ScanHistory}. If this
+     * method is not overriden, then the decoded string is recorded as the only value.
+     *
+     * @return the values of the last successful decoding or null if the decoded string is the only value
+     */
+    protected List<String> getResultValues() {
+        return null;
+    }
+
+    private List<String> resultValues(String text) {
+        final List<String> values = (cacheHit ? cachedResultValues : getResultValues());
+
+        return (values == null || values.isEmpty() ? Collections.singletonList(text) : values);
+    }
+
+    /**
+     * Override this method to tell apart the cached results of the same content decoded in different
+     * ways (e.g. with different options), when the parent activity provides a {@link ResultCache}.
+     *
+     * @return the decoding variant of this task or null if there is only one
+     */
+    protected String getCacheVariant() {
+        return null;
+    }
+
+    /**
+     * Override this method to decode only a region of the stored image first, e.g. a fixed region of
+     * interest. Only the region is read from the image file, so it is decoded much faster than the
+     * whole image, which is only read if nothing could be decoded in the region.
+     *
+     * @param imageWidth the width of the stored image
+     * @param imageHeight the height of the stored image
+     * @return the region to decode first (in stored image pixels) or null if the whole image should be decoded
+     */
+    protected Rect getDecodeRegion(int imageWidth, int imageHeight) {
+        return null;
+    }
+
+    /**
+     * Override this method to decode large stored images region by region at full resolution (e.g.
+     * in tiles), instead of as a whole bitmap. The bitmap passed to
+     * {@link #decodeBitmapAsString(Detector, Bitmap)} is then an overview of the whole image, scaled
+     * down by a power of two towards the returned size, and the full resolution regions are read
+     * through {@link #getRegionReader()}.
+     *
+     * @param imageWidth the width of the stored image
+     * @param imageHeight the height of the stored image
+     * @return the overview size or 0 if the image should be decoded as a whole
+     */
+    protected int getRegionDecodingOverviewSize(int imageWidth, int imageHeight) {
+        return 0;
+    }
+
+    /**
+     * Returns the reader of the full resolution regions of the stored image, while the overview
+     * bitmap is being decoded, or null if the image is decoded as a whole (see
+     * {@link #getRegionDecodingOverviewSize(int, int)}).
+     */
+    protected final RegionReader getRegionReader() {
+        return regionReader;
+    }
+
+    /**
+     * Reads regions of a stored image at full resolution.
+     */
+    public interface RegionReader {
+
+        int getImageWidth();
+
+        int getImageHeight();
+
+        /**
+         * Reads the input region of the stored image into a pooled bitmap, which the caller must
+         * return to the {@link BitmapPool} once done with it. This method can be called from any
+         * thread, but the reads themselves are serialized.
+         *
+         * @param region the region to read, in stored image pixels
+         * @return the region bitmap or null if the region could not be read
+         */
+        Bitmap read(Rect region);
+    }
+
+    private final class LoaderRegionReader implements RegionReader {
+        private final ImageFileLoader loader;
+
+        LoaderRegionReader(ImageFileLoader loader) {
+            this.loader = loader;
+        }
+
+        @Override
+        public int getImageWidth() {
+            return loader.getWidth();
+        }
+
+        @Override
+        public int getImageHeight() {
+            return loader.getHeight();
+        }
+
+        @Override
+        public Bitmap read(Rect region) {
+            return loader.decodeRegion(region, 1, getBitmapConfig());
+        }
+    }
+
+    /**
+     * Receives the result of a task run in batch mode (see {@link #setResultListener(ResultListener)}).
+     */
+    interface ResultListener {
+
+        /**
+         * Called on the worker thread, once the task has completed without being cancelled.
+         *
+         * @param task the task completed
+         * @param text the decoded image as a string or null if it could not be decoded
+         */
+        void onResult(VisionAsyncTask<?> task, String text);
+    }
+
+    /**
+     * Returns true if this task has been cancelled.
+     */
+    protected final boolean isCancelled() {
+        return cancellationSignal.isCanceled();
+    }
+
+    /**
+     * Returns the cancellation signal of this task, so that it can be passed on to any work that
+     * runs on behalf of this task (e.g. on other threads).
+     */
+    protected final CancellationSignal getCancellationSignal() {
+        return cancellationSignal;
+    }
+
+    /**
+     * Cancels this task and detaches it from its parent activity. The work in flight is abandoned at
+     * the next checkpoint and no result is delivered.
+     */
+    public final void cancel() {
         parent = null;
+        cancellationSignal.cancel();
     }
 
-    @Override
-    protected final void onPostExecute(String text) {
-        if (text != null && parent != null) {
+    private void deliverResult(String text) {
+        final AbstractVisionActivity<D> parent = this.parent;
+        if (text != null && parent != null && !isCancelled()) {
             try {
                 parent.setTextView(text);
             } finally {
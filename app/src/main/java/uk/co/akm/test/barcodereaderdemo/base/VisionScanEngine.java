@@ -0,0 +1,114 @@
+package uk.co.akm.test.barcodereaderdemo.base;
+
+import android.graphics.Bitmap;
+import android.graphics.ImageFormat;
+import android.util.SparseArray;
+
+import com.google.android.gms.vision.Detector;
+import com.google.android.gms.vision.Frame;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import uk.co.akm.test.barcodereaderdemo.core.ScanEngine;
+import uk.co.akm.test.barcodereaderdemo.core.ScanImage;
+import uk.co.akm.test.barcodereaderdemo.core.ScanResult;
+
+/**
+ * Adapter that plugs a Google Vision API detector into the platform-independent {@link ScanEngine}
+ * interface. Luminance images are passed to the detector as NV21 frames, without any bitmap: images
+ * backed by NV21 frame data (e.g. built by {@link LuminanceFrameBuilder}) are passed as they are,
+ * while the other luminance images are copied into an NV21 buffer with a neutral chroma plane. ARGB
+ * images are passed as bitmaps.
+ *
+ * Callers that need more than the scan results (e.g. the barcode value format) can get the detected
+ * objects themselves with {@link #detect(ScanImage)}.
+ *
+ * The NV21 buffer is reused from image to image, so instances are not thread-safe. The detector is
+ * not owned by the adapter, so it is not released by it.
+ *
+ * @param <D> the object detected by the Google Vision API detector
+ */
+public final class VisionScanEngine<D> implements ScanEngine {
+    private static final byte NEUTRAL_CHROMA = (byte) 128;
+
+    /**
+     * Converts the objects detected by the Google Vision API to scan results.
+     */
+    public interface ResultMapper<D> {
+
+        /**
+         * Returns the scan result corresponding to the input detected object or null if the object
+         * should not be reported.
+         */
+        ScanResult toScanResult(D detected);
+    }
+
+    private final Detector<D> detector;
+    private final ResultMapper<D> mapper;
+
+    private ByteBuffer frameData;
+
+    public VisionScanEngine(Detector<D> detector, ResultMapper<D> mapper) {
+        this.detector = detector;
+        this.mapper = mapper;
+    }
+
+    @Override
+    public List<ScanResult> scan(ScanImage image) {
+        final SparseArray<D> detected = detect(image);
+        if (detected == null || detected.size() == 0) {
+            return new ArrayList<>(0);
+        }
+
+        final List<ScanResult> results = new ArrayList<>(detected.size());
+        for (int i=0 ; i<detected.size() ; i++) {
+            final ScanResult result = mapper.toScanResult(detected.valueAt(i));
+            if (result != null) {
+                results.add(result);
+            }
+        }
+
+        return results;
+    }
+
+    /**
+     * Runs the detector on the input image and returns the objects detected (or null if the detector
+     * returned nothing).
+     */
+    public SparseArray<D> detect(ScanImage image) {
+        return detector.detect(buildFrame(image));
+    }
+
+    private Frame buildFrame(ScanImage image) {
+        final int width = image.getWidth();
+        final int height = image.getHeight();
+        if (image.getNv21Data() != null) {
+            return new Frame.Builder().setImageData(image.getNv21Data(), width, height, ImageFormat.NV21).build(); // No copy.
+        } else if (image.isLuminance()) {
+            return new Frame.Builder().setImageData(toNv21(image.getLuminanceData(), width, height), width, height, ImageFormat.NV21).build();
+        } else {
+            final Bitmap bitmap = Bitmap.createBitmap(image.getArgbData(), width, height, Bitmap.Config.ARGB_8888);
+
+            return new Frame.Builder().setBitmap(bitmap).build();
+        }
+    }
+
+    private ByteBuffer toNv21(byte[] luminance, int width, int height) {
+        final int lumaSize = width*height;
+        final int frameSize = ScanImage.nv21FrameSize(width, height);
+        if (frameData == null || frameData.capacity() < frameSize) {
+            frameData = ByteBuffer.allocate(frameSize);
+        }
+
+        frameData.clear();
+        frameData.put(luminance, 0, lumaSize);
+        while (frameData.position() < frameSize) {
+            frameData.put(NEUTRAL_CHROMA);
+        }
+        frameData.flip();
+
+        return frameData;
+    }
+}
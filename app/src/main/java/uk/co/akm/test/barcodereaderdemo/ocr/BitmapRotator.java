@@ -0,0 +1,62 @@
+package uk.co.akm.test.barcodereaderdemo.ocr;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Matrix;
+
+import uk.co.akm.test.barcodereaderdemo.base.BitmapPool;
+import uk.co.akm.test.barcodereaderdemo.base.ScanMetrics;
+
+/**
+ * Rotates bitmaps clockwise by multiples of 90 degrees into bitmaps taken from a {@link BitmapPool}.
+ * Instances are not thread-safe, so each thread must use its own rotator.
+ */
+final class BitmapRotator {
+    static final int NUMBER_OF_POSITIONS = 4;
+
+    private static final int ROTATION_ANGLE_DEG = 90;
+
+    private final BitmapPool bitmapPool;
+    private final Canvas canvas = new Canvas();
+    private final Matrix rotationMatrix = new Matrix();
+
+    BitmapRotator(BitmapPool bitmapPool) {
+        this.bitmapPool = bitmapPool;
+    }
+
+    /**
+     * Returns a pooled bitmap holding the input bitmap rotated clockwise by the specified number of
+     * quarter turns. The input bitmap is left untouched. The caller should return the rotated bitmap
+     * to the pool, once it is no longer needed.
+     *
+     * @param source the bitmap to rotate
+     * @param quarterTurns the number of clockwise quarter turns (zero returns a copy of the source)
+     * @return the rotated bitmap
+     */
+    Bitmap rotate(Bitmap source, int quarterTurns) {
+        final ScanMetrics metrics = ScanMetrics.getInstance();
+        final long start = metrics.start();
+
+        final int turns = ((quarterTurns%NUMBER_OF_POSITIONS) + NUMBER_OF_POSITIONS)%NUMBER_OF_POSITIONS;
+        final int width = source.getWidth();
+        final int height = source.getHeight();
+        final boolean sideways = (turns%2 == 1);
+        final Bitmap rotated = bitmapPool.get(sideways ? height : width, sideways ? width : height, source.getConfig());
+
+        // Rotate around the origin and then shift the result back into the visible area.
+        rotationMatrix.setRotate(turns*ROTATION_ANGLE_DEG);
+        switch (turns) {
+            case 1: rotationMatrix.postTranslate(height, 0); break;
+            case 2: rotationMatrix.postTranslate(width, height); break;
+            case 3: rotationMatrix.postTranslate(0, width); break;
+        }
+
+        canvas.setBitmap(rotated);
+        canvas.drawBitmap(source, rotationMatrix, null);
+        canvas.setBitmap(null);
+
+        metrics.stop(ScanMetrics.Stage.ROTATION, start);
+
+        return rotated;
+    }
+}
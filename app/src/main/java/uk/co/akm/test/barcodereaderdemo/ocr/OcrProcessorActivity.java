@@ -2,26 +2,151 @@ package uk.co.akm.test.barcodereaderdemo.ocr;
 
 import android.content.Context;
 import android.graphics.Bitmap;
+import android.os.Bundle;
 import android.util.Log;
-import android.util.SparseArray;
 
 import com.google.android.gms.vision.Detector;
-import com.google.android.gms.vision.Frame;
-import com.google.android.gms.vision.text.Text;
 import com.google.android.gms.vision.text.TextBlock;
 import com.google.android.gms.vision.text.TextRecognizer;
 
-import java.util.Collection;
-import java.util.Iterator;
+import java.util.ArrayList;
+import java.util.List;
 
 import uk.co.akm.test.barcodereaderdemo.R;
 import uk.co.akm.test.barcodereaderdemo.base.AbstractVisionActivity;
+import uk.co.akm.test.barcodereaderdemo.base.BitmapPool;
+import uk.co.akm.test.barcodereaderdemo.base.DetectorRegistry;
 import uk.co.akm.test.barcodereaderdemo.base.VisionAsyncTask;
 
 /**
+ * Simple OCR example. Since the orientation of the text in the photo is not known, a cheap
+ * orientation estimate is made first and the text is recognized in the most likely orientation. If
+ * the estimate or the text recognized is not convincing, then the text is also recognized in the
+ * remaining orientations of the photo and the highest scoring text is displayed. The orientations are
+ * scored from the recognized line metadata (see {@link RecognizedText}) and only the winning one is
+ * converted to text, either plain or structured (see {@link OcrText} and {@link #EXTRA_STRUCTURED_OUTPUT}).
+ * The remaining orientations are evaluated concurrently, with a parallelism level that can be
+ * specified with the {@link #EXTRA_PARALLELISM} intent extra (a parallelism level of 1 evaluates the
+ * orientations one after the other).
+ *
+ * Large photos are recognized in tiles (see {@link TiledTextRecognizer}): the orientation is found
+ * on a scaled-down overview of the photo and the text is then recognized in full resolution tiles,
+ * read one region at a time, so that the memory used does not grow with the photo size. The tiled
+ * mode can be disabled with the {@link #EXTRA_TILED} intent extra.
+ *
  * Created by Thanos Mavroidis on 30/05/2017.
  */
 public final class OcrProcessorActivity extends AbstractVisionActivity<TextBlock> {
+    private static final String TAG = OcrProcessorActivity.class.getSimpleName();
+
+    /**
+     * Optional int intent extra with the number of orientations evaluated concurrently (1 to 4).
+     */
+    public static final String EXTRA_PARALLELISM = "uk.co.akm.test.barcodereaderdemo.ocr.PARALLELISM";
+
+    /**
+     * Optional boolean intent extra: if true, the result is written as JSON blocks of lines of words
+     * with their bounding boxes, instead of plain text.
+     */
+    public static final String EXTRA_STRUCTURED_OUTPUT = "uk.co.akm.test.barcodereaderdemo.ocr.STRUCTURED_OUTPUT";
+
+    /**
+     * Optional boolean intent extra: if false, large photos are not recognized in tiles (default true).
+     */
+    public static final String EXTRA_TILED = "uk.co.akm.test.barcodereaderdemo.ocr.TILED";
+
+    private static final int OVERVIEW_SIZE = 1024; // The overview of a tiled photo is used to find the text orientation.
+
+    /**
+     * Builds the text recognizer shared by all instances of this activity.
+     */
+    public static final DetectorRegistry.Factory<TextBlock> DETECTOR_FACTORY = new TextRecognizerFactory();
+
+    // One factory (i.e. one registry entry) per concurrent worker, so that each worker keeps a recognizer
+    // of its own. The first worker uses the detector of the activity.
+    private static final List<DetectorRegistry.Factory<TextBlock>> WORKER_DETECTOR_FACTORIES = buildWorkerDetectorFactories();
+
+    private static List<DetectorRegistry.Factory<TextBlock>> buildWorkerDetectorFactories() {
+        final List<DetectorRegistry.Factory<TextBlock>> factories = new ArrayList<>(BitmapRotator.NUMBER_OF_POSITIONS);
+        factories.add(DETECTOR_FACTORY);
+        for (int i=1 ; i<BitmapRotator.NUMBER_OF_POSITIONS ; i++) {
+            factories.add(new TextRecognizerFactory());
+        }
+
+        return factories;
+    }
+
+    private final List<DetectorRegistry.Factory<TextBlock>> acquiredWorkerFactories = new ArrayList<>();
+    private ParallelRotationRecognizer parallelRecognizer;
+    private TiledTextRecognizer tiledRecognizer;
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+
+        if (hasDetector()) {
+            final List<Detector<TextBlock>> detectors = buildDetectors(getParallelism());
+            setUpParallelRecognizer(detectors);
+            if (getIntent().getBooleanExtra(EXTRA_TILED, true)) {
+                tiledRecognizer = new TiledTextRecognizer(detectors, BitmapPool.getInstance()); // Never used at the same time as the parallel recognizer.
+            }
+        }
+    }
+
+    private int getParallelism() {
+        final int defaultParallelism = Math.min(BitmapRotator.NUMBER_OF_POSITIONS, Runtime.getRuntime().availableProcessors());
+        final int parallelism = getIntent().getIntExtra(EXTRA_PARALLELISM, defaultParallelism);
+
+        return Math.max(1, Math.min(BitmapRotator.NUMBER_OF_POSITIONS, parallelism));
+    }
+
+    // Text recognizers are not used concurrently, so each worker gets its own recognizer. The recognizers
+    // come from the registry, so they stay loaded across configuration changes and re-entries.
+    private List<Detector<TextBlock>> buildDetectors(int parallelism) {
+        final DetectorRegistry registry = DetectorRegistry.getInstance();
+        final List<Detector<TextBlock>> detectors = new ArrayList<>(parallelism);
+        detectors.add(getDetector());
+        for (int i=1 ; i<parallelism ; i++) {
+            final DetectorRegistry.Factory<TextBlock> factory = WORKER_DETECTOR_FACTORIES.get(i);
+            final Detector<TextBlock> detector = registry.acquire(this, factory);
+            if (detector.isOperational()) {
+                acquiredWorkerFactories.add(factory);
+                detectors.add(detector);
+            } else {
+                registry.release(factory);
+            }
+        }
+
+        return detectors;
+    }
+
+    private void setUpParallelRecognizer(List<Detector<TextBlock>> detectors) {
+        if (detectors.size() > 1) {
+            parallelRecognizer = new ParallelRotationRecognizer(detectors, BitmapPool.getInstance());
+            Log.d(TAG, "Parallel text recognition with " + detectors.size() + " workers.");
+        }
+    }
+
+    @Override
+    public void onDestroy() {
+        if (parallelRecognizer != null) {
+            parallelRecognizer.shutdown();
+            parallelRecognizer = null;
+        }
+
+        if (tiledRecognizer != null) {
+            tiledRecognizer.shutdown();
+            tiledRecognizer = null;
+        }
+
+        final DetectorRegistry registry = DetectorRegistry.getInstance();
+        for (DetectorRegistry.Factory<TextBlock> factory : acquiredWorkerFactories) {
+            registry.release(factory);
+        }
+        acquiredWorkerFactories.clear();
+
+        super.onDestroy();
+    }
 
     @Override
     protected CharSequence getTitleText() {
@@ -44,90 +169,123 @@ public final class OcrProcessorActivity extends AbstractVisionActivity<TextBlock
     }
 
     @Override
-    protected Detector<TextBlock> buildDetector(Context context) {
-        return new TextRecognizer.Builder(context).build();
+    protected DetectorRegistry.Factory<TextBlock> getDetectorFactory() {
+        return DETECTOR_FACTORY;
     }
 
     @Override
-    protected VisionAsyncTask buildVisionTask() {
-        return new OcrProcessingTask(this);
+    protected VisionAsyncTask<TextBlock> buildVisionTask() {
+        return new OcrProcessingTask(this, parallelRecognizer, tiledRecognizer, getIntent().getBooleanExtra(EXTRA_STRUCTURED_OUTPUT, false));
+    }
+
+    // Factories are compared by identity, so each instance identifies a recognizer of its own in the registry.
+    private static final class TextRecognizerFactory implements DetectorRegistry.Factory<TextBlock> {
+
+        @Override
+        public Detector<TextBlock> build(Context context) {
+            return new TextRecognizer.Builder(context).build();
+        }
     }
 
     private static final class OcrProcessingTask extends VisionAsyncTask<TextBlock> {
         private static final String TAG = OcrProcessingTask.class.getSimpleName();
 
-        OcrProcessingTask(AbstractVisionActivity<TextBlock> parent) {
+        private static final int MIN_CONFIDENT_TEXT_LENGTH = 20;
+
+        private final ParallelRotationRecognizer parallelRecognizer;
+        private final TiledTextRecognizer tiledRecognizer;
+        private final boolean structuredOutput;
+
+        OcrProcessingTask(AbstractVisionActivity<TextBlock> parent, ParallelRotationRecognizer parallelRecognizer, TiledTextRecognizer tiledRecognizer, boolean structuredOutput) {
             super(parent);
+
+            this.parallelRecognizer = parallelRecognizer;
+            this.tiledRecognizer = tiledRecognizer;
+            this.structuredOutput = structuredOutput;
         }
 
-        //TODO Add comments.
         @Override
-        protected String decodeBitmapAsString(Detector<TextBlock> detector, Bitmap textImage) {
-            int maxLength = 0;
-            String longestText = null;
-            final Iterator<Bitmap> iterator = new RotationIterator(textImage);
-            while (iterator.hasNext()) {
-                final String text = recognizeTextInBitmap(detector, iterator.next());
-                if (text != null && text.length() > maxLength) {
-                    maxLength = text.length();
-                    longestText = text;
-                }
-            }
-
-            return longestText;
+        protected int getRegionDecodingOverviewSize(int imageWidth, int imageHeight) {
+            return (tiledRecognizer != null && TiledTextRecognizer.isTilingRequired(imageWidth, imageHeight) ? OVERVIEW_SIZE : 0);
         }
 
-        private String recognizeTextInBitmap(Detector<TextBlock> detector, Bitmap textImage) {
-            final SparseArray<TextBlock> textBlocks = recognizeText(detector, textImage);
-            if (textBlocks == null) {
+        /**
+         * Returns the text recognized in the most likely orientation of the input bitmap, if both
+         * the orientation estimate and the text recognized are convincing. Otherwise, returns the
+         * highest scoring text recognized in any of the four orientations. If the photo is recognized
+         * in tiles, then the input bitmap is only an overview used to find the text orientation.
+         */
+        @Override
+        protected String decodeBitmapAsString(Detector<TextBlock> detector, Bitmap textImage) {
+            final OrientationEstimator.Estimate estimate = new OrientationEstimator(BitmapPool.getInstance()).estimate(detector, textImage, getImageFilePath(), getCancellationSignal());
+            if (isCancelled()) {
                 return null;
-            } else {
-                return convertToString(textBlocks);
             }
-        }
-
-        private SparseArray<TextBlock> recognizeText(Detector<TextBlock> detector, Bitmap textImage) {
-            final Frame frame = new Frame.Builder().setBitmap(textImage).build();
-            final SparseArray<TextBlock> textBlocks = detector.detect(frame);
 
-            if (textBlocks == null || textBlocks.size() == 0) {
-                return null;
+            final OcrText ocrText;
+            if (getRegionReader() == null) {
+                final RecognizedText best = recognizeBestText(detector, textImage, estimate);
+                ocrText = (best == null || isCancelled() ? null : OcrText.from(best)); // Only the winning orientation is converted.
             } else {
-                return textBlocks;
+                ocrText = recognizeTiles(detector, textImage, estimate);
             }
-        }
 
-        private String convertToString(SparseArray<TextBlock> textBlocks) {
-            final StringBuilder sb = new StringBuilder();
-            appendTextBlocks(textBlocks, sb);
+            if (ocrText == null || isCancelled()) {
+                return null;
+            }
 
-            return sb.toString();
+            return (structuredOutput ? ocrText.toJson() : ocrText.toPlainText());
         }
 
-        private void appendTextBlocks(SparseArray<TextBlock> textBlocks, StringBuilder sb) {
-            for (int i=0 ; i<textBlocks.size() ; i++) {
-                final TextBlock textBlock = textBlocks.get(textBlocks.keyAt(i));
-                if (textBlock != null) {
-                    appendTextBlock(textBlock, sb);
-                    sb.append('\n');
+        // The overview text is only recognized (and then discarded) if the orientation estimate is not confident.
+        private OcrText recognizeTiles(Detector<TextBlock> detector, Bitmap overview, OrientationEstimator.Estimate estimate) {
+            int quarterTurns = estimate.getQuarterTurns();
+            if (!estimate.isConfident()) {
+                final RecognizedText overviewText = recognizeBestText(detector, overview, estimate);
+                if (isCancelled()) {
+                    return null;
+                }
+
+                if (overviewText != null) {
+                    quarterTurns = overviewText.getQuarterTurns();
                 }
             }
+            Log.d(TAG, "Recognizing the text in tiles, rotated by " + quarterTurns + " quarter turns.");
+
+            return tiledRecognizer.recognizeText(getRegionReader(), quarterTurns, getCancellationSignal());
         }
 
-        private void appendTextBlock(TextBlock textBlock, StringBuilder sb) {
-            final Collection<? extends Text> components = textBlock.getComponents();
-            if (components != null && !components.isEmpty()) {
-                appendComponents(components, sb);
+        private RecognizedText recognizeBestText(Detector<TextBlock> detector, Bitmap textImage, OrientationEstimator.Estimate estimate) {
+            final BitmapPool bitmapPool = BitmapPool.getInstance();
+            final RecognizedText text = TextRecognition.recognizeTextInOrientation(detector, textImage, estimate.getQuarterTurns(), bitmapPool);
+
+            if (isCancelled() || (estimate.isConfident() && RecognizedText.scoreOf(text) >= MIN_CONFIDENT_TEXT_LENGTH)) {
+                return text;
+            }
+
+            Log.d(TAG, "Low orientation confidence: falling back to the remaining orientations.");
+            if (parallelRecognizer == null) {
+                return recognizeTextInRemainingOrientations(detector, textImage, estimate.getRemainingQuarterTurns(), text);
+            } else {
+                // Returns only when none of the workers reads the pooled bitmap any more.
+                return parallelRecognizer.recognizeText(textImage, estimate.getRemainingQuarterTurns(), text, getCancellationSignal());
             }
         }
 
-        private void appendComponents(Collection<? extends Text> components, StringBuilder sb) {
-            for (Text text : components) {
-                if (text != null) {
-                    sb.append(text.getValue());
-                    sb.append(' ');
+        private RecognizedText recognizeTextInRemainingOrientations(Detector<TextBlock> detector, Bitmap textImage, int[] remainingQuarterTurns, RecognizedText textSoFar) {
+            RecognizedText bestText = textSoFar;
+
+            final BitmapPool bitmapPool = BitmapPool.getInstance();
+            for (int quarterTurns : remainingQuarterTurns) {
+                if (isCancelled()) {
+                    break;
                 }
+
+                final RecognizedText text = TextRecognition.recognizeTextInOrientation(detector, textImage, quarterTurns, bitmapPool);
+                bestText = RecognizedText.best(bestText, text);
             }
+
+            return bestText;
         }
     }
 }
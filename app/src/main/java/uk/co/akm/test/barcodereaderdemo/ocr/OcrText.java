@@ -0,0 +1,274 @@
+package uk.co.akm.test.barcodereaderdemo.ocr;
+
+import android.graphics.Rect;
+import android.util.SparseArray;
+
+import com.google.android.gms.vision.text.Text;
+import com.google.android.gms.vision.text.TextBlock;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import uk.co.akm.test.barcodereaderdemo.base.ScanMetrics;
+
+/**
+ * Structured OCR result: blocks of lines of words, each with its bounding box (in the coordinates of
+ * the orientation recognized). It can be written as plain text (one block per line) or as JSON. Both
+ * are written into a per-thread builder that is reused from result to result, so that only the final
+ * string is allocated, however large the document.
+ */
+final class OcrText {
+    private static final int MAX_RETAINED_BUILDER_CAPACITY = 64*1024; // Larger builders are not kept for reuse.
+
+    private static final ThreadLocal<StringBuilder> threadBuilders = new ThreadLocal<StringBuilder>() {
+        @Override
+        protected StringBuilder initialValue() {
+            return new StringBuilder(1024);
+        }
+    };
+
+    private final int quarterTurns;
+    private final List<Block> blocks;
+
+    /**
+     * Converts the input recognized text blocks to structured text.
+     */
+    static OcrText from(RecognizedText recognizedText) {
+        final SparseArray<TextBlock> textBlocks = recognizedText.getTextBlocks();
+        final List<Block> blocks = new ArrayList<>(textBlocks.size());
+        for (int i=0 ; i<textBlocks.size() ; i++) {
+            final TextBlock textBlock = textBlocks.valueAt(i);
+            if (textBlock != null) {
+                blocks.add(new Block(textBlock.getBoundingBox(), toLines(textBlock.getComponents())));
+            }
+        }
+
+        return new OcrText(recognizedText.getQuarterTurns(), blocks);
+    }
+
+    private static List<Line> toLines(List<? extends Text> components) {
+        if (components == null || components.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        final List<Line> lines = new ArrayList<>(components.size());
+        for (Text line : components) {
+            if (line != null) {
+                lines.add(new Line(line.getBoundingBox(), line.getValue(), toWords(line.getComponents())));
+            }
+        }
+
+        return lines;
+    }
+
+    private static List<Word> toWords(List<? extends Text> components) {
+        if (components == null || components.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        final List<Word> words = new ArrayList<>(components.size());
+        for (Text word : components) {
+            if (word != null) {
+                words.add(new Word(word.getBoundingBox(), word.getValue()));
+            }
+        }
+
+        return words;
+    }
+
+    /**
+     * Returns the structured text made of the input blocks.
+     */
+    static OcrText of(int quarterTurns, List<Block> blocks) {
+        return new OcrText(quarterTurns, blocks);
+    }
+
+    private OcrText(int quarterTurns, List<Block> blocks) {
+        this.quarterTurns = quarterTurns;
+        this.blocks = blocks;
+    }
+
+    /**
+     * Returns the clockwise quarter turns of the image orientation the text was recognized in.
+     */
+    int getQuarterTurns() {
+        return quarterTurns;
+    }
+
+    List<Block> getBlocks() {
+        return blocks;
+    }
+
+    /**
+     * Returns a copy of this text with all bounding boxes moved by the input offset, e.g. from the
+     * coordinates of a tile to those of the whole image.
+     */
+    OcrText offset(int dx, int dy) {
+        final List<Block> movedBlocks = new ArrayList<>(blocks.size());
+        for (Block block : blocks) {
+            final List<Line> movedLines = new ArrayList<>(block.lines.size());
+            for (Line line : block.lines) {
+                final List<Word> movedWords = new ArrayList<>(line.words.size());
+                for (Word word : line.words) {
+                    movedWords.add(new Word(offset(word.bounds, dx, dy), word.value));
+                }
+                movedLines.add(new Line(offset(line.bounds, dx, dy), line.value, movedWords));
+            }
+            movedBlocks.add(new Block(offset(block.bounds, dx, dy), movedLines));
+        }
+
+        return new OcrText(quarterTurns, movedBlocks);
+    }
+
+    private static Rect offset(Rect bounds, int dx, int dy) {
+        if (bounds == null) {
+            return null;
+        }
+
+        final Rect moved = new Rect(bounds);
+        moved.offset(dx, dy);
+
+        return moved;
+    }
+
+    /**
+     * Returns the text of each block on a separate line, with the lines of a block separated by spaces.
+     */
+    String toPlainText() {
+        final StringBuilder sb = startBuilder();
+        for (Block block : blocks) {
+            for (Line line : block.lines) {
+                sb.append(line.value).append(' ');
+            }
+            sb.append('\n');
+        }
+
+        return finishBuilder(sb);
+    }
+
+    /**
+     * Returns the structured text as JSON: the blocks with their lines and the lines with their words,
+     * each with its value and bounding box ([left, top, right, bottom]).
+     */
+    String toJson() {
+        final StringBuilder sb = startBuilder();
+        sb.append("{\"quarterTurns\":").append(quarterTurns).append(",\"blocks\":[");
+        for (int b=0 ; b<blocks.size() ; b++) {
+            final Block block = blocks.get(b);
+            sb.append(b == 0 ? "{" : ",{");
+            appendBounds(sb, block.bounds);
+            sb.append(",\"lines\":[");
+            for (int l=0 ; l<block.lines.size() ; l++) {
+                final Line line = block.lines.get(l);
+                sb.append(l == 0 ? "{" : ",{");
+                appendBounds(sb, line.bounds);
+                sb.append(',');
+                appendValue(sb, line.value);
+                sb.append(",\"words\":[");
+                for (int w=0 ; w<line.words.size() ; w++) {
+                    final Word word = line.words.get(w);
+                    sb.append(w == 0 ? "{" : ",{");
+                    appendBounds(sb, word.bounds);
+                    sb.append(',');
+                    appendValue(sb, word.value);
+                    sb.append('}');
+                }
+                sb.append("]}");
+            }
+            sb.append("]}");
+        }
+        sb.append("]}");
+
+        return finishBuilder(sb);
+    }
+
+    private static StringBuilder startBuilder() {
+        final StringBuilder sb = threadBuilders.get();
+        sb.setLength(0);
+
+        return sb;
+    }
+
+    private static String finishBuilder(StringBuilder sb) {
+        final ScanMetrics metrics = ScanMetrics.getInstance();
+        final long start = metrics.start();
+        final String text = sb.toString();
+        metrics.stop(ScanMetrics.Stage.FORMAT, start);
+
+        if (sb.capacity() > MAX_RETAINED_BUILDER_CAPACITY) {
+            threadBuilders.remove(); // Do not pin the memory of an exceptionally large document.
+        }
+
+        return text;
+    }
+
+    private static void appendBounds(StringBuilder sb, Rect bounds) {
+        sb.append("\"bounds\":");
+        if (bounds == null) {
+            sb.append("null");
+        } else {
+            sb.append('[').append(bounds.left).append(',').append(bounds.top).append(',').append(bounds.right).append(',').append(bounds.bottom).append(']');
+        }
+    }
+
+    private static void appendValue(StringBuilder sb, String value) {
+        sb.append("\"value\":");
+        if (value == null) {
+            sb.append("null");
+            return;
+        }
+
+        sb.append('"');
+        for (int i=0 ; i<value.length() ; i++) {
+            final char c = value.charAt(i);
+            switch (c) {
+                case '"': sb.append("\\\""); break;
+                case '\\': sb.append("\\\\"); break;
+                case '\n': sb.append("\\n"); break;
+                case '\r': sb.append("\\r"); break;
+                case '\t': sb.append("\\t"); break;
+
+                default:
+                    if (c < 0x20) {
+                        sb.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        sb.append(c);
+                    }
+            }
+        }
+        sb.append('"');
+    }
+
+    static final class Block {
+        final Rect bounds;
+        final List<Line> lines;
+
+        Block(Rect bounds, List<Line> lines) {
+            this.bounds = bounds;
+            this.lines = lines;
+        }
+    }
+
+    static final class Line {
+        final Rect bounds;
+        final String value;
+        final List<Word> words;
+
+        Line(Rect bounds, String value, List<Word> words) {
+            this.bounds = bounds;
+            this.value = value;
+            this.words = words;
+        }
+    }
+
+    static final class Word {
+        final Rect bounds;
+        final String value;
+
+        Word(Rect bounds, String value) {
+            this.bounds = bounds;
+            this.value = value;
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package uk.co.akm.test.barcodereaderdemo.ocr;
+
+import android.graphics.Bitmap;
+import android.media.ExifInterface;
+import android.os.CancellationSignal;
+import android.util.Log;
+
+import com.google.android.gms.vision.Detector;
+import com.google.android.gms.vision.text.TextBlock;
+
+import java.io.IOException;
+
+import uk.co.akm.test.barcodereaderdemo.base.BitmapPool;
+
+/**
+ * Cheap estimator of the text orientation in a photo, so that the full text recognition can start
+ * with the most likely orientation instead of trying all four. The estimate combines two sources:
+ * <ol>
+ *     <li>the score of the text recognized in each orientation of a heavily downsampled thumbnail of the photo</li>
+ *     <li>the EXIF orientation of the captured JPEG, used when the thumbnail is inconclusive</li>
+ * </ol>
+ * The estimate is only considered confident if one orientation of the thumbnail produced clearly
+ * more text than all the others.
+ */
+final class OrientationEstimator {
+    private static final String TAG = OrientationEstimator.class.getSimpleName();
+
+    private static final int THUMBNAIL_SIZE = 320;
+    private static final int MIN_THUMBNAIL_TEXT_LENGTH = 4;
+    private static final int THUMBNAIL_DOMINANCE_FACTOR = 2;
+
+    private final BitmapPool bitmapPool;
+
+    OrientationEstimator(BitmapPool bitmapPool) {
+        this.bitmapPool = bitmapPool;
+    }
+
+    /**
+     * Estimates the orientation of the text in the input bitmap.
+     *
+     * @param detector the text recognizer to run on the thumbnail
+     * @param textImage the bitmap holding the text
+     * @param imageFilePath the path of the JPEG file the bitmap was decoded from (or null if not available)
+     * @param cancellationSignal the signal that stops the thumbnail evaluation early (the estimate is then not confident)
+     * @return the orientation estimate
+     */
+    Estimate estimate(Detector<TextBlock> detector, Bitmap textImage, String imageFilePath, CancellationSignal cancellationSignal) {
+        final int exifQuarterTurns = readExifQuarterTurns(imageFilePath);
+
+        final int[] scores = scoreThumbnailOrientations(detector, textImage, cancellationSignal);
+        int best = exifQuarterTurns;
+        for (int i=0 ; i<scores.length ; i++) {
+            if (scores[i] > scores[best]) {
+                best = i;
+            }
+        }
+
+        int second = 0;
+        for (int i=0 ; i<scores.length ; i++) {
+            if (i != best && scores[i] > second) {
+                second = scores[i];
+            }
+        }
+
+        final boolean confident = (scores[best] >= MIN_THUMBNAIL_TEXT_LENGTH && scores[best] >= THUMBNAIL_DOMINANCE_FACTOR*second);
+
+        return new Estimate(best, confident);
+    }
+
+    private int[] scoreThumbnailOrientations(Detector<TextBlock> detector, Bitmap textImage, CancellationSignal cancellationSignal) {
+        final int[] scores = new int[BitmapRotator.NUMBER_OF_POSITIONS];
+
+        final Bitmap thumbnail = buildThumbnail(textImage);
+        for (int quarterTurns=0 ; quarterTurns<scores.length && !cancellationSignal.isCanceled() ; quarterTurns++) {
+            scores[quarterTurns] = RecognizedText.scoreOf(TextRecognition.recognizeTextInOrientation(detector, thumbnail, quarterTurns, bitmapPool));
+        }
+
+        if (thumbnail != textImage) {
+            thumbnail.recycle();
+        }
+
+        return scores;
+    }
+
+    private Bitmap buildThumbnail(Bitmap textImage) {
+        final int width = textImage.getWidth();
+        final int height = textImage.getHeight();
+        final int maxDimension = Math.max(width, height);
+        if (maxDimension <= THUMBNAIL_SIZE) {
+            return textImage;
+        }
+
+        final float scale = ((float)THUMBNAIL_SIZE)/maxDimension;
+
+        return Bitmap.createScaledBitmap(textImage, Math.max(1, Math.round(width*scale)), Math.max(1, Math.round(height*scale)), true);
+    }
+
+    // The EXIF orientation is the clockwise rotation required to display the photo upright.
+    private int readExifQuarterTurns(String imageFilePath) {
+        if (imageFilePath == null) {
+            return 0;
+        }
+
+        try {
+            final int orientation = new ExifInterface(imageFilePath).getAttributeInt(ExifInterface.TAG_ORIENTATION, ExifInterface.ORIENTATION_NORMAL);
+            switch (orientation) {
+                case ExifInterface.ORIENTATION_ROTATE_90: return 1;
+                case ExifInterface.ORIENTATION_ROTATE_180: return 2;
+                case ExifInterface.ORIENTATION_ROTATE_270: return 3;
+
+                default: return 0;
+            }
+        } catch (IOException ioe) {
+            Log.d(TAG, "Could not read the EXIF orientation of the stored image.");
+            return 0;
+        }
+    }
+
+    /**
+     * The estimated text orientation, as the number of clockwise quarter turns required to make
+     * the text upright.
+     */
+    static final class Estimate {
+        private final int quarterTurns;
+        private final boolean confident;
+
+        private Estimate(int quarterTurns, boolean confident) {
+            this.quarterTurns = quarterTurns;
+            this.confident = confident;
+        }
+
+        int getQuarterTurns() {
+            return quarterTurns;
+        }
+
+        boolean isConfident() {
+            return confident;
+        }
+
+        /**
+         * Returns the quarter turns of all the other orientations.
+         */
+        int[] getRemainingQuarterTurns() {
+            final int[] remaining = new int[BitmapRotator.NUMBER_OF_POSITIONS - 1];
+            for (int i=0, j=0 ; i<BitmapRotator.NUMBER_OF_POSITIONS ; i++) {
+                if (i != quarterTurns) {
+                    remaining[j++] = i;
+                }
+            }
+
+            return remaining;
+        }
+    }
+}
@@ -0,0 +1,198 @@
+package uk.co.akm.test.barcodereaderdemo.ocr;
+
+import android.graphics.Bitmap;
+import android.os.CancellationSignal;
+import android.util.Log;
+
+import com.google.android.gms.vision.Detector;
+import com.google.android.gms.vision.text.TextBlock;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import uk.co.akm.test.barcodereaderdemo.base.BitmapPool;
+
+/**
+ * Recognizes the text in a bitmap by evaluating all four orientations of the bitmap concurrently and
+ * keeping the highest scoring text recognized (see {@link RecognizedText}). The orientations are
+ * evaluated on a bounded executor with one worker thread per text recognizer provided: a text
+ * recognizer is not used by more than one thread at a time, so the parallelism level is the number
+ * of recognizers. Each worker rotates the source bitmap into its own pooled bitmap (or luminance
+ * frame), so at most one rotated copy per worker is held in memory.
+ *
+ * As soon as an orientation returns a text that clearly dominates (i.e. it scores high enough and
+ * much higher than the texts returned for the other orientations so far) the remaining orientations
+ * are cancelled and that text is returned. The same happens when the cancellation signal of the
+ * caller is raised, in which case the highest scoring text so far is returned. Either way, the
+ * orientations already being evaluated are waited for, so that no worker reads the input bitmap (or
+ * uses a text recognizer) after the call returns.
+ */
+final class ParallelRotationRecognizer {
+    private static final String TAG = ParallelRotationRecognizer.class.getSimpleName();
+
+    private static final int MIN_DOMINANT_TEXT_LENGTH = 20;
+    private static final int DOMINANCE_FACTOR = 3;
+
+    private final int parallelism;
+    private final BitmapPool bitmapPool;
+    private final ExecutorService executor;
+    private final BlockingQueue<Detector<TextBlock>> idleDetectors;
+
+    /**
+     * @param detectors the text recognizers to use, one per worker thread
+     * @param bitmapPool the pool providing the rotated bitmaps
+     */
+    ParallelRotationRecognizer(List<Detector<TextBlock>> detectors, BitmapPool bitmapPool) {
+        if (detectors.isEmpty()) {
+            throw new IllegalArgumentException("At least one text recognizer is required.");
+        }
+
+        this.parallelism = detectors.size();
+        this.bitmapPool = bitmapPool;
+        this.executor = Executors.newFixedThreadPool(parallelism, new WorkerThreadFactory());
+        this.idleDetectors = new ArrayBlockingQueue<>(detectors.size(), false, detectors);
+    }
+
+    int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * Returns the highest scoring (or clearly dominant) text recognized in any orientation of the
+     * input bitmap or null if no text was recognized. The input bitmap is only read, so it must not be
+     * modified or recycled until this method returns.
+     */
+    RecognizedText recognizeText(Bitmap textImage) {
+        return recognizeText(textImage, new int[]{0, 1, 2, 3}, null, new CancellationSignal());
+    }
+
+    /**
+     * Returns the highest scoring (or clearly dominant) text among the input text and the texts
+     * recognized in the specified orientations of the input bitmap or null if no text was recognized at all.
+     * The input bitmap is only read, so it must not be modified or recycled until this method returns.
+     *
+     * @param textImage the bitmap holding the text
+     * @param quarterTurns the orientations to evaluate, as clockwise quarter turns of the bitmap
+     * @param textSoFar the text already recognized in some other orientation (or null if none)
+     * @param cancellationSignal the signal that stops the evaluation of the orientations early
+     * @return the highest scoring (or clearly dominant) text
+     */
+    RecognizedText recognizeText(Bitmap textImage, int[] quarterTurns, RecognizedText textSoFar, CancellationSignal cancellationSignal) {
+        final CompletionService<RecognizedText> completionService = new ExecutorCompletionService<>(executor);
+        final WorkerGroup workerGroup = new WorkerGroup();
+        final List<Future<RecognizedText>> futures = new ArrayList<>(quarterTurns.length);
+        for (int turns : quarterTurns) {
+            futures.add(completionService.submit(new OrientationTask(textImage, turns, workerGroup, cancellationSignal)));
+        }
+
+        try {
+            return collectBestText(completionService, futures.size(), textSoFar, cancellationSignal);
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            return null;
+        } finally {
+            workerGroup.stopAndAwait(); // Queued orientations are not started, running ones complete.
+            for (Future<RecognizedText> future : futures) {
+                future.cancel(false);
+            }
+        }
+    }
+
+    private RecognizedText collectBestText(CompletionService<RecognizedText> completionService, int nTasks, RecognizedText textSoFar, CancellationSignal cancellationSignal) throws InterruptedException {
+        RecognizedText bestText = textSoFar;
+        int secondScore = 0;
+        for (int i=0 ; i<nTasks ; i++) {
+            final RecognizedText text = takeResult(completionService);
+            if (text != null && text.isBetterThan(bestText)) {
+                secondScore = RecognizedText.scoreOf(bestText);
+                bestText = text;
+            } else {
+                secondScore = Math.max(secondScore, RecognizedText.scoreOf(text));
+            }
+
+            final int bestScore = RecognizedText.scoreOf(bestText);
+            if (bestScore >= MIN_DOMINANT_TEXT_LENGTH && bestScore >= DOMINANCE_FACTOR*secondScore) {
+                Log.d(TAG, "Dominant orientation found after " + (i + 1) + " of " + nTasks + " orientations.");
+                break;
+            }
+
+            if (cancellationSignal.isCanceled()) {
+                Log.d(TAG, "Text recognition cancelled after " + (i + 1) + " of " + nTasks + " orientations.");
+                break;
+            }
+        }
+
+        return bestText;
+    }
+
+    private RecognizedText takeResult(CompletionService<RecognizedText> completionService) throws InterruptedException {
+        try {
+            return completionService.take().get();
+        } catch (ExecutionException ee) {
+            Log.e(TAG, "Text recognition failed for one orientation.", ee.getCause());
+            return null;
+        }
+    }
+
+    /**
+     * Stops the worker threads. The text recognizers are not released.
+     */
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private final class OrientationTask implements Callable<RecognizedText> {
+        private final Bitmap source;
+        private final int quarterTurns;
+        private final WorkerGroup workerGroup;
+        private final CancellationSignal cancellationSignal;
+
+        OrientationTask(Bitmap source, int quarterTurns, WorkerGroup workerGroup, CancellationSignal cancellationSignal) {
+            this.source = source;
+            this.quarterTurns = quarterTurns;
+            this.workerGroup = workerGroup;
+            this.cancellationSignal = cancellationSignal;
+        }
+
+        @Override
+        public RecognizedText call() throws InterruptedException {
+            if (cancellationSignal.isCanceled() || !workerGroup.tryStart()) {
+                return null;
+            }
+
+            try {
+                final Detector<TextBlock> detector = idleDetectors.take();
+                try {
+                    return TextRecognition.recognizeTextInOrientation(detector, source, quarterTurns, bitmapPool);
+                } finally {
+                    idleDetectors.put(detector);
+                }
+            } finally {
+                workerGroup.finish();
+            }
+        }
+    }
+
+    private static final class WorkerThreadFactory implements ThreadFactory {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            final Thread thread = new Thread(runnable, TAG + "-" + count.incrementAndGet());
+            thread.setDaemon(true);
+
+            return thread;
+        }
+    }
+}
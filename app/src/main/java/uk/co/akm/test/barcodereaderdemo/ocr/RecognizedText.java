@@ -0,0 +1,119 @@
+package uk.co.akm.test.barcodereaderdemo.ocr;
+
+import android.graphics.Rect;
+import android.util.SparseArray;
+
+import com.google.android.gms.vision.text.Text;
+import com.google.android.gms.vision.text.TextBlock;
+
+import java.util.List;
+
+/**
+ * The text blocks recognized in a single orientation of an image, scored from their line metadata
+ * (the number of characters, lines and the area they cover) without assembling any text. Hence the
+ * orientations can be compared cheaply and only the winning one has to be converted to an
+ * {@link OcrText}.
+ */
+final class RecognizedText {
+    private final SparseArray<TextBlock> textBlocks;
+    private final int quarterTurns;
+    private final int characterCount;
+    private final int lineCount;
+    private final long lineArea;
+
+    /**
+     * Returns the scored text blocks or null if there are none.
+     *
+     * @param textBlocks the text blocks recognized (or null)
+     * @param quarterTurns the clockwise quarter turns of the image the blocks were recognized in
+     */
+    static RecognizedText of(SparseArray<TextBlock> textBlocks, int quarterTurns) {
+        return (textBlocks == null || textBlocks.size() == 0 ? null : new RecognizedText(textBlocks, quarterTurns));
+    }
+
+    private RecognizedText(SparseArray<TextBlock> textBlocks, int quarterTurns) {
+        this.textBlocks = textBlocks;
+        this.quarterTurns = quarterTurns;
+
+        int characterCount = 0;
+        int lineCount = 0;
+        long lineArea = 0;
+        for (int i=0 ; i<textBlocks.size() ; i++) {
+            final TextBlock textBlock = textBlocks.valueAt(i);
+            final List<? extends Text> lines = (textBlock == null ? null : textBlock.getComponents());
+            if (lines != null) {
+                for (Text line : lines) {
+                    if (line != null) {
+                        final String value = line.getValue(); // Already held by the line, nothing is assembled.
+                        characterCount += (value == null ? 0 : value.length());
+                        lineCount++;
+                        lineArea += area(line.getBoundingBox());
+                    }
+                }
+            }
+        }
+
+        this.characterCount = characterCount;
+        this.lineCount = lineCount;
+        this.lineArea = lineArea;
+    }
+
+    private static long area(Rect box) {
+        return (box == null ? 0 : ((long) box.width())*box.height());
+    }
+
+    SparseArray<TextBlock> getTextBlocks() {
+        return textBlocks;
+    }
+
+    int getQuarterTurns() {
+        return quarterTurns;
+    }
+
+    /**
+     * Returns the number of characters recognized, which is the score of the orientation.
+     */
+    int getCharacterCount() {
+        return characterCount;
+    }
+
+    int getLineCount() {
+        return lineCount;
+    }
+
+    long getLineArea() {
+        return lineArea;
+    }
+
+    /**
+     * Returns true if this orientation scores higher than the input one: more characters or, for
+     * equal characters, fewer lines covering a larger area (i.e. larger, more coherent text).
+     */
+    boolean isBetterThan(RecognizedText other) {
+        if (other == null) {
+            return true;
+        }
+
+        if (characterCount != other.characterCount) {
+            return (characterCount > other.characterCount);
+        } else if (lineCount != other.lineCount) {
+            return (lineCount < other.lineCount);
+        } else {
+            return (lineArea > other.lineArea);
+        }
+    }
+
+    /**
+     * Returns the highest scoring of the two input orientations (either of which can be null).
+     */
+    static RecognizedText best(RecognizedText first, RecognizedText second) {
+        return (second != null && second.isBetterThan(first) ? second : first);
+    }
+
+    /**
+     * Returns the score of the input orientation, which is zero if nothing was recognized.
+     */
+    static int scoreOf(RecognizedText recognizedText) {
+        return (recognizedText == null ? 0 : recognizedText.characterCount);
+    }
+}
@@ -0,0 +1,66 @@
+package uk.co.akm.test.barcodereaderdemo.ocr;
+
+import android.graphics.Bitmap;
+import android.util.SparseArray;
+
+import com.google.android.gms.vision.Detector;
+import com.google.android.gms.vision.Frame;
+import com.google.android.gms.vision.text.TextBlock;
+
+import uk.co.akm.test.barcodereaderdemo.base.BitmapPool;
+import uk.co.akm.test.barcodereaderdemo.base.LuminanceFrameBuilder;
+import uk.co.akm.test.barcodereaderdemo.base.ScanMetrics;
+
+/**
+ * Helper class that runs a text recognizer on a bitmap and scores the recognized text blocks (see
+ * {@link RecognizedText}), without converting them to text. The recognizer is fed either with bitmap
+ * frames or, if enabled, with luminance frames (see {@link LuminanceFrameBuilder}).
+ */
+final class TextRecognition {
+
+    /**
+     * Returns the text blocks recognized in the input bitmap, rotated clockwise by the specified number
+     * of quarter turns, or null if no text was recognized. The input bitmap is left untouched.
+     *
+     * @param detector the text recognizer
+     * @param textImage the bitmap holding the text
+     * @param quarterTurns the number of clockwise quarter turns
+     * @param bitmapPool the pool providing the rotated bitmap (only used for bitmap frames)
+     * @return the text blocks recognized or null
+     */
+    static RecognizedText recognizeTextInOrientation(Detector<TextBlock> detector, Bitmap textImage, int quarterTurns, BitmapPool bitmapPool) {
+        if (LuminanceFrameBuilder.isEnabled()) {
+            return recognizeTextInFrame(detector, LuminanceFrameBuilder.forCurrentThread().build(textImage, null, quarterTurns), quarterTurns); // Rotated during the conversion.
+        }
+
+        if (quarterTurns%BitmapRotator.NUMBER_OF_POSITIONS == 0) {
+            return recognizeTextInFrame(detector, new Frame.Builder().setBitmap(textImage).build(), quarterTurns); // The detector only reads the bitmap, so no copy is needed.
+        }
+
+        final Bitmap rotated = new BitmapRotator(bitmapPool).rotate(textImage, quarterTurns);
+        try {
+            return recognizeTextInFrame(detector, new Frame.Builder().setBitmap(rotated).build(), quarterTurns);
+        } finally {
+            bitmapPool.put(rotated);
+        }
+    }
+
+    private static RecognizedText recognizeTextInFrame(Detector<TextBlock> detector, Frame frame, int quarterTurns) {
+        return RecognizedText.of(recognizeText(detector, frame), quarterTurns);
+    }
+
+    private static SparseArray<TextBlock> recognizeText(Detector<TextBlock> detector, Frame frame) {
+        final ScanMetrics metrics = ScanMetrics.getInstance();
+        final long start = metrics.start();
+        final SparseArray<TextBlock> textBlocks = detector.detect(frame);
+        metrics.stop(ScanMetrics.Stage.DETECT, start);
+
+        if (textBlocks == null || textBlocks.size() == 0) {
+            return null;
+        } else {
+            return textBlocks;
+        }
+    }
+
+    private TextRecognition() {}
+}
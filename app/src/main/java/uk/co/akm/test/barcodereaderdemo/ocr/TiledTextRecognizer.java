@@ -0,0 +1,305 @@
+package uk.co.akm.test.barcodereaderdemo.ocr;
+
+import android.graphics.Bitmap;
+import android.graphics.Rect;
+import android.os.CancellationSignal;
+import android.util.Log;
+
+import com.google.android.gms.vision.Detector;
+import com.google.android.gms.vision.text.TextBlock;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import uk.co.akm.test.barcodereaderdemo.base.BitmapPool;
+import uk.co.akm.test.barcodereaderdemo.base.VisionAsyncTask;
+import uk.co.akm.test.barcodereaderdemo.core.Tiling;
+
+/**
+ * Recognizes the text in a high resolution image by splitting it into a grid of overlapping tiles of
+ * the same size and recognizing the text in each tile, at full resolution, in the orientation given.
+ * Only the tiles being recognized are held in memory (one tile and its rotated copy per worker), so
+ * the memory used is bounded whatever the image size. The tiles are read with the region reader of
+ * the task and recognized concurrently, with one worker thread per text recognizer provided.
+ *
+ * The tiles overlap by more than the height of a text line, so every line lies entirely within at
+ * least one tile. The lines recognized in the overlaps (whole or cut by a tile edge) are deduplicated
+ * by their bounding boxes: of the lines overlapping each other, only the one with the most characters
+ * is kept.
+ *
+ * The text recognizers may be shared with a {@link ParallelRotationRecognizer}, as long as the two
+ * recognizers are not used at the same time. When the recognition is cancelled, the tiles already
+ * being recognized are waited for, so that no worker reads the image (or uses a text recognizer)
+ * after the call returns.
+ */
+final class TiledTextRecognizer {
+    private static final String TAG = TiledTextRecognizer.class.getSimpleName();
+
+    private static final int TILE_SIZE = 1024;
+    private static final int TILE_OVERLAP = 160;
+    private static final float DUPLICATE_OVERLAP_FRACTION = 0.5f;
+
+    private final BitmapPool bitmapPool;
+    private final ExecutorService executor;
+    private final BlockingQueue<Detector<TextBlock>> idleDetectors;
+
+    /**
+     * @param detectors the text recognizers to use, one per worker thread
+     * @param bitmapPool the pool receiving the tiles (and providing their rotated copies)
+     */
+    TiledTextRecognizer(List<Detector<TextBlock>> detectors, BitmapPool bitmapPool) {
+        if (detectors.isEmpty()) {
+            throw new IllegalArgumentException("At least one text recognizer is required.");
+        }
+
+        this.bitmapPool = bitmapPool;
+        this.executor = Executors.newFixedThreadPool(detectors.size(), new WorkerThreadFactory());
+        this.idleDetectors = new ArrayBlockingQueue<>(detectors.size(), false, detectors);
+    }
+
+    /**
+     * Returns true if the input image is large enough to be recognized in tiles.
+     */
+    static boolean isTilingRequired(int imageWidth, int imageHeight) {
+        return (Math.max(imageWidth, imageHeight) > 2*TILE_SIZE);
+    }
+
+    /**
+     * Returns the text recognized in all tiles of the image, merged and deduplicated, or null if no
+     * text was recognized (or the recognition was cancelled). The bounding boxes are given in the
+     * coordinates of the whole image, rotated by the input quarter turns.
+     *
+     * @param regionReader the reader of the full resolution image regions
+     * @param quarterTurns the orientation of the text, as clockwise quarter turns of the image
+     * @param cancellationSignal the signal that stops the recognition early
+     * @return the text recognized or null
+     */
+    OcrText recognizeText(VisionAsyncTask.RegionReader regionReader, int quarterTurns, CancellationSignal cancellationSignal) {
+        final int imageWidth = regionReader.getImageWidth();
+        final int imageHeight = regionReader.getImageHeight();
+        final int tileWidth = Math.min(TILE_SIZE, imageWidth);
+        final int tileHeight = Math.min(TILE_SIZE, imageHeight);
+        final int[] xOrigins = Tiling.computeTileOrigins(imageWidth, tileWidth, Math.min(TILE_OVERLAP, tileWidth - 1));
+        final int[] yOrigins = Tiling.computeTileOrigins(imageHeight, tileHeight, Math.min(TILE_OVERLAP, tileHeight - 1));
+
+        final WorkerGroup workerGroup = new WorkerGroup();
+        final List<Future<OcrText>> futures = new ArrayList<>(xOrigins.length*yOrigins.length);
+        for (int y : yOrigins) {
+            for (int x : xOrigins) {
+                final Rect tile = new Rect(x, y, x + tileWidth, y + tileHeight);
+                final int[] rotatedTile = Tiling.rotateBounds(new int[]{tile.left, tile.top, tile.right, tile.bottom}, imageWidth, imageHeight, quarterTurns);
+                futures.add(executor.submit(new TileTask(regionReader, tile, quarterTurns, rotatedTile[Tiling.LEFT], rotatedTile[Tiling.TOP], workerGroup, cancellationSignal)));
+            }
+        }
+        Log.d(TAG, "Recognizing the text of a " + imageWidth + "x" + imageHeight + " image in " + futures.size() + " tiles.");
+
+        try {
+            final List<OcrText> tileTexts = collectTileTexts(futures, cancellationSignal);
+
+            return (tileTexts == null ? null : merge(tileTexts, quarterTurns));
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            return null;
+        } finally {
+            workerGroup.stopAndAwait(); // Queued tiles are not started, running ones complete and release their resources.
+            for (Future<OcrText> future : futures) {
+                future.cancel(false);
+            }
+        }
+    }
+
+    private List<OcrText> collectTileTexts(List<Future<OcrText>> futures, CancellationSignal cancellationSignal) throws InterruptedException {
+        final List<OcrText> tileTexts = new ArrayList<>(futures.size());
+        for (Future<OcrText> future : futures) {
+            if (cancellationSignal.isCanceled()) {
+                return null;
+            }
+
+            try {
+                final OcrText tileText = future.get();
+                if (tileText != null) {
+                    tileTexts.add(tileText);
+                }
+            } catch (ExecutionException ee) {
+                Log.e(TAG, "Text recognition failed for one tile.", ee.getCause());
+            }
+        }
+
+        return (tileTexts.isEmpty() || cancellationSignal.isCanceled() ? null : tileTexts);
+    }
+
+    private static OcrText merge(List<OcrText> tileTexts, int quarterTurns) {
+        final List<LineRef> lines = new ArrayList<>();
+        for (OcrText tileText : tileTexts) {
+            for (OcrText.Block block : tileText.getBlocks()) {
+                for (OcrText.Line line : block.lines) {
+                    lines.add(new LineRef(line));
+                }
+            }
+        }
+
+        // The longest lines are kept first, so a line cut by a tile edge gives way to its whole copy.
+        Collections.sort(lines, new Comparator<LineRef>() {
+            @Override
+            public int compare(LineRef first, LineRef second) {
+                return (second.length < first.length ? -1 : (second.length == first.length ? 0 : 1));
+            }
+        });
+
+        final List<LineRef> kept = new ArrayList<>(lines.size());
+        final Set<OcrText.Line> keptLines = Collections.newSetFromMap(new IdentityHashMap<OcrText.Line, Boolean>());
+        for (LineRef line : lines) {
+            if (!overlapsAny(line, kept)) {
+                kept.add(line);
+                keptLines.add(line.line);
+            }
+        }
+
+        return OcrText.of(quarterTurns, rebuildBlocks(tileTexts, keptLines));
+    }
+
+    private static boolean overlapsAny(LineRef line, List<LineRef> kept) {
+        for (LineRef other : kept) {
+            if (Tiling.overlapFraction(line.bounds, other.bounds) >= DUPLICATE_OVERLAP_FRACTION) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    // Rebuilds the blocks with their remaining lines (in their original order), in reading order.
+    private static List<OcrText.Block> rebuildBlocks(List<OcrText> tileTexts, Set<OcrText.Line> keptLines) {
+        final List<OcrText.Block> blocks = new ArrayList<>();
+        for (OcrText tileText : tileTexts) {
+            for (OcrText.Block block : tileText.getBlocks()) {
+                final List<OcrText.Line> lines = new ArrayList<>(block.lines.size());
+                final Rect bounds = new Rect();
+                for (OcrText.Line line : block.lines) {
+                    if (keptLines.contains(line)) {
+                        lines.add(line);
+                        if (line.bounds != null) {
+                            bounds.union(line.bounds);
+                        }
+                    }
+                }
+
+                if (!lines.isEmpty()) {
+                    blocks.add(new OcrText.Block(bounds, lines));
+                }
+            }
+        }
+
+        Collections.sort(blocks, new Comparator<OcrText.Block>() {
+            @Override
+            public int compare(OcrText.Block first, OcrText.Block second) {
+                final int byTop = compareInts(first.bounds.top, second.bounds.top);
+
+                return (byTop == 0 ? compareInts(first.bounds.left, second.bounds.left) : byTop);
+            }
+        });
+
+        return blocks;
+    }
+
+    private static int compareInts(int first, int second) {
+        return (first < second ? -1 : (first == second ? 0 : 1));
+    }
+
+    /**
+     * Stops the worker threads. The text recognizers are not released.
+     */
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private static final class LineRef {
+        final OcrText.Line line;
+        final int[] bounds;
+        final int length;
+
+        LineRef(OcrText.Line line) {
+            this.line = line;
+            this.bounds = (line.bounds == null ? new int[4] : new int[]{line.bounds.left, line.bounds.top, line.bounds.right, line.bounds.bottom});
+            this.length = (line.value == null ? 0 : line.value.length());
+        }
+    }
+
+    private final class TileTask implements Callable<OcrText> {
+        private final VisionAsyncTask.RegionReader regionReader;
+        private final Rect tile;
+        private final int quarterTurns;
+        private final int dx;
+        private final int dy;
+        private final WorkerGroup workerGroup;
+        private final CancellationSignal cancellationSignal;
+
+        TileTask(VisionAsyncTask.RegionReader regionReader, Rect tile, int quarterTurns, int dx, int dy, WorkerGroup workerGroup, CancellationSignal cancellationSignal) {
+            this.regionReader = regionReader;
+            this.tile = tile;
+            this.quarterTurns = quarterTurns;
+            this.dx = dx;
+            this.dy = dy;
+            this.workerGroup = workerGroup;
+            this.cancellationSignal = cancellationSignal;
+        }
+
+        @Override
+        public OcrText call() throws InterruptedException {
+            if (cancellationSignal.isCanceled() || !workerGroup.tryStart()) {
+                return null;
+            }
+
+            try {
+                final Detector<TextBlock> detector = idleDetectors.take(); // Taken before reading the tile, so that at most one tile per worker is in memory.
+                try {
+                    return recognizeTile(detector);
+                } finally {
+                    idleDetectors.put(detector);
+                }
+            } finally {
+                workerGroup.finish();
+            }
+        }
+
+        private OcrText recognizeTile(Detector<TextBlock> detector) {
+            final Bitmap tileImage = regionReader.read(tile);
+            if (tileImage == null) {
+                return null;
+            }
+
+            try {
+                final RecognizedText recognized = TextRecognition.recognizeTextInOrientation(detector, tileImage, quarterTurns, bitmapPool);
+
+                return (recognized == null ? null : OcrText.from(recognized).offset(dx, dy));
+            } finally {
+                bitmapPool.put(tileImage);
+            }
+        }
+    }
+
+    private static final class WorkerThreadFactory implements ThreadFactory {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            final Thread thread = new Thread(runnable, TAG + "-" + count.incrementAndGet());
+            thread.setDaemon(true);
+
+            return thread;
+        }
+    }
+}
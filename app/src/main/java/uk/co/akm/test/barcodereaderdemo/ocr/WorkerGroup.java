@@ -0,0 +1,59 @@
+package uk.co.akm.test.barcodereaderdemo.ocr;
+
+/**
+ * Tracks the tasks submitted to the workers by a single recognition call, so that the call returns
+ * only when none of its tasks is running any more. A task calls {@link #tryStart()} before touching
+ * the shared resources (i.e. the input image and the text recognizers) and {@link #finish()} when it
+ * is done with them. Once the group is stopped, the tasks still queued are not started, so they can
+ * neither read an image the caller has since released nor use a text recognizer concurrently with
+ * the caller.
+ *
+ * Note that cancelling the future of a running task is not enough: the future is marked as done at
+ * once, while the task itself keeps running.
+ */
+final class WorkerGroup {
+    private boolean stopped;
+    private int running;
+
+    /**
+     * Returns true if the calling task may start or false if the group has been stopped, in which
+     * case the task must return at once.
+     */
+    synchronized boolean tryStart() {
+        if (stopped) {
+            return false;
+        }
+
+        running++;
+        return true;
+    }
+
+    /**
+     * Called by a task that started (see {@link #tryStart()}) once it no longer uses the shared resources.
+     */
+    synchronized void finish() {
+        running--;
+        notifyAll();
+    }
+
+    /**
+     * Stops the group and waits for its running tasks to finish. The interrupted status of the calling
+     * thread is preserved, but does not shorten the wait.
+     */
+    synchronized void stopAndAwait() {
+        stopped = true;
+
+        boolean interrupted = false;
+        while (running > 0) {
+            try {
+                wait();
+            } catch (InterruptedException ie) {
+                interrupted = true;
+            }
+        }
+
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
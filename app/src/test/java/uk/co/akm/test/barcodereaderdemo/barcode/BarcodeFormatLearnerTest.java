@@ -0,0 +1,75 @@
+package uk.co.akm.test.barcodereaderdemo.barcode;
+
+import com.google.android.gms.vision.barcode.Barcode;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class BarcodeFormatLearnerTest {
+    private static final int ALLOWED = Barcode.EAN_13 | Barcode.QR_CODE | Barcode.UPC_A;
+
+    @Test
+    public void shouldNotNarrowDownBeforeEnoughScans() {
+        final BarcodeFormatLearner learner = new BarcodeFormatLearner();
+
+        learner.onSuccess("EAN_13");
+        learner.onSuccess("EAN_13");
+        assertEquals(0, learner.getLearnedFormats(ALLOWED));
+    }
+
+    @Test
+    public void shouldLearnRecentFormats() {
+        final BarcodeFormatLearner learner = learnerOf("EAN_13", "QR_CODE", "EAN_13");
+
+        assertEquals(Barcode.EAN_13 | Barcode.QR_CODE, learner.getLearnedFormats(ALLOWED));
+        assertEquals(Barcode.EAN_13 | Barcode.QR_CODE, learner.getLearnedFormats(Barcode.ALL_FORMATS));
+    }
+
+    @Test
+    public void shouldNotNarrowDownToAllAllowedFormats() {
+        final BarcodeFormatLearner learner = learnerOf("EAN_13", "QR_CODE", "EAN_13");
+
+        assertEquals(0, learner.getLearnedFormats(Barcode.EAN_13 | Barcode.QR_CODE));
+    }
+
+    @Test
+    public void shouldIgnoreUnknownCategories() {
+        final BarcodeFormatLearner learner = learnerOf("EAN_13", "EAN_13", "UNKNOWN");
+
+        assertEquals(0, learner.getLearnedFormats(ALLOWED));
+    }
+
+    @Test
+    public void shouldForgetFormatsAfterConsecutiveMisses() {
+        final BarcodeFormatLearner learner = learnerOf("EAN_13", "EAN_13", "EAN_13");
+
+        learner.onNarrowedMiss();
+        learner.onNarrowedMiss();
+        assertEquals(Barcode.EAN_13, learner.getLearnedFormats(ALLOWED));
+
+        learner.onNarrowedMiss();
+        assertEquals(0, learner.getLearnedFormats(ALLOWED));
+    }
+
+    @Test
+    public void shouldResetMissesOnHit() {
+        final BarcodeFormatLearner learner = learnerOf("EAN_13", "EAN_13", "EAN_13");
+
+        learner.onNarrowedMiss();
+        learner.onNarrowedMiss();
+        learner.onNarrowedHit();
+        learner.onNarrowedMiss();
+        learner.onNarrowedMiss();
+        assertEquals(Barcode.EAN_13, learner.getLearnedFormats(ALLOWED));
+    }
+
+    private static BarcodeFormatLearner learnerOf(String... categories) {
+        final BarcodeFormatLearner learner = new BarcodeFormatLearner();
+        for (String category : categories) {
+            learner.onSuccess(category);
+        }
+
+        return learner;
+    }
+}
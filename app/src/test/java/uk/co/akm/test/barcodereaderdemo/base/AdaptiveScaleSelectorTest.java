@@ -0,0 +1,67 @@
+package uk.co.akm.test.barcodereaderdemo.base;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class AdaptiveScaleSelectorTest {
+
+    @Test
+    public void shouldStartAtLowestLevelWithoutSuccess() {
+        final AdaptiveScaleSelector selector = new AdaptiveScaleSelector(300, 600, 1200);
+
+        assertEquals(0, selector.getStartLevel());
+    }
+
+    @Test
+    public void shouldStartAtLevelOfLastCategory() {
+        final AdaptiveScaleSelector selector = new AdaptiveScaleSelector(300, 600, 1200);
+
+        selector.onSuccess(2, "EAN_13");
+        assertEquals(2, selector.getStartLevel());
+
+        selector.onSuccess(1, "QR_CODE");
+        assertEquals(1, selector.getStartLevel());
+
+        selector.onSuccess(2, "EAN_13");
+        assertEquals(2, selector.getStartLevel());
+    }
+
+    @Test
+    public void shouldIgnoreUnknownCategory() {
+        final AdaptiveScaleSelector selector = new AdaptiveScaleSelector(300, 600, 1200);
+
+        selector.onSuccess(1, "EAN_13");
+        selector.onSuccess(2, null);
+        assertEquals(1, selector.getStartLevel());
+    }
+
+    @Test
+    public void shouldProbeFromLowestLevelEveryInterval() {
+        final AdaptiveScaleSelector selector = new AdaptiveScaleSelector(300, 600, 1200);
+        selector.onSuccess(2, "EAN_13");
+
+        for (int scan=1 ; scan<=2*AdaptiveScaleSelector.PROBE_INTERVAL ; scan++) {
+            final int expected = (scan%AdaptiveScaleSelector.PROBE_INTERVAL == 0 ? 0 : 2); // Not just the level below the remembered one.
+            assertEquals("Scan " + scan, expected, selector.getStartLevel());
+        }
+    }
+
+    @Test
+    public void shouldRememberCheaperLevelFoundByProbe() {
+        final AdaptiveScaleSelector selector = new AdaptiveScaleSelector(300, 600, 1200);
+        selector.onSuccess(2, "EAN_13");
+
+        for (int scan=1 ; scan<AdaptiveScaleSelector.PROBE_INTERVAL ; scan++) {
+            selector.getStartLevel();
+        }
+        assertEquals(0, selector.getStartLevel());
+        selector.onSuccess(0, "EAN_13");
+        assertEquals(0, selector.getStartLevel());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectUnorderedTargetSizes() {
+        new AdaptiveScaleSelector(600, 300);
+    }
+}
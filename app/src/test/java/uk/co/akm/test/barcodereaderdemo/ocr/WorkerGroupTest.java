@@ -0,0 +1,76 @@
+package uk.co.akm.test.barcodereaderdemo.ocr;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.*;
+
+public class WorkerGroupTest {
+
+    @Test
+    public void shouldNotStartTasksOnceStopped() {
+        final WorkerGroup group = new WorkerGroup();
+
+        assertTrue(group.tryStart());
+        group.finish();
+        group.stopAndAwait();
+        assertFalse(group.tryStart());
+    }
+
+    @Test
+    public void shouldWaitForRunningTasks() throws InterruptedException {
+        final WorkerGroup group = new WorkerGroup();
+        final CountDownLatch started = new CountDownLatch(1);
+        final AtomicBoolean finished = new AtomicBoolean();
+        final Thread task = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                assertTrue(group.tryStart());
+                started.countDown();
+                try {
+                    Thread.sleep(100);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    finished.set(true);
+                    group.finish();
+                }
+            }
+        });
+        task.start();
+
+        assertTrue(started.await(1, TimeUnit.SECONDS));
+        group.stopAndAwait();
+        assertTrue(finished.get());
+        task.join();
+    }
+
+    @Test
+    public void shouldKeepWaitingWhenInterrupted() throws InterruptedException {
+        final WorkerGroup group = new WorkerGroup();
+        final AtomicBoolean finished = new AtomicBoolean();
+        final AtomicBoolean interrupted = new AtomicBoolean();
+        assertTrue(group.tryStart());
+
+        final Thread caller = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                group.stopAndAwait();
+                interrupted.set(Thread.currentThread().isInterrupted());
+                finished.set(true);
+            }
+        });
+        caller.start();
+        caller.interrupt();
+        caller.join(100);
+        assertFalse(finished.get());
+
+        group.finish();
+        caller.join();
+        assertTrue(finished.get());
+        assertTrue(interrupted.get());
+    }
+}
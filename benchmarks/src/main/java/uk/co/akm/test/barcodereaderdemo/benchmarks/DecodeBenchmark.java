@@ -0,0 +1,93 @@
+package uk.co.akm.test.barcodereaderdemo.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import uk.co.akm.test.barcodereaderdemo.core.ImageRotation;
+import uk.co.akm.test.barcodereaderdemo.core.ScanImage;
+import uk.co.akm.test.barcodereaderdemo.core.ScanResult;
+import uk.co.akm.test.barcodereaderdemo.core.standin.Ean13Renderer;
+import uk.co.akm.test.barcodereaderdemo.core.standin.StandInEan13Engine;
+
+/**
+ * Measures the end-to-end decode of a fixture corpus of barcode images through the JVM stand-in
+ * detector. The corpus is rendered at setup: barcodes of different scales and noise levels, in all
+ * four orientations, as ARGB images (i.e. as read from a photo). Each invocation decodes the next
+ * image of the corpus, trying successive quarter turns until a barcode is found, as done in the app
+ * when the orientation of a photo is not known.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class DecodeBenchmark {
+    private static final int CORPUS_SIZE = 32;
+    private static final int[] MODULE_WIDTHS = {2, 3, 4, 6};
+    private static final int[] NOISE_AMPLITUDES = {0, 30, 60};
+
+    private final StandInEan13Engine engine = new StandInEan13Engine();
+
+    private ScanImage[] corpus;
+    private int[] rotated;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        final Random random = new Random(42);
+        corpus = new ScanImage[CORPUS_SIZE];
+        for (int i=0 ; i<CORPUS_SIZE ; i++) {
+            final int moduleWidth = MODULE_WIDTHS[i%MODULE_WIDTHS.length];
+            final Ean13Renderer renderer = new Ean13Renderer(moduleWidth, 60*moduleWidth, 20*moduleWidth);
+            final String number = Ean13Renderer.withCheckDigit(String.format("%012d", Math.abs(random.nextLong())%1000000000000L));
+            final ScanImage image = renderer.render(number, NOISE_AMPLITUDES[i%NOISE_AMPLITUDES.length], random);
+            corpus[i] = toRotatedArgb(image, i%ImageRotation.NUMBER_OF_POSITIONS);
+        }
+    }
+
+    private static ScanImage toRotatedArgb(ScanImage image, int quarterTurns) {
+        final int width = image.getWidth();
+        final int height = image.getHeight();
+        final byte[] luminance = image.getLuminanceData();
+        final int[] argb = new int[luminance.length];
+        for (int i=0 ; i<argb.length ; i++) {
+            final int value = (luminance[i] & 0xFF);
+            argb[i] = 0xFF000000 | (value << 16) | (value << 8) | value;
+        }
+
+        final boolean sideways = (quarterTurns%2 == 1);
+        final int[] pixels = ImageRotation.rotate(argb, width, height, quarterTurns, null);
+
+        return ScanImage.ofArgb(pixels, sideways ? height : width, sideways ? width : height);
+    }
+
+    @Benchmark
+    public List<ScanResult> decodeCorpusImage() {
+        final ScanImage image = corpus[next];
+        next = (next + 1)%CORPUS_SIZE;
+
+        List<ScanResult> results = engine.scan(image);
+        for (int turns=1 ; results.isEmpty() && turns<ImageRotation.NUMBER_OF_POSITIONS ; turns++) {
+            rotated = ImageRotation.rotate(image.getArgbData(), image.getWidth(), image.getHeight(), turns, rotated);
+            final boolean sideways = (turns%2 == 1);
+            final int width = (sideways ? image.getHeight() : image.getWidth());
+            final int height = (sideways ? image.getWidth() : image.getHeight());
+            results = engine.scan(ScanImage.ofArgb(rotated, width, height));
+        }
+
+        return results;
+    }
+}
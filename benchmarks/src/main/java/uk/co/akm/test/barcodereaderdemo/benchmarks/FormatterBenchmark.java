@@ -0,0 +1,88 @@
+package uk.co.akm.test.barcodereaderdemo.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+import uk.co.akm.test.barcodereaderdemo.core.BarcodeNumberFormatter;
+import uk.co.akm.test.barcodereaderdemo.core.FormatNameTable;
+
+/**
+ * Measures the formatting of the decoded barcode numbers for display and the format name lookups,
+ * which run once per detected barcode (i.e. for every frame with a barcode in live scanning). The
+ * previous implementation of the number formatting (validated by parsing the number as a long and
+ * grouped by reversing a builder) is kept as a baseline; the allocation rates are reported by the
+ * gc profiler of the jmh task.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class FormatterBenchmark {
+
+    // EAN-13, EAN-8, a long numeric code, a numeric code too long for a long and a non-numeric code (returned unchanged).
+    @Param({"5901234123457", "96385074", "123456789012345678", "12345678901234567890123456", "https://example.com/product/42"})
+    public String number;
+
+    private static final FormatNameTable FORMAT_NAMES = FormatNameTable.forBitFlags(
+            new int[]{1, 2, 4, 8, 16, 32, 64, 128, 256, 512, 1024, 2048, 4096},
+            new String[]{"CODE_128", "CODE_39", "CODE_93", "CODABAR", "DATA_MATRIX", "EAN_13", "EAN_8", "ITF", "QR_CODE", "UPC_A", "UPC_E", "PDF417", "AZTEC"});
+
+    private final StringBuilder displayText = new StringBuilder(64);
+
+    @Benchmark
+    public String formatBarcodeNumber() {
+        return BarcodeNumberFormatter.format(number);
+    }
+
+    @Benchmark
+    public StringBuilder appendBarcodeNumber() {
+        displayText.setLength(0);
+
+        return BarcodeNumberFormatter.appendFormatted(number, displayText);
+    }
+
+    @Benchmark
+    public String formatBarcodeNumberBaseline() {
+        try {
+            Long.parseLong(number);
+        } catch (NumberFormatException nfe) {
+            return number;
+        }
+
+        final int len = number.length();
+        if (len <= 6) {
+            return number;
+        }
+
+        final int lastIndex = len - 1;
+        final StringBuilder sb = new StringBuilder(len + len/6 + 1);
+        for (int i=0 ; i<len ; i++) {
+            if (i > 0 && i%6 == 0) {
+                sb.append(' ');
+            }
+            sb.append(number.charAt(lastIndex - i));
+        }
+
+        return sb.reverse().toString();
+    }
+
+    @Benchmark
+    public void lookUpFormatNames(Blackhole blackhole) {
+        for (int format=1 ; format<=8192 ; format <<= 1) { // The last format is unknown.
+            blackhole.consume(FORMAT_NAMES.getName(format));
+        }
+    }
+}
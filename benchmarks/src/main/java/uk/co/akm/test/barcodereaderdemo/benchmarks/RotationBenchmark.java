@@ -0,0 +1,67 @@
+package uk.co.akm.test.barcodereaderdemo.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import uk.co.akm.test.barcodereaderdemo.core.ImageRotation;
+
+/**
+ * Measures the rotation of an ARGB image by quarter turns, as done for each orientation evaluated
+ * when the text orientation of a photo is not known. The target buffer is either reused (as with
+ * pooled bitmaps) or allocated for every rotation.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class RotationBenchmark {
+
+    @Param({"640x480", "1280x720", "2048x1536"})
+    public String size;
+
+    @Param({"1", "2", "3"})
+    public int quarterTurns;
+
+    private int width;
+    private int height;
+    private int[] pixels;
+    private int[] target;
+
+    @Setup
+    public void setUp() {
+        final String[] dimensions = size.split("x");
+        width = Integer.parseInt(dimensions[0]);
+        height = Integer.parseInt(dimensions[1]);
+
+        final Random random = new Random(42);
+        pixels = new int[width*height];
+        for (int i=0 ; i<pixels.length ; i++) {
+            pixels[i] = 0xFF000000 | random.nextInt(0x01000000);
+        }
+        target = new int[pixels.length];
+    }
+
+    @Benchmark
+    public int[] rotateIntoReusedBuffer() {
+        return ImageRotation.rotate(pixels, width, height, quarterTurns, target);
+    }
+
+    @Benchmark
+    public int[] rotateIntoNewBuffer() {
+        return ImageRotation.rotate(pixels, width, height, quarterTurns, null);
+    }
+}
@@ -0,0 +1,40 @@
+package uk.co.akm.test.barcodereaderdemo.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+import uk.co.akm.test.barcodereaderdemo.core.Sampling;
+
+/**
+ * Measures the sample size computation made before reading a photo at a reduced scale, for typical
+ * camera photo sizes and the target sizes used by the adaptive scale selection.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SamplingBenchmark {
+    private static final int[][] PHOTO_SIZES = {{4032, 3024}, {3264, 2448}, {2592, 1944}, {1920, 1080}, {1080, 1920}};
+    private static final int[] TARGET_SIZES = {300, 600, 1200};
+
+    @Benchmark
+    public void computeSampleSizes(Blackhole blackhole) {
+        for (int[] photoSize : PHOTO_SIZES) {
+            for (int targetSize : TARGET_SIZES) {
+                blackhole.consume(Sampling.computeSampleSize(photoSize[0], photoSize[1], targetSize, targetSize));
+            }
+        }
+    }
+}
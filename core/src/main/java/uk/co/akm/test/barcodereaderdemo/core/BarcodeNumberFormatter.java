@@ -0,0 +1,113 @@
+package uk.co.akm.test.barcodereaderdemo.core;
+
+/**
+ * Formats barcode numbers for display. The formatting runs for every barcode decoded (i.e. for
+ * every frame with a barcode in live scanning), so it neither throws nor allocates anything but
+ * the result: the input is validated with a digit scan and grouped in a single pass into a
+ * per-thread character buffer, which is reused from number to number.
+ */
+public final class BarcodeNumberFormatter {
+    private static final int BARCODE_NUMBER_GROUP_LENGTH = 6;
+    private static final char GROUP_SEPARATOR = ' ';
+
+    private static final ThreadLocal<char[]> threadBuffers = new ThreadLocal<char[]>() {
+        @Override
+        protected char[] initialValue() {
+            return new char[64];
+        }
+    };
+
+    /**
+     * Formats the input barcode number as displayed in most product barcodes, i.e. separated into
+     * groups of 6 digits, starting from the RHS. If the input cannot be formatted in that way (i.e.
+     * it is not made of digits only or it is too short to be grouped), then the input itself is
+     * returned.
+     */
+    public static String format(String number) {
+        if (!isGroupable(number)) {
+            return number;
+        }
+
+        final int formattedLength = formattedLength(number.length());
+        char[] buffer = threadBuffers.get();
+        if (buffer.length < formattedLength) {
+            buffer = new char[Math.max(formattedLength, 2*buffer.length)];
+            threadBuffers.set(buffer);
+        }
+
+        writeGroups(number, buffer);
+
+        return new String(buffer, 0, formattedLength);
+    }
+
+    /**
+     * Appends the input barcode number to the input builder, formatted as by {@link #format(String)},
+     * without creating any intermediate string.
+     *
+     * @param number the barcode number (or null)
+     * @param sb the builder to append to
+     * @return the input builder
+     */
+    public static StringBuilder appendFormatted(String number, StringBuilder sb) {
+        if (!isGroupable(number)) {
+            return sb.append(number);
+        }
+
+        final int len = number.length();
+        int groupEnd = firstGroupLength(len);
+        sb.append(number, 0, groupEnd);
+        while (groupEnd < len) {
+            sb.append(GROUP_SEPARATOR).append(number, groupEnd, groupEnd + BARCODE_NUMBER_GROUP_LENGTH);
+            groupEnd += BARCODE_NUMBER_GROUP_LENGTH;
+        }
+
+        return sb;
+    }
+
+    /**
+     * Returns true if the input is not empty and it is made of ASCII digits only, of any length.
+     */
+    public static boolean isDigits(CharSequence value) {
+        if (value == null || value.length() == 0) {
+            return false;
+        }
+
+        for (int i=0 ; i<value.length() ; i++) {
+            final char c = value.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private static boolean isGroupable(String number) {
+        return (number != null && number.length() > BARCODE_NUMBER_GROUP_LENGTH && isDigits(number));
+    }
+
+    private static int formattedLength(int len) {
+        return (len + (len - 1)/BARCODE_NUMBER_GROUP_LENGTH);
+    }
+
+    // The leftmost group holds the digits left over from the groups of 6 counted from the RHS.
+    private static int firstGroupLength(int len) {
+        return ((len - 1)%BARCODE_NUMBER_GROUP_LENGTH + 1);
+    }
+
+    private static void writeGroups(String number, char[] buffer) {
+        final int len = number.length();
+        int groupEnd = firstGroupLength(len);
+        number.getChars(0, groupEnd, buffer, 0);
+
+        int position = groupEnd;
+        while (groupEnd < len) {
+            buffer[position++] = GROUP_SEPARATOR;
+            number.getChars(groupEnd, groupEnd + BARCODE_NUMBER_GROUP_LENGTH, buffer, position);
+            position += BARCODE_NUMBER_GROUP_LENGTH;
+            groupEnd += BARCODE_NUMBER_GROUP_LENGTH;
+        }
+    }
+
+    private BarcodeNumberFormatter() {}
+}
@@ -0,0 +1,111 @@
+package uk.co.akm.test.barcodereaderdemo.core;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Precomputed lookup table between format codes (e.g. barcode formats or value formats) and their
+ * display names, so that looking up a name (or a code) allocates nothing, not even for unknown
+ * codes. Two kinds of codes are supported:
+ * <ul>
+ *     <li>bit flags (e.g. barcode formats, which are OR-ed into format sets), indexed by their bit</li>
+ *     <li>small non-negative values (e.g. barcode value formats), indexed by their value</li>
+ * </ul>
+ * Unknown codes are named "UNKNOWN (code)". These names are precomputed too for every single bit
+ * flag or every value in the table range; only the names of codes outside that range are built on
+ * demand.
+ *
+ * Tables are immutable, so they can be shared by any number of threads.
+ */
+public final class FormatNameTable {
+    private static final int FLAG_TABLE_SIZE = Integer.SIZE;
+    private static final int MIN_VALUE_TABLE_SIZE = 32;
+
+    private final boolean bitFlags;
+    private final String[] names;
+    private final Map<String, Integer> codes;
+
+    /**
+     * Builds the table of the input bit flag codes.
+     *
+     * @param flags the codes, each a single bit
+     * @param names the names of the codes, in the same order
+     * @return the table
+     */
+    public static FormatNameTable forBitFlags(int[] flags, String[] names) {
+        return new FormatNameTable(true, flags, names);
+    }
+
+    /**
+     * Builds the table of the input small non-negative value codes.
+     *
+     * @param values the codes, each at least zero
+     * @param names the names of the codes, in the same order
+     * @return the table
+     */
+    public static FormatNameTable forValues(int[] values, String[] names) {
+        return new FormatNameTable(false, values, names);
+    }
+
+    private FormatNameTable(boolean bitFlags, int[] codes, String[] names) {
+        if (codes.length != names.length) {
+            throw new IllegalArgumentException("The number of codes (" + codes.length + ") must match the number of names (" + names.length + ").");
+        }
+
+        this.bitFlags = bitFlags;
+        this.names = new String[bitFlags ? FLAG_TABLE_SIZE : Math.max(MIN_VALUE_TABLE_SIZE, maxValue(codes) + 1)];
+        for (int i=0 ; i<this.names.length ; i++) {
+            this.names[i] = unknownName(bitFlags ? (1 << i) : i);
+        }
+
+        this.codes = new HashMap<>(2*codes.length);
+        for (int i=0 ; i<codes.length ; i++) {
+            final int index = indexOf(codes[i]);
+            if (index < 0) {
+                throw new IllegalArgumentException("Illegal code: " + codes[i] + (bitFlags ? ". It must be a single bit." : ". It must be at least 0."));
+            }
+
+            this.names[index] = names[i];
+            this.codes.put(names[i], codes[i]);
+        }
+    }
+
+    private static int maxValue(int[] values) {
+        int max = 0;
+        for (int value : values) {
+            max = Math.max(max, value);
+        }
+
+        return max;
+    }
+
+    private int indexOf(int code) {
+        if (bitFlags) {
+            return (Integer.bitCount(code) == 1 ? Integer.numberOfTrailingZeros(code) : -1);
+        } else {
+            return (code >= 0 && code < names.length ? code : -1);
+        }
+    }
+
+    private static String unknownName(int code) {
+        return ("UNKNOWN (" + code + ")");
+    }
+
+    /**
+     * Returns the name of the input code or "UNKNOWN (code)" if the code is not in the table.
+     */
+    public String getName(int code) {
+        final int index = indexOf(code);
+
+        return (index < 0 ? unknownName(code) : names[index]);
+    }
+
+    /**
+     * Returns the code with the input name, or zero if the name is not a known code.
+     */
+    public int getCode(String name) {
+        final Integer code = (name == null ? null : codes.get(name));
+
+        return (code == null ? 0 : code);
+    }
+}
@@ -0,0 +1,63 @@
+package uk.co.akm.test.barcodereaderdemo.core;
+
+/**
+ * Rotates raw ARGB pixel buffers clockwise by multiples of 90 degrees, i.e. the same transformation
+ * applied to bitmaps when evaluating the possible orientations of an image.
+ */
+public final class ImageRotation {
+    public static final int NUMBER_OF_POSITIONS = 4;
+
+    /**
+     * Returns the number of clockwise quarter turns (0 to 3) equivalent to the input one.
+     */
+    public static int normalizeQuarterTurns(int quarterTurns) {
+        return ((quarterTurns%NUMBER_OF_POSITIONS) + NUMBER_OF_POSITIONS)%NUMBER_OF_POSITIONS;
+    }
+
+    /**
+     * Rotates the input ARGB pixels clockwise by the specified number of quarter turns. The result
+     * is written into the target array, if it is large enough, or into a newly allocated one otherwise.
+     * For an odd number of quarter turns, the rotated image is height pixels wide and width pixels high.
+     *
+     * @param argb the pixels to rotate, in rows from top to bottom
+     * @param width the image width
+     * @param height the image height
+     * @param quarterTurns the number of clockwise quarter turns
+     * @param target the array that will hold the rotated pixels (may be null)
+     * @return the array holding the rotated pixels
+     */
+    public static int[] rotate(int[] argb, int width, int height, int quarterTurns, int[] target) {
+        final int nPixels = width*height;
+        final int[] rotated = (target == null || target.length < nPixels ? new int[nPixels] : target);
+
+        switch (normalizeQuarterTurns(quarterTurns)) {
+            case 0:
+                System.arraycopy(argb, 0, rotated, 0, nPixels);
+                break;
+            case 1:
+                for (int y=0 ; y<height ; y++) {
+                    final int column = height - 1 - y;
+                    for (int x=0, source=y*width ; x<width ; x++, source++) {
+                        rotated[x*height + column] = argb[source];
+                    }
+                }
+                break;
+            case 2:
+                for (int source=0, destination=nPixels - 1 ; source<nPixels ; source++, destination--) {
+                    rotated[destination] = argb[source];
+                }
+                break;
+            case 3:
+                for (int y=0 ; y<height ; y++) {
+                    for (int x=0, source=y*width ; x<width ; x++, source++) {
+                        rotated[(width - 1 - x)*height + y] = argb[source];
+                    }
+                }
+                break;
+        }
+
+        return rotated;
+    }
+
+    private ImageRotation() {}
+}
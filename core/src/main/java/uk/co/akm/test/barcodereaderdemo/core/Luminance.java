@@ -0,0 +1,17 @@
+package uk.co.akm.test.barcodereaderdemo.core;
+
+/**
+ * Luminance conversion helpers.
+ */
+public final class Luminance {
+
+    /**
+     * Returns the luminance (0 to 255) of the input ARGB colour, using the integer approximation of
+     * the ITU-R BT.601 weights (0.299 R + 0.587 G + 0.114 B). The alpha channel is ignored.
+     */
+    public static int fromArgb(int argb) {
+        return (((argb >> 16) & 0xFF)*77 + ((argb >> 8) & 0xFF)*150 + (argb & 0xFF)*29) >> 8;
+    }
+
+    private Luminance() {}
+}
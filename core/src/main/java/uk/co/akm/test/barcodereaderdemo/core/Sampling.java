@@ -0,0 +1,43 @@
+package uk.co.akm.test.barcodereaderdemo.core;
+
+/**
+ * Image sampling math, used when reading a stored image at a reduced scale.
+ */
+public final class Sampling {
+
+    /**
+     * Returns the sample size (i.e. the sub-sampling factor of each image dimension) that scales
+     * an image down to (but not below) the target dimensions. The sample size is 1 (i.e. no scale) if
+     * either target dimension is not positive or if the image dimensions are not known.
+     *
+     * @param imageWidth the image width
+     * @param imageHeight the image height
+     * @param targetWidth the minimum width of the scaled image
+     * @param targetHeight the minimum height of the scaled image
+     * @return the sample size (at least 1)
+     */
+    public static int computeSampleSize(int imageWidth, int imageHeight, int targetWidth, int targetHeight) {
+        if (targetWidth <= 0 || targetHeight <= 0 || imageWidth <= 0 || imageHeight <= 0) {
+            return 1;
+        }
+
+        return Math.max(1, Math.min(imageWidth / targetWidth, imageHeight / targetHeight));
+    }
+
+    /**
+     * Returns the largest power of two sample size that scales an image down to (but not below) the
+     * target dimensions. Image decoders (e.g. JPEG) sub-sample natively by powers of two only and
+     * round any other sample size down, so this is the sample size that is actually applied.
+     *
+     * @param imageWidth the image width
+     * @param imageHeight the image height
+     * @param targetWidth the minimum width of the scaled image
+     * @param targetHeight the minimum height of the scaled image
+     * @return the power of two sample size (at least 1)
+     */
+    public static int computePowerOfTwoSampleSize(int imageWidth, int imageHeight, int targetWidth, int targetHeight) {
+        return Integer.highestOneBit(computeSampleSize(imageWidth, imageHeight, targetWidth, targetHeight));
+    }
+
+    private Sampling() {}
+}
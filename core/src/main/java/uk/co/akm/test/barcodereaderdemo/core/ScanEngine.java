@@ -0,0 +1,19 @@
+package uk.co.akm.test.barcodereaderdemo.core;
+
+import java.util.List;
+
+/**
+ * Decoding engine that finds and decodes items (e.g. barcodes or text) in a raw image buffer. On
+ * Android the engine is backed by the Google Vision API detectors (through an adapter that hands
+ * NV21 frame data to the detectors without copying it), while on the JVM a stand-in decoder (see the
+ * {@code standin} package) can be used, so that the decode pipeline can be tested and measured off-device.
+ *
+ * Unless stated otherwise, engines are not thread-safe.
+ */
+public interface ScanEngine {
+
+    /**
+     * Returns the items decoded in the input image or an empty list if nothing was decoded.
+     */
+    List<ScanResult> scan(ScanImage image);
+}
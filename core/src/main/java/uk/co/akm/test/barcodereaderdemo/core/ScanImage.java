@@ -0,0 +1,168 @@
+package uk.co.akm.test.barcodereaderdemo.core;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Raw image buffer processed by a {@link ScanEngine}. The pixels are held either as luminance
+ * values (one byte per pixel, 0 for black to 255 for white) or as ARGB values (one int per pixel,
+ * as in android.graphics.Bitmap#getPixels), in rows from top to bottom. The luminance values can
+ * also be the luminance plane of NV21 frame data held in a buffer (e.g. a camera preview frame),
+ * so that the frame can be handed to an engine that takes NV21 data as it is.
+ *
+ * The pixel arrays and buffers are not copied, so they must not be modified while the image is being processed.
+ */
+public final class ScanImage {
+    private final int width;
+    private final int height;
+    private final byte[] luminance;
+    private final ByteBuffer nv21;
+    private final int[] argb;
+
+    /**
+     * Returns an image backed by the input luminance values, i.e. one byte per pixel.
+     */
+    public static ScanImage ofLuminance(byte[] luminance, int width, int height) {
+        checkSize(luminance.length, width, height);
+
+        return new ScanImage(width, height, luminance, null, null);
+    }
+
+    /**
+     * Returns an image backed by the luminance plane of the input NV21 frame data, i.e. the first
+     * width*height bytes of the buffer, followed by the interleaved chroma plane. The buffer is
+     * read with absolute indices, so its position is ignored, and its limit must cover the whole frame.
+     */
+    public static ScanImage ofNv21(ByteBuffer nv21, int width, int height) {
+        checkSize(nv21.limit(), width, height);
+        if (nv21.limit() < nv21FrameSize(width, height)) {
+            throw new IllegalArgumentException("Illegal NV21 frame size " + width + "x" + height + " for " + nv21.limit() + " bytes.");
+        }
+
+        return new ScanImage(width, height, null, nv21, null);
+    }
+
+    /**
+     * Returns an image backed by the input ARGB values, i.e. one int per pixel.
+     */
+    public static ScanImage ofArgb(int[] argb, int width, int height) {
+        checkSize(argb.length, width, height);
+
+        return new ScanImage(width, height, null, null, argb);
+    }
+
+    /**
+     * Returns the number of bytes of an NV21 frame of the input size, i.e. one luminance byte per
+     * pixel followed by two chroma bytes per 2x2 block of pixels.
+     */
+    public static int nv21FrameSize(int width, int height) {
+        return width*height + 2*((width + 1)/2)*((height + 1)/2);
+    }
+
+    private static void checkSize(int length, int width, int height) {
+        if (width <= 0 || height <= 0 || length < width*height) {
+            throw new IllegalArgumentException("Illegal image size " + width + "x" + height + " for " + length + " pixels.");
+        }
+    }
+
+    private ScanImage(int width, int height, byte[] luminance, ByteBuffer nv21, int[] argb) {
+        this.width = width;
+        this.height = height;
+        this.luminance = luminance;
+        this.nv21 = nv21;
+        this.argb = argb;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Returns true if the pixels are held as luminance values or false if they are held as ARGB values.
+     */
+    public boolean isLuminance() {
+        return (argb == null);
+    }
+
+    /**
+     * Returns the luminance values backing this image (not a copy) or null if the pixels are held as
+     * ARGB values or as NV21 frame data (see {@link #getNv21Data()}).
+     */
+    public byte[] getLuminanceData() {
+        return luminance;
+    }
+
+    /**
+     * Returns the NV21 frame data backing this image (not a copy) or null if the pixels are not held as NV21 frame data.
+     */
+    public ByteBuffer getNv21Data() {
+        return nv21;
+    }
+
+    /**
+     * Returns the ARGB values backing this image (not a copy) or null if the pixels are held as luminance values.
+     */
+    public int[] getArgbData() {
+        return argb;
+    }
+
+    /**
+     * Returns the luminance (0 to 255) of the pixel at the input coordinates.
+     */
+    public int getLuminance(int x, int y) {
+        final int index = y*width + x;
+
+        if (luminance != null) {
+            return (luminance[index] & 0xFF);
+        } else if (nv21 != null) {
+            return (nv21.get(index) & 0xFF);
+        } else {
+            return Luminance.fromArgb(argb[index]);
+        }
+    }
+
+    /**
+     * Copies the luminance values of the input row into the input array and returns the latter.
+     * If the input array is null or too short, then a new array is allocated and returned.
+     */
+    public int[] getLuminanceRow(int y, int[] row) {
+        final int[] result = (row == null || row.length < width ? new int[width] : row);
+        final int offset = y*width;
+        if (luminance != null) {
+            for (int x=0 ; x<width ; x++) {
+                result[x] = (luminance[offset + x] & 0xFF);
+            }
+        } else if (nv21 != null) {
+            for (int x=0 ; x<width ; x++) {
+                result[x] = (nv21.get(offset + x) & 0xFF);
+            }
+        } else {
+            for (int x=0 ; x<width ; x++) {
+                result[x] = Luminance.fromArgb(argb[offset + x]);
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns a luminance-only version of this image. If the pixels are already held as luminance
+     * values (including NV21 frame data), then this image is returned.
+     */
+    public ScanImage toLuminance() {
+        if (argb == null) {
+            return this;
+        }
+
+        final int nPixels = width*height;
+        final byte[] values = new byte[nPixels];
+        for (int i=0 ; i<nPixels ; i++) {
+            values[i] = (byte) Luminance.fromArgb(argb[i]);
+        }
+
+        return new ScanImage(width, height, values, null, null);
+    }
+}
@@ -0,0 +1,59 @@
+package uk.co.akm.test.barcodereaderdemo.core;
+
+/**
+ * Immutable result of a single item decoded by a {@link ScanEngine}, e.g. a barcode.
+ */
+public final class ScanResult {
+    private final String value;
+    private final String format;
+    private final int left;
+    private final int top;
+    private final int right;
+    private final int bottom;
+
+    /**
+     * @param value the decoded (raw) value
+     * @param format the format name of the decoded item (e.g. "EAN_13")
+     * @param left the left edge of the item bounding box, in image coordinates
+     * @param top the top edge of the item bounding box, in image coordinates
+     * @param right the right edge (exclusive) of the item bounding box, in image coordinates
+     * @param bottom the bottom edge (exclusive) of the item bounding box, in image coordinates
+     */
+    public ScanResult(String value, String format, int left, int top, int right, int bottom) {
+        this.value = value;
+        this.format = format;
+        this.left = left;
+        this.top = top;
+        this.right = right;
+        this.bottom = bottom;
+    }
+
+    public String getValue() {
+        return value;
+    }
+
+    public String getFormat() {
+        return format;
+    }
+
+    public int getLeft() {
+        return left;
+    }
+
+    public int getTop() {
+        return top;
+    }
+
+    public int getRight() {
+        return right;
+    }
+
+    public int getBottom() {
+        return bottom;
+    }
+
+    @Override
+    public String toString() {
+        return (value + " (" + format + ") [" + left + ", " + top + ", " + right + ", " + bottom + "]");
+    }
+}
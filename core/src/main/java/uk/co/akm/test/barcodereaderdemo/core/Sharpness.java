@@ -0,0 +1,69 @@
+package uk.co.akm.test.barcodereaderdemo.core;
+
+/**
+ * Cheap image sharpness metric, used to rank the frames of a burst so that only the sharpest ones
+ * are passed to the (much more expensive) detector. The metric is the variance of the Laplacian of
+ * the luminance: blur removes the high frequencies, so a blurred frame has a flatter Laplacian (i.e.
+ * a lower variance) than a sharp frame of the same scene.
+ */
+public final class Sharpness {
+
+    /**
+     * Returns the variance of the Laplacian of the input luminance plane, downsampled by the input
+     * step: the Laplacian is evaluated on every step-th pixel of every step-th row, with the four
+     * neighbours step pixels away, so the work is divided by the square of the step. A uniform image
+     * has zero variance.
+     *
+     * @param luminance the luminance plane (e.g. the first plane of an NV21 frame), one byte per pixel
+     * @param offset the index of the first pixel in the input array
+     * @param width the image width
+     * @param height the image height
+     * @param rowStride the number of bytes between the starts of consecutive rows (at least the width)
+     * @param step the downsampling step (at least 1)
+     * @return the variance of the Laplacian (zero if the image is too small for the step)
+     */
+    public static double varianceOfLaplacian(byte[] luminance, int offset, int width, int height, int rowStride, int step) {
+        if (step < 1) {
+            throw new IllegalArgumentException("Illegal downsampling step: " + step + ". It must be at least 1.");
+        }
+
+        if (rowStride < width) {
+            throw new IllegalArgumentException("Illegal row stride: " + rowStride + ". It must be at least the image width " + width + ".");
+        }
+
+        final int verticalStep = step*rowStride;
+        long sum = 0;
+        long sumOfSquares = 0;
+        long count = 0;
+        for (int y=step ; y<height - step ; y+=step) {
+            final int rowStart = offset + y*rowStride;
+            for (int x=step ; x<width - step ; x+=step) {
+                final int i = rowStart + x;
+                final int laplacian = 4*(luminance[i] & 0xFF)
+                        - (luminance[i - step] & 0xFF) - (luminance[i + step] & 0xFF)
+                        - (luminance[i - verticalStep] & 0xFF) - (luminance[i + verticalStep] & 0xFF);
+                sum += laplacian;
+                sumOfSquares += laplacian*laplacian;
+                count++;
+            }
+        }
+
+        if (count == 0) {
+            return 0;
+        }
+
+        final double mean = ((double) sum)/count;
+
+        return Math.max(0, ((double) sumOfSquares)/count - mean*mean);
+    }
+
+    /**
+     * Returns the downsampling step that evaluates about sampleSize pixels along the longest image
+     * dimension, i.e. the step that keeps the cost of the metric independent of the frame size.
+     */
+    public static int computeStep(int width, int height, int sampleSize) {
+        return Math.max(1, Math.max(width, height)/Math.max(1, sampleSize));
+    }
+
+    private Sharpness() {}
+}
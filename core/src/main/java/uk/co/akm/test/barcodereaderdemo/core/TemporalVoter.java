@@ -0,0 +1,167 @@
+package uk.co.akm.test.barcodereaderdemo.core;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Aggregates the candidates decoded in consecutive frames (e.g. of a live preview or a burst of
+ * photos) and only accepts the candidates that most recent frames agree on. Each frame gives at most
+ * one vote to each distinct candidate (e.g. raw value and format) and a candidate is agreed upon once
+ * it has received at least the agreement threshold of votes within the sliding window of the last
+ * frames. Frames without any candidate still count, so a candidate missing from too many recent
+ * frames drops out of the agreement.
+ *
+ * A single misread rarely repeats in several frames, so false reads are filtered out, while a value
+ * read in most frames is accepted without waiting for a single perfect frame.
+ *
+ * Instances are not thread-safe.
+ *
+ * @param <T> the type of the candidates
+ */
+public final class TemporalVoter<T> {
+
+    /**
+     * Extracts the voting key of a candidate: candidates with equal keys vote together.
+     */
+    public interface KeyExtractor<T> {
+
+        String getKey(T candidate);
+    }
+
+    /**
+     * Returns a voter of scan results, keyed by their value and format.
+     */
+    public static TemporalVoter<ScanResult> forScanResults(int windowSize, int agreementThreshold) {
+        return new TemporalVoter<>(windowSize, agreementThreshold, new KeyExtractor<ScanResult>() {
+            @Override
+            public String getKey(ScanResult candidate) {
+                return candidate.getFormat() + ':' + candidate.getValue();
+            }
+        });
+    }
+
+    private final int windowSize;
+    private final int agreementThreshold;
+    private final KeyExtractor<T> keyExtractor;
+
+    private final ArrayDeque<Set<String>> window;
+    private final Map<String, Tally<T>> tallies = new HashMap<>();
+    private long frameCount;
+
+    /**
+     * @param windowSize the number of most recent frames that vote
+     * @param agreementThreshold the number of votes (i.e. frames) required for the agreement
+     * @param keyExtractor the extractor of the candidate keys
+     */
+    public TemporalVoter(int windowSize, int agreementThreshold, KeyExtractor<T> keyExtractor) {
+        if (windowSize < 1 || agreementThreshold < 1 || agreementThreshold > windowSize) {
+            throw new IllegalArgumentException("Illegal voting parameters: window size " + windowSize + ", agreement threshold " + agreementThreshold + ".");
+        }
+
+        this.windowSize = windowSize;
+        this.agreementThreshold = agreementThreshold;
+        this.keyExtractor = keyExtractor;
+        this.window = new ArrayDeque<>(windowSize);
+    }
+
+    /**
+     * Adds the candidates of the next frame and returns the candidates agreed upon in the updated
+     * window, most voted first (and, for equal votes, most recently seen first). The latest instance
+     * of each candidate is returned.
+     *
+     * @param frameCandidates the candidates decoded in the frame (empty if nothing was decoded)
+     * @return the candidates agreed upon (empty if none)
+     */
+    public List<T> addFrame(List<T> frameCandidates) {
+        frameCount++;
+        if (window.size() == windowSize) {
+            for (String key : window.removeFirst()) {
+                final Tally<T> tally = tallies.get(key);
+                if (--tally.votes == 0) {
+                    tallies.remove(key);
+                }
+            }
+        }
+
+        final Set<String> frameKeys = new HashSet<>(frameCandidates.size()*2);
+        for (T candidate : frameCandidates) {
+            final String key = keyExtractor.getKey(candidate);
+            if (frameKeys.add(key)) {
+                Tally<T> tally = tallies.get(key);
+                if (tally == null) {
+                    tally = new Tally<>();
+                    tallies.put(key, tally);
+                }
+                tally.votes++;
+                tally.latest = candidate;
+                tally.lastFrame = frameCount;
+            }
+        }
+        window.addLast(frameKeys);
+
+        return getAgreedCandidates();
+    }
+
+    /**
+     * Returns the candidates agreed upon in the current window, most voted first (and, for equal
+     * votes, most recently seen first).
+     */
+    public List<T> getAgreedCandidates() {
+        final List<Tally<T>> agreed = new ArrayList<>();
+        for (Tally<T> tally : tallies.values()) {
+            if (tally.votes >= agreementThreshold) {
+                agreed.add(tally);
+            }
+        }
+
+        if (agreed.size() > 1) {
+            Collections.sort(agreed, new Comparator<Tally<T>>() {
+                @Override
+                public int compare(Tally<T> t1, Tally<T> t2) {
+                    if (t1.votes != t2.votes) {
+                        return (t1.votes > t2.votes ? -1 : 1);
+                    }
+
+                    return (t1.lastFrame > t2.lastFrame ? -1 : (t1.lastFrame < t2.lastFrame ? 1 : 0));
+                }
+            });
+        }
+
+        final List<T> candidates = new ArrayList<>(agreed.size());
+        for (Tally<T> tally : agreed) {
+            candidates.add(tally.latest);
+        }
+
+        return candidates;
+    }
+
+    /**
+     * Returns the number of votes of the input candidate in the current window.
+     */
+    public int getVotes(T candidate) {
+        final Tally<T> tally = tallies.get(keyExtractor.getKey(candidate));
+
+        return (tally == null ? 0 : tally.votes);
+    }
+
+    /**
+     * Forgets all the frames added so far.
+     */
+    public void reset() {
+        window.clear();
+        tallies.clear();
+    }
+
+    private static final class Tally<T> {
+        int votes;
+        T latest;
+        long lastFrame;
+    }
+}
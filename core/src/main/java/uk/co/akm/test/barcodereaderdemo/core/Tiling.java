@@ -0,0 +1,100 @@
+package uk.co.akm.test.barcodereaderdemo.core;
+
+/**
+ * Tiling math, used when processing a large image as a grid of overlapping tiles of the same size
+ * instead of as a whole. Bounds are given as {left, top, right, bottom} arrays (right and bottom
+ * exclusive).
+ */
+public final class Tiling {
+    public static final int LEFT = 0;
+    public static final int TOP = 1;
+    public static final int RIGHT = 2;
+    public static final int BOTTOM = 3;
+
+    /**
+     * Returns the origins of the tiles covering an image dimension. Consecutive tiles overlap by at
+     * least the input overlap and the last tile ends exactly at the image edge (overlapping its
+     * predecessor by more, if required), so that all tiles have the same length. If the image is not
+     * longer than a tile, then a single tile at the origin is returned.
+     *
+     * @param imageLength the image dimension
+     * @param tileLength the tile dimension
+     * @param overlap the minimum overlap of consecutive tiles (less than the tile dimension)
+     * @return the tile origins, in increasing order
+     */
+    public static int[] computeTileOrigins(int imageLength, int tileLength, int overlap) {
+        if (overlap < 0 || overlap >= tileLength) {
+            throw new IllegalArgumentException("Illegal tile overlap: " + overlap + ". It must be at least 0 and less than the tile length " + tileLength + ".");
+        }
+
+        if (imageLength <= tileLength) {
+            return new int[]{0};
+        }
+
+        final int step = tileLength - overlap;
+        final int nTiles = (imageLength - tileLength + step - 1)/step + 1;
+        final int[] origins = new int[nTiles];
+        for (int i=0 ; i<nTiles - 1 ; i++) {
+            origins[i] = i*step;
+        }
+        origins[nTiles - 1] = imageLength - tileLength;
+
+        return origins;
+    }
+
+    /**
+     * Returns the bounds of the input rectangle after rotating the whole image clockwise by the
+     * specified number of quarter turns. For an odd number of quarter turns, the rotated image is
+     * height pixels wide and width pixels high.
+     *
+     * @param bounds the rectangle bounds in the image
+     * @param imageWidth the image width
+     * @param imageHeight the image height
+     * @param quarterTurns the number of clockwise quarter turns
+     * @return the rectangle bounds in the rotated image
+     */
+    public static int[] rotateBounds(int[] bounds, int imageWidth, int imageHeight, int quarterTurns) {
+        final int left = bounds[LEFT];
+        final int top = bounds[TOP];
+        final int right = bounds[RIGHT];
+        final int bottom = bounds[BOTTOM];
+
+        switch (ImageRotation.normalizeQuarterTurns(quarterTurns)) {
+            case 1: return new int[]{imageHeight - bottom, left, imageHeight - top, right};
+            case 2: return new int[]{imageWidth - right, imageHeight - bottom, imageWidth - left, imageHeight - top};
+            case 3: return new int[]{top, imageWidth - right, bottom, imageWidth - left};
+
+            default: return new int[]{left, top, right, bottom};
+        }
+    }
+
+    /**
+     * Returns the area of the intersection of the two input rectangles as a fraction of the area of
+     * the smaller one, i.e. 1 if one rectangle lies within the other and 0 if they do not intersect
+     * (or either is empty).
+     */
+    public static float overlapFraction(int[] first, int[] second) {
+        final long firstArea = area(first);
+        final long secondArea = area(second);
+        if (firstArea == 0 || secondArea == 0) {
+            return 0;
+        }
+
+        final long width = Math.min(first[RIGHT], second[RIGHT]) - Math.max(first[LEFT], second[LEFT]);
+        final long height = Math.min(first[BOTTOM], second[BOTTOM]) - Math.max(first[TOP], second[TOP]);
+        if (width <= 0 || height <= 0) {
+            return 0;
+        }
+
+        return ((float) (width*height))/Math.min(firstArea, secondArea);
+    }
+
+    private static long area(int[] bounds) {
+        final long width = bounds[RIGHT] - bounds[LEFT];
+        final long height = bounds[BOTTOM] - bounds[TOP];
+
+        return (width <= 0 || height <= 0 ? 0 : width*height);
+    }
+
+    private Tiling() {}
+}
@@ -0,0 +1,45 @@
+package uk.co.akm.test.barcodereaderdemo.core.standin;
+
+/**
+ * EAN-13 symbology tables, shared by the stand-in renderer and decoder.
+ */
+final class Ean13 {
+    static final String FORMAT = "EAN_13";
+
+    static final int N_DIGITS = 13;
+    static final int N_MODULES = 95;
+    static final int DIGIT_MODULES = 7;
+
+    /**
+     * Element widths (in modules) of the L-coded digits, starting with a space. The R-coded digits
+     * have the same widths, starting with a bar, and the G-coded digits have the reversed widths.
+     */
+    static final int[][] L_WIDTHS = {
+            {3, 2, 1, 1}, {2, 2, 2, 1}, {2, 1, 2, 2}, {1, 4, 1, 1}, {1, 1, 3, 2},
+            {1, 2, 3, 1}, {1, 1, 1, 4}, {1, 3, 1, 2}, {1, 2, 1, 3}, {3, 1, 1, 2}
+    };
+
+    /**
+     * Parity (L or G) of the six left digits, as bit masks where a set bit (MSB first) means G,
+     * indexed by the first (implied) digit.
+     */
+    static final int[] FIRST_DIGIT_PARITIES = {
+            0b000000, 0b001011, 0b001101, 0b001110, 0b010011,
+            0b011001, 0b011100, 0b010101, 0b010110, 0b011010
+    };
+
+    static int checkDigit(int[] digits) {
+        int sum = 0;
+        for (int i=0 ; i<N_DIGITS - 1 ; i++) {
+            sum += (i%2 == 0 ? digits[i] : 3*digits[i]);
+        }
+
+        return (10 - sum%10)%10;
+    }
+
+    static int widthOf(int digit, boolean g, int element) {
+        return (g ? L_WIDTHS[digit][3 - element] : L_WIDTHS[digit][element]);
+    }
+
+    private Ean13() {}
+}
@@ -0,0 +1,133 @@
+package uk.co.akm.test.barcodereaderdemo.core.standin;
+
+import java.util.Random;
+
+import uk.co.akm.test.barcodereaderdemo.core.ScanImage;
+
+/**
+ * Renders synthetic EAN-13 barcode images, used as fixtures for testing and benchmarking the
+ * decode pipeline on the JVM.
+ */
+public final class Ean13Renderer {
+    private static final int QUIET_ZONE_MODULES = 11;
+
+    private final int moduleWidth;
+    private final int barHeight;
+    private final int margin;
+
+    /**
+     * @param moduleWidth the width (in pixels) of the narrowest bar or space
+     * @param barHeight the height (in pixels) of the bars
+     * @param margin the vertical margin (in pixels) above and below the bars
+     */
+    public Ean13Renderer(int moduleWidth, int barHeight, int margin) {
+        this.moduleWidth = moduleWidth;
+        this.barHeight = barHeight;
+        this.margin = margin;
+    }
+
+    /**
+     * Appends the check digit to the input 12 digit number.
+     */
+    public static String withCheckDigit(String twelveDigits) {
+        final int[] digits = toDigits(twelveDigits + "0");
+
+        return (twelveDigits + Ean13.checkDigit(digits));
+    }
+
+    /**
+     * Renders the input 13 digit number as a black on white luminance image.
+     */
+    public ScanImage render(String number) {
+        return render(number, 0, null);
+    }
+
+    /**
+     * Renders the input 13 digit number as a luminance image with additive uniform noise.
+     *
+     * @param number the 13 digit number to render
+     * @param noiseAmplitude the maximum absolute luminance noise added to each pixel
+     * @param random the noise source (ignored if the noise amplitude is zero)
+     * @return the rendered image
+     */
+    public ScanImage render(String number, int noiseAmplitude, Random random) {
+        final int[] digits = toDigits(number);
+        if (digits.length != Ean13.N_DIGITS || Ean13.checkDigit(digits) != digits[Ean13.N_DIGITS - 1]) {
+            throw new IllegalArgumentException("Not a valid EAN-13 number: " + number);
+        }
+
+        final boolean[] modules = encode(digits);
+        final int width = (modules.length + 2*QUIET_ZONE_MODULES)*moduleWidth;
+        final int height = barHeight + 2*margin;
+        final byte[] luminance = new byte[width*height];
+        for (int y=0 ; y<height ; y++) {
+            final boolean barRow = (y >= margin && y < margin + barHeight);
+            for (int x=0 ; x<width ; x++) {
+                final int module = x/moduleWidth - QUIET_ZONE_MODULES;
+                final boolean bar = (barRow && module >= 0 && module < modules.length && modules[module]);
+                int value = (bar ? 0 : 255);
+                if (noiseAmplitude > 0) {
+                    value = Math.max(0, Math.min(255, value + random.nextInt(2*noiseAmplitude + 1) - noiseAmplitude));
+                }
+                luminance[y*width + x] = (byte) value;
+            }
+        }
+
+        return ScanImage.ofLuminance(luminance, width, height);
+    }
+
+    private static int[] toDigits(String number) {
+        final int[] digits = new int[number.length()];
+        for (int i=0 ; i<digits.length ; i++) {
+            digits[i] = Character.digit(number.charAt(i), 10);
+            if (digits[i] < 0) {
+                throw new IllegalArgumentException("Not a number: " + number);
+            }
+        }
+
+        return digits;
+    }
+
+    // Returns the 95 modules of the barcode, where true is a bar.
+    private static boolean[] encode(int[] digits) {
+        final boolean[] modules = new boolean[Ean13.N_MODULES];
+        int position = appendGuard(modules, 0, true, 3);
+
+        final int parities = Ean13.FIRST_DIGIT_PARITIES[digits[0]];
+        for (int i=1 ; i<=6 ; i++) {
+            final boolean g = ((parities >> (6 - i)) & 1) == 1;
+            position = appendDigit(modules, position, digits[i], g, false);
+        }
+
+        position = appendGuard(modules, position, false, 5);
+        for (int i=7 ; i<Ean13.N_DIGITS ; i++) {
+            position = appendDigit(modules, position, digits[i], false, true);
+        }
+        appendGuard(modules, position, true, 3);
+
+        return modules;
+    }
+
+    private static int appendGuard(boolean[] modules, int position, boolean startWithBar, int nElements) {
+        boolean bar = startWithBar;
+        for (int i=0 ; i<nElements ; i++) {
+            modules[position++] = bar;
+            bar = !bar;
+        }
+
+        return position;
+    }
+
+    private static int appendDigit(boolean[] modules, int position, int digit, boolean g, boolean startWithBar) {
+        boolean bar = startWithBar;
+        for (int element=0 ; element<4 ; element++) {
+            final int width = Ean13.widthOf(digit, g, element);
+            for (int i=0 ; i<width ; i++) {
+                modules[position++] = bar;
+            }
+            bar = !bar;
+        }
+
+        return position;
+    }
+}
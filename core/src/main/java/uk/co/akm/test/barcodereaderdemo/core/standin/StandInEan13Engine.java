@@ -0,0 +1,210 @@
+package uk.co.akm.test.barcodereaderdemo.core.standin;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import uk.co.akm.test.barcodereaderdemo.core.ScanEngine;
+import uk.co.akm.test.barcodereaderdemo.core.ScanImage;
+import uk.co.akm.test.barcodereaderdemo.core.ScanResult;
+
+/**
+ * Pure-Java stand-in for the Google Vision barcode detector, which can decode a single horizontal
+ * EAN-13 barcode (in either direction). It scans a few rows around the middle of the image,
+ * binarizes each row around its mid-range luminance and matches the bar/space run lengths against
+ * the EAN-13 digit patterns. It is not meant to be as robust as the real detector, but it does
+ * comparable work per pixel, so that the decode pipeline can be tested and measured on the JVM.
+ */
+public final class StandInEan13Engine implements ScanEngine {
+    private static final float[] SCAN_ROW_FRACTIONS = {0.5f, 0.4f, 0.6f, 0.3f, 0.7f};
+    private static final int MIN_CONTRAST = 64;
+    private static final float MAX_DIGIT_ERROR = 1.5f; // Total deviation (in modules) of the 4 elements of a digit.
+    private static final int GUARD_RUNS = 3;
+    private static final int MIDDLE_GUARD_RUNS = 5;
+    private static final int DIGIT_RUNS = 4;
+    private static final int SYMBOL_RUNS = 2*GUARD_RUNS + MIDDLE_GUARD_RUNS + 12*DIGIT_RUNS;
+
+    private int[] row;
+    private int[] runs;
+
+    @Override
+    public List<ScanResult> scan(ScanImage image) {
+        final int width = image.getWidth();
+        final int height = image.getHeight();
+        if (runs == null || runs.length < width) {
+            runs = new int[width];
+        }
+
+        String value = null;
+        int top = height;
+        int bottom = 0;
+        final int[] span = new int[2];
+        for (float fraction : SCAN_ROW_FRACTIONS) {
+            final int y = Math.min(height - 1, (int) (fraction*height));
+            row = image.getLuminanceRow(y, row);
+            final String rowValue = decodeRow(row, width, span);
+            if (rowValue != null && (value == null || value.equals(rowValue))) {
+                value = rowValue;
+                top = Math.min(top, y);
+                bottom = Math.max(bottom, y + 1);
+            }
+        }
+
+        final List<ScanResult> results = new ArrayList<>(1);
+        if (value != null) {
+            results.add(new ScanResult(value, Ean13.FORMAT, span[0], top, span[1], bottom));
+        }
+
+        return results;
+    }
+
+    private String decodeRow(int[] row, int width, int[] span) {
+        int min = 255;
+        int max = 0;
+        for (int x=0 ; x<width ; x++) {
+            min = Math.min(min, row[x]);
+            max = Math.max(max, row[x]);
+        }
+        if (max - min < MIN_CONTRAST) {
+            return null;
+        }
+
+        // Runs of alternating bars and spaces. Even indices are always spaces (the first run may be empty).
+        final int threshold = (min + max)/2;
+        int nRuns = 0;
+        runs[0] = 0;
+        boolean bar = false;
+        for (int x=0 ; x<width ; x++) {
+            final boolean pixelIsBar = (row[x] < threshold);
+            if (pixelIsBar != bar) {
+                bar = pixelIsBar;
+                runs[++nRuns] = 0;
+            }
+            runs[nRuns]++;
+        }
+        nRuns++;
+
+        for (int start=1 ; start + SYMBOL_RUNS < nRuns ; start+=2) {
+            final String forward = decodeSymbol(runs, start, 1);
+            if (forward != null) {
+                setSpan(runs, start, start + SYMBOL_RUNS - 1, span);
+                return forward;
+            }
+
+            final String backward = decodeSymbol(runs, start + SYMBOL_RUNS - 1, -1); // Upside-down barcode.
+            if (backward != null) {
+                setSpan(runs, start, start + SYMBOL_RUNS - 1, span);
+                return backward;
+            }
+        }
+
+        return null;
+    }
+
+    private static void setSpan(int[] runs, int first, int last, int[] span) {
+        int x = 0;
+        for (int i=0 ; i<first ; i++) {
+            x += runs[i];
+        }
+        span[0] = x;
+        for (int i=first ; i<=last ; i++) {
+            x += runs[i];
+        }
+        span[1] = x;
+    }
+
+    // Decodes the symbol whose start guard begins at the input (bar) run, reading the runs in the input direction.
+    private static String decodeSymbol(int[] runs, int start, int step) {
+        final float moduleWidth = (runs[start] + runs[start + step] + runs[start + 2*step])/3f;
+        final int quietZone = runs[start - step];
+        if (quietZone < 3*moduleWidth || !isGuard(runs, start, step, GUARD_RUNS, moduleWidth)) {
+            return null;
+        }
+
+        final int[] digits = new int[Ean13.N_DIGITS];
+        int parities = 0;
+        int index = start + GUARD_RUNS*step;
+        for (int i=1 ; i<=6 ; i++) {
+            final int match = matchDigit(runs, index, step, true);
+            if (match < 0) {
+                return null;
+            }
+            digits[i] = match%10;
+            parities = (parities << 1) | (match/10);
+            index += DIGIT_RUNS*step;
+        }
+
+        if (!isGuard(runs, index, step, MIDDLE_GUARD_RUNS, moduleWidth)) {
+            return null;
+        }
+        index += MIDDLE_GUARD_RUNS*step;
+
+        for (int i=7 ; i<Ean13.N_DIGITS ; i++) {
+            final int match = matchDigit(runs, index, step, false);
+            if (match < 0) {
+                return null;
+            }
+            digits[i] = match;
+            index += DIGIT_RUNS*step;
+        }
+
+        digits[0] = firstDigit(parities);
+        if (digits[0] < 0 || Ean13.checkDigit(digits) != digits[Ean13.N_DIGITS - 1]) {
+            return null;
+        }
+
+        final char[] chars = new char[Ean13.N_DIGITS];
+        for (int i=0 ; i<chars.length ; i++) {
+            chars[i] = (char) ('0' + digits[i]);
+        }
+
+        return new String(chars);
+    }
+
+    private static boolean isGuard(int[] runs, int index, int step, int nRuns, float moduleWidth) {
+        for (int i=0 ; i<nRuns ; i++) {
+            final int run = runs[index + i*step];
+            if (run < 0.5f*moduleWidth || run > 1.5f*moduleWidth) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Returns the digit encoded by the 4 runs at the input index (plus 10 if it is G-coded) or -1 if
+     * the runs do not match any digit well enough.
+     */
+    private static int matchDigit(int[] runs, int index, int step, boolean allowG) {
+        final int total = runs[index] + runs[index + step] + runs[index + 2*step] + runs[index + 3*step];
+        final float scale = ((float) Ean13.DIGIT_MODULES)/total;
+
+        int bestMatch = -1;
+        float bestError = MAX_DIGIT_ERROR;
+        for (int parity=0 ; parity<(allowG ? 2 : 1) ; parity++) {
+            for (int digit=0 ; digit<10 ; digit++) {
+                float error = 0;
+                for (int element=0 ; element<DIGIT_RUNS ; element++) {
+                    error += Math.abs(runs[index + element*step]*scale - Ean13.widthOf(digit, parity == 1, element));
+                }
+
+                if (error < bestError) {
+                    bestError = error;
+                    bestMatch = parity*10 + digit;
+                }
+            }
+        }
+
+        return bestMatch;
+    }
+
+    private static int firstDigit(int parities) {
+        for (int digit=0 ; digit<Ean13.FIRST_DIGIT_PARITIES.length ; digit++) {
+            if (Ean13.FIRST_DIGIT_PARITIES[digit] == parities) {
+                return digit;
+            }
+        }
+
+        return -1;
+    }
+}
@@ -0,0 +1,71 @@
+package uk.co.akm.test.barcodereaderdemo.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class BarcodeNumberFormatterTest {
+
+    @Test
+    public void shouldGroupDigitsFromTheRight() {
+        assertEquals("5 901234 123457", BarcodeNumberFormatter.format("5901234123457"));
+        assertEquals("96 385074", BarcodeNumberFormatter.format("96385074"));
+        assertEquals("123456 789012", BarcodeNumberFormatter.format("123456789012"));
+    }
+
+    @Test
+    public void shouldGroupNumbersTooLongForLong() {
+        assertEquals("12 345678 901234 567890 123456", BarcodeNumberFormatter.format("12345678901234567890123456"));
+    }
+
+    @Test
+    public void shouldReturnShortNumbersUnchanged() {
+        final String number = "123456";
+
+        assertSame(number, BarcodeNumberFormatter.format(number));
+    }
+
+    @Test
+    public void shouldReturnNonNumericValuesUnchanged() {
+        final String url = "https://example.com/product/42";
+
+        assertSame(url, BarcodeNumberFormatter.format(url));
+        assertEquals("-1234567", BarcodeNumberFormatter.format("-1234567"));
+        assertEquals("1234567 ", BarcodeNumberFormatter.format("1234567 "));
+        assertEquals("", BarcodeNumberFormatter.format(""));
+        assertNull(BarcodeNumberFormatter.format(null));
+    }
+
+    @Test
+    public void shouldReuseBufferAcrossLengths() {
+        final StringBuilder digits = new StringBuilder();
+        for (int i=0 ; i<200 ; i++) {
+            digits.append((char) ('0' + i%10));
+        }
+
+        final String formatted = BarcodeNumberFormatter.format(digits.toString());
+
+        assertEquals(200 + 199/6, formatted.length());
+        assertEquals(digits.toString(), formatted.replace(" ", ""));
+        assertEquals("5 901234 123457", BarcodeNumberFormatter.format("5901234123457"));
+    }
+
+    @Test
+    public void shouldAppendSameAsFormat() {
+        final String[] values = {"5901234123457", "96385074", "123456", "abc1234567", "12345678901234567890123456"};
+        for (String value : values) {
+            final StringBuilder sb = new StringBuilder("x");
+
+            assertEquals("x" + BarcodeNumberFormatter.format(value), BarcodeNumberFormatter.appendFormatted(value, sb).toString());
+        }
+    }
+
+    @Test
+    public void shouldRecognizeDigits() {
+        assertTrue(BarcodeNumberFormatter.isDigits("0123456789"));
+        assertFalse(BarcodeNumberFormatter.isDigits("12a4"));
+        assertFalse(BarcodeNumberFormatter.isDigits("+1234"));
+        assertFalse(BarcodeNumberFormatter.isDigits(""));
+        assertFalse(BarcodeNumberFormatter.isDigits(null));
+    }
+}
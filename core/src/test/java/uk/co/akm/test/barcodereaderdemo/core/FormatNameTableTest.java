@@ -0,0 +1,53 @@
+package uk.co.akm.test.barcodereaderdemo.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class FormatNameTableTest {
+    private final FormatNameTable flags = FormatNameTable.forBitFlags(new int[]{1, 32, 4096}, new String[]{"CODE_128", "EAN_13", "AZTEC"});
+    private final FormatNameTable values = FormatNameTable.forValues(new int[]{1, 5, 12}, new String[]{"CONTACT_INFO", "PRODUCT", "DRIVER_LICENSE"});
+
+    @Test
+    public void shouldNameKnownCodes() {
+        assertEquals("CODE_128", flags.getName(1));
+        assertEquals("AZTEC", flags.getName(4096));
+        assertEquals("PRODUCT", values.getName(5));
+        assertEquals("DRIVER_LICENSE", values.getName(12));
+    }
+
+    @Test
+    public void shouldNameUnknownCodes() {
+        assertEquals("UNKNOWN (2)", flags.getName(2));
+        assertEquals("UNKNOWN (0)", flags.getName(0));
+        assertEquals("UNKNOWN (33)", flags.getName(33));
+        assertEquals("UNKNOWN (-2147483648)", flags.getName(Integer.MIN_VALUE));
+        assertEquals("UNKNOWN (7)", values.getName(7));
+        assertEquals("UNKNOWN (100)", values.getName(100));
+        assertEquals("UNKNOWN (-1)", values.getName(-1));
+    }
+
+    @Test
+    public void shouldReusePrecomputedNames() {
+        assertSame(flags.getName(2), flags.getName(2));
+        assertSame(values.getName(7), values.getName(7));
+    }
+
+    @Test
+    public void shouldLookUpCodesByName() {
+        assertEquals(32, flags.getCode("EAN_13"));
+        assertEquals(12, values.getCode("DRIVER_LICENSE"));
+        assertEquals(0, flags.getCode("UNKNOWN (2)"));
+        assertEquals(0, values.getCode(null));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectMultiBitFlags() {
+        FormatNameTable.forBitFlags(new int[]{3}, new String[]{"TWO_FORMATS"});
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectMismatchedNames() {
+        FormatNameTable.forValues(new int[]{1, 2}, new String[]{"ONE"});
+    }
+}
@@ -0,0 +1,39 @@
+package uk.co.akm.test.barcodereaderdemo.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ImageRotationTest {
+    // A 3x2 image:
+    // 1 2 3
+    // 4 5 6
+    private static final int[] PIXELS = {1, 2, 3, 4, 5, 6};
+
+    @Test
+    public void shouldCopyWithoutRotation() {
+        assertArrayEquals(PIXELS, ImageRotation.rotate(PIXELS, 3, 2, 0, null));
+    }
+
+    @Test
+    public void shouldRotateQuarterTurnClockwise() {
+        assertArrayEquals(new int[] {4, 1, 5, 2, 6, 3}, ImageRotation.rotate(PIXELS, 3, 2, 1, null));
+    }
+
+    @Test
+    public void shouldRotateHalfTurn() {
+        assertArrayEquals(new int[] {6, 5, 4, 3, 2, 1}, ImageRotation.rotate(PIXELS, 3, 2, 2, null));
+    }
+
+    @Test
+    public void shouldRotateThreeQuarterTurnsClockwise() {
+        assertArrayEquals(new int[] {3, 6, 2, 5, 1, 4}, ImageRotation.rotate(PIXELS, 3, 2, -1, null));
+    }
+
+    @Test
+    public void shouldReuseLargeEnoughTarget() {
+        final int[] target = new int[PIXELS.length];
+
+        assertSame(target, ImageRotation.rotate(PIXELS, 3, 2, 1, target));
+    }
+}
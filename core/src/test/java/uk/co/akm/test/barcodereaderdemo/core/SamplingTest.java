@@ -0,0 +1,26 @@
+package uk.co.akm.test.barcodereaderdemo.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class SamplingTest {
+
+    @Test
+    public void shouldNotScaleWithoutTarget() {
+        assertEquals(1, Sampling.computeSampleSize(4000, 3000, 0, 600));
+        assertEquals(1, Sampling.computePowerOfTwoSampleSize(4000, 3000, 600, 0));
+    }
+
+    @Test
+    public void shouldNotScaleBelowTarget() {
+        assertEquals(5, Sampling.computeSampleSize(4000, 3000, 600, 600));
+        assertEquals(4, Sampling.computePowerOfTwoSampleSize(4000, 3000, 600, 600));
+    }
+
+    @Test
+    public void shouldKeepExactPowerOfTwo() {
+        assertEquals(8, Sampling.computePowerOfTwoSampleSize(4800, 4800, 600, 600));
+        assertEquals(1, Sampling.computePowerOfTwoSampleSize(1199, 1199, 600, 600));
+    }
+}
@@ -0,0 +1,41 @@
+package uk.co.akm.test.barcodereaderdemo.core;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.*;
+
+public class ScanImageTest {
+    private static final int WIDTH = 3;
+    private static final int HEIGHT = 2;
+
+    @Test
+    public void shouldReadLuminancePlaneOfNv21Data() {
+        final ByteBuffer nv21 = ByteBuffer.allocate(ScanImage.nv21FrameSize(WIDTH, HEIGHT));
+        for (int i=0 ; i<WIDTH*HEIGHT ; i++) {
+            nv21.put((byte) (250 - i));
+        }
+
+        final ScanImage image = ScanImage.ofNv21(nv21, WIDTH, HEIGHT);
+
+        assertTrue(image.isLuminance());
+        assertSame(nv21, image.getNv21Data());
+        assertNull(image.getLuminanceData());
+        assertSame(image, image.toLuminance());
+        assertEquals(250, image.getLuminance(0, 0));
+        assertEquals(246, image.getLuminance(1, 1));
+        assertArrayEquals(new int[]{247, 246, 245}, image.getLuminanceRow(1, null));
+    }
+
+    @Test
+    public void shouldCountChromaOfOddSizedNv21Frames() {
+        assertEquals(6 + 2*2*1, ScanImage.nv21FrameSize(WIDTH, HEIGHT));
+        assertEquals(16 + 2*2*2, ScanImage.nv21FrameSize(4, 4));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectNv21DataWithoutChromaPlane() {
+        ScanImage.ofNv21(ByteBuffer.allocate(WIDTH*HEIGHT), WIDTH, HEIGHT);
+    }
+}
@@ -0,0 +1,104 @@
+package uk.co.akm.test.barcodereaderdemo.core;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class SharpnessTest {
+    private static final int SIZE = 64;
+
+    @Test
+    public void shouldScoreUniformImageZero() {
+        final byte[] uniform = new byte[SIZE*SIZE];
+        Arrays.fill(uniform, (byte) 200);
+
+        assertEquals(0, Sharpness.varianceOfLaplacian(uniform, 0, SIZE, SIZE, SIZE, 1), 0);
+    }
+
+    @Test
+    public void shouldScoreSharpImageHigherThanBlurred() {
+        final byte[] sharp = stripes(SIZE, SIZE, 4);
+        final byte[] blurred = boxBlur(sharp, SIZE, SIZE);
+        final byte[] moreBlurred = boxBlur(blurred, SIZE, SIZE);
+
+        final double sharpScore = Sharpness.varianceOfLaplacian(sharp, 0, SIZE, SIZE, SIZE, 1);
+        final double blurredScore = Sharpness.varianceOfLaplacian(blurred, 0, SIZE, SIZE, SIZE, 1);
+        final double moreBlurredScore = Sharpness.varianceOfLaplacian(moreBlurred, 0, SIZE, SIZE, SIZE, 1);
+
+        assertTrue(sharpScore > blurredScore);
+        assertTrue(blurredScore > moreBlurredScore);
+    }
+
+    @Test
+    public void shouldKeepRankingWhenDownsampled() {
+        final byte[] sharp = stripes(SIZE, SIZE, 8);
+        final byte[] blurred = boxBlur(boxBlur(sharp, SIZE, SIZE), SIZE, SIZE);
+
+        assertTrue(Sharpness.varianceOfLaplacian(sharp, 0, SIZE, SIZE, SIZE, 2) > Sharpness.varianceOfLaplacian(blurred, 0, SIZE, SIZE, SIZE, 2));
+    }
+
+    @Test
+    public void shouldHonourOffsetAndRowStride() {
+        final byte[] image = stripes(SIZE, SIZE, 4);
+        final int padding = 7;
+        final int rowStride = SIZE + padding;
+        final byte[] padded = new byte[3 + rowStride*SIZE];
+        for (int y=0 ; y<SIZE ; y++) {
+            System.arraycopy(image, y*SIZE, padded, 3 + y*rowStride, SIZE);
+        }
+
+        assertEquals(Sharpness.varianceOfLaplacian(image, 0, SIZE, SIZE, SIZE, 1), Sharpness.varianceOfLaplacian(padded, 3, SIZE, SIZE, rowStride, 1), 1e-9);
+    }
+
+    @Test
+    public void shouldScoreTooSmallImageZero() {
+        assertEquals(0, Sharpness.varianceOfLaplacian(stripes(4, 4, 1), 0, 4, 4, 4, 2), 0);
+    }
+
+    @Test
+    public void shouldComputeStepFromLongestDimension() {
+        assertEquals(4, Sharpness.computeStep(1280, 720, 320));
+        assertEquals(1, Sharpness.computeStep(200, 100, 320));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectIllegalStep() {
+        Sharpness.varianceOfLaplacian(new byte[16], 0, 4, 4, 4, 0);
+    }
+
+    private static byte[] stripes(int width, int height, int stripeWidth) {
+        final byte[] image = new byte[width*height];
+        for (int y=0 ; y<height ; y++) {
+            for (int x=0 ; x<width ; x++) {
+                image[y*width + x] = (byte) ((x/stripeWidth + y/stripeWidth)%2 == 0 ? 20 : 235);
+            }
+        }
+
+        return image;
+    }
+
+    private static byte[] boxBlur(byte[] image, int width, int height) {
+        final byte[] blurred = new byte[width*height];
+        for (int y=0 ; y<height ; y++) {
+            for (int x=0 ; x<width ; x++) {
+                int sum = 0;
+                int count = 0;
+                for (int dy=-1 ; dy<=1 ; dy++) {
+                    for (int dx=-1 ; dx<=1 ; dx++) {
+                        final int xx = x + dx;
+                        final int yy = y + dy;
+                        if (xx >= 0 && xx < width && yy >= 0 && yy < height) {
+                            sum += image[yy*width + xx] & 0xFF;
+                            count++;
+                        }
+                    }
+                }
+                blurred[y*width + x] = (byte) (sum/count);
+            }
+        }
+
+        return blurred;
+    }
+}
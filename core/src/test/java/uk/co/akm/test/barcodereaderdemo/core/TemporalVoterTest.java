@@ -0,0 +1,62 @@
+package uk.co.akm.test.barcodereaderdemo.core;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class TemporalVoterTest {
+    private static final ScanResult GOOD = new ScanResult("5901234123457", "EAN_13", 0, 0, 10, 10);
+    private static final ScanResult MISREAD = new ScanResult("5901234123451", "EAN_13", 0, 0, 10, 10);
+
+    @Test
+    public void shouldAgreeOnlyOnceThresholdIsMet() {
+        final TemporalVoter<ScanResult> voter = TemporalVoter.forScanResults(5, 3);
+
+        assertTrue(voter.addFrame(frame(GOOD)).isEmpty());
+        assertTrue(voter.addFrame(frame(MISREAD)).isEmpty());
+        assertTrue(voter.addFrame(frame(GOOD)).isEmpty());
+        assertEquals(Collections.singletonList(GOOD), voter.addFrame(frame(GOOD)));
+    }
+
+    @Test
+    public void shouldCountOneVotePerFrame() {
+        final TemporalVoter<ScanResult> voter = TemporalVoter.forScanResults(5, 2);
+
+        assertTrue(voter.addFrame(frame(GOOD, GOOD)).isEmpty());
+        assertEquals(1, voter.getVotes(GOOD));
+    }
+
+    @Test
+    public void shouldForgetFramesOutsideTheWindow() {
+        final TemporalVoter<ScanResult> voter = TemporalVoter.forScanResults(3, 2);
+
+        voter.addFrame(frame(GOOD));
+        assertEquals(Collections.singletonList(GOOD), voter.addFrame(frame(GOOD)));
+        assertFalse(voter.addFrame(frame()).isEmpty()); // Still two votes in the window.
+        assertTrue(voter.addFrame(frame()).isEmpty()); // One vote has left the window.
+        voter.addFrame(frame());
+        assertEquals(0, voter.getVotes(GOOD));
+    }
+
+    @Test
+    public void shouldOrderAgreedCandidatesByVotes() {
+        final TemporalVoter<ScanResult> voter = TemporalVoter.forScanResults(4, 2);
+
+        voter.addFrame(frame(GOOD));
+        voter.addFrame(frame(GOOD, MISREAD));
+        assertEquals(Arrays.asList(GOOD, MISREAD), voter.addFrame(frame(GOOD, MISREAD)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectThresholdLargerThanWindow() {
+        TemporalVoter.forScanResults(3, 4);
+    }
+
+    private static List<ScanResult> frame(ScanResult... results) {
+        return Arrays.asList(results);
+    }
+}
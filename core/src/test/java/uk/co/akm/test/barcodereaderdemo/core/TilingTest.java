@@ -0,0 +1,69 @@
+package uk.co.akm.test.barcodereaderdemo.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class TilingTest {
+
+    @Test
+    public void shouldUseSingleTileForSmallImage() {
+        assertArrayEquals(new int[]{0}, Tiling.computeTileOrigins(800, 1024, 128));
+        assertArrayEquals(new int[]{0}, Tiling.computeTileOrigins(1024, 1024, 128));
+    }
+
+    @Test
+    public void shouldCoverImageWithOverlappingTiles() {
+        final int[] origins = Tiling.computeTileOrigins(4000, 1024, 128);
+
+        assertArrayEquals(new int[]{0, 896, 1792, 2688, 2976}, origins);
+        for (int i=1 ; i<origins.length ; i++) {
+            assertTrue(origins[i - 1] + 1024 - origins[i] >= 128);
+        }
+        assertEquals(4000, origins[origins.length - 1] + 1024);
+    }
+
+    @Test
+    public void shouldEndExactlyAtImageEdge() {
+        assertArrayEquals(new int[]{0, 896}, Tiling.computeTileOrigins(1920, 1024, 128));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectOverlapNotShorterThanTile() {
+        Tiling.computeTileOrigins(4000, 1024, 1024);
+    }
+
+    @Test
+    public void shouldRotateBoundsLikeImage() {
+        final int[] bounds = {10, 20, 40, 30}; // In a 100x50 image.
+
+        assertArrayEquals(bounds, Tiling.rotateBounds(bounds, 100, 50, 0));
+        assertArrayEquals(new int[]{20, 10, 30, 40}, Tiling.rotateBounds(bounds, 100, 50, 1));
+        assertArrayEquals(new int[]{60, 20, 90, 30}, Tiling.rotateBounds(bounds, 100, 50, 2));
+        assertArrayEquals(new int[]{20, 60, 30, 90}, Tiling.rotateBounds(bounds, 100, 50, 3));
+    }
+
+    @Test
+    public void shouldMatchPixelRotation() {
+        final int width = 5;
+        final int height = 3;
+        final int[] pixels = new int[width*height];
+        pixels[1*width + 3] = 1; // The single pixel (3, 1).
+
+        for (int quarterTurns=0 ; quarterTurns<ImageRotation.NUMBER_OF_POSITIONS ; quarterTurns++) {
+            final int[] rotated = ImageRotation.rotate(pixels, width, height, quarterTurns, null);
+            final int rotatedWidth = (quarterTurns%2 == 0 ? width : height);
+            final int[] bounds = Tiling.rotateBounds(new int[]{3, 1, 4, 2}, width, height, quarterTurns);
+
+            assertEquals(1, rotated[bounds[Tiling.TOP]*rotatedWidth + bounds[Tiling.LEFT]]);
+        }
+    }
+
+    @Test
+    public void shouldMeasureOverlapAgainstSmallerRectangle() {
+        assertEquals(1f, Tiling.overlapFraction(new int[]{0, 0, 100, 100}, new int[]{10, 10, 20, 20}), 0f);
+        assertEquals(0.5f, Tiling.overlapFraction(new int[]{0, 0, 10, 10}, new int[]{5, 0, 25, 10}), 0f);
+        assertEquals(0f, Tiling.overlapFraction(new int[]{0, 0, 10, 10}, new int[]{10, 0, 20, 10}), 0f);
+        assertEquals(0f, Tiling.overlapFraction(new int[]{0, 0, 0, 10}, new int[]{0, 0, 20, 10}), 0f);
+    }
+}
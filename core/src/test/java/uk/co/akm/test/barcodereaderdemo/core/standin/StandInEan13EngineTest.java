@@ -0,0 +1,95 @@
+package uk.co.akm.test.barcodereaderdemo.core.standin;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import uk.co.akm.test.barcodereaderdemo.core.ScanImage;
+import uk.co.akm.test.barcodereaderdemo.core.ScanResult;
+
+import static org.junit.Assert.*;
+
+public class StandInEan13EngineTest {
+    private static final String NUMBER = "5901234123457";
+
+    private final StandInEan13Engine engine = new StandInEan13Engine();
+
+    @Test
+    public void shouldAppendCheckDigit() {
+        assertEquals(NUMBER, Ean13Renderer.withCheckDigit("590123412345"));
+    }
+
+    @Test
+    public void shouldDecodeRenderedBarcode() {
+        final ScanImage image = new Ean13Renderer(3, 120, 20).render(NUMBER);
+
+        final List<ScanResult> results = engine.scan(image);
+
+        assertEquals(1, results.size());
+        assertEquals(NUMBER, results.get(0).getValue());
+        assertEquals("EAN_13", results.get(0).getFormat());
+        assertEquals(11*3, results.get(0).getLeft());
+        assertEquals((11 + 95)*3, results.get(0).getRight());
+    }
+
+    @Test
+    public void shouldDecodeAllFirstDigits() {
+        final Ean13Renderer renderer = new Ean13Renderer(2, 60, 10);
+        for (int firstDigit=0 ; firstDigit<10 ; firstDigit++) {
+            final String number = Ean13Renderer.withCheckDigit(firstDigit + "12345678901");
+
+            assertEquals(number, engine.scan(renderer.render(number)).get(0).getValue());
+        }
+    }
+
+    @Test
+    public void shouldDecodeNoisyBarcode() {
+        final ScanImage image = new Ean13Renderer(3, 120, 20).render(NUMBER, 60, new Random(42));
+
+        assertEquals(NUMBER, engine.scan(image).get(0).getValue());
+    }
+
+    @Test
+    public void shouldDecodeUpsideDownBarcode() {
+        final ScanImage image = new Ean13Renderer(2, 60, 10).render(NUMBER);
+        final byte[] mirrored = mirror(image.getLuminanceData(), image.getWidth(), image.getHeight());
+
+        final List<ScanResult> results = engine.scan(ScanImage.ofLuminance(mirrored, image.getWidth(), image.getHeight()));
+
+        assertEquals(NUMBER, results.get(0).getValue());
+    }
+
+    @Test
+    public void shouldDecodeArgbImage() {
+        final ScanImage image = new Ean13Renderer(2, 60, 10).render(NUMBER);
+        final byte[] luminance = image.getLuminanceData();
+        final int[] argb = new int[luminance.length];
+        for (int i=0 ; i<argb.length ; i++) {
+            final int value = (luminance[i] & 0xFF);
+            argb[i] = 0xFF000000 | (value << 16) | (value << 8) | value;
+        }
+
+        assertEquals(NUMBER, engine.scan(ScanImage.ofArgb(argb, image.getWidth(), image.getHeight())).get(0).getValue());
+    }
+
+    @Test
+    public void shouldNotDecodeBlankImage() {
+        final byte[] blank = new byte[200*100];
+        Arrays.fill(blank, (byte) 255);
+
+        assertTrue(engine.scan(ScanImage.ofLuminance(blank, 200, 100)).isEmpty());
+    }
+
+    private static byte[] mirror(byte[] data, int width, int height) {
+        final byte[] mirrored = new byte[data.length];
+        for (int y=0 ; y<height ; y++) {
+            for (int x=0 ; x<width ; x++) {
+                mirrored[y*width + x] = data[y*width + width - 1 - x];
+            }
+        }
+
+        return mirrored;
+    }
+}